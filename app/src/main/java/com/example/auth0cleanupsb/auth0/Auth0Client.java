@@ -2,10 +2,24 @@
 package com.example.auth0cleanupsb.auth0;
 
 import com.example.auth0cleanupsb.config.AppProperties;
+import com.example.auth0cleanupsb.config.Auth0TenantConfig;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
@@ -13,38 +27,428 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
 
 @Component
 public class Auth0Client {
+  private static final Logger log = LoggerFactory.getLogger(Auth0Client.class);
 
   private final AppProperties props;
-  private final HttpClient http;
+  private final Auth0TenantConfig tenant;    // null = the APP_AUTH0_* tenant
+  private final String tenantName;
+  private final Tags tags;                   // tenant=<name> on every meter
+  private final HttpClient http;             // HTTP/2, multiplexes concurrent calls over few connections
+  private final ScheduledExecutorService timer;   // rate-limit waits of async calls
   private final ObjectMapper om = new ObjectMapper();
+  private final Auth0TokenManager tokens;
+  private final Auth0RateLimiter limiter;
+  private final SsoidPathStats ssoidPaths = new SsoidPathStats(SSOID_PATHS);
+  private final Auth0LookupCache lookups;    // null when APP_AUTH0_LOOKUP_CACHE_MAX_ENTRIES=0
+  private final MeterRegistry meters;
+  private final Map<String, Timer> requestTimers = new ConcurrentHashMap<>();   // by endpoint + status
+  private final Set<String> limiterGauges = ConcurrentHashMap.newKeySet();      // endpoints with gauges
 
-  public Auth0Client(AppProperties props) {
+  // endpoint keys for the rate limiter (Auth0 budgets each endpoint separately)
+  static final String EP_TOKEN = "POST /oauth/token";
+  static final String EP_DELETE_USER = "DELETE /api/v2/users/{id}";
+  static final String EP_SEARCH_USERS = "GET /api/v2/users";
+  static final String EP_USERS_BY_EMAIL = "GET /api/v2/users-by-email";
+  static final String EP_EXPORT_USERS = "POST /api/v2/jobs/users-exports";
+  static final String EP_GET_JOB = "GET /api/v2/jobs/{id}";
+
+  /** Metadata paths that may hold a user's SSOID, in the order they are tried. */
+  public static final List<String> SSOID_PATHS = List.of(
+      "app_metadata.ssoid",
+      "user_metadata.ssoid",
+      "app_metadata.sso_id",
+      "app_metadata.enterprise.ssoid",
+      "ssoid");
+
+  /**
+   * Lookup responses reduced to what we use: the first user_id, read with {@link Auth0Json} straight from the
+   * body bytes (no String copy, no tree), or the body text of an error response.
+   */
+  private record FirstUserId(String userId, String error) {}
+
+  private interface UserListReader {
+    String userId(byte[] body) throws IOException;
+  }
+
+  private static final HttpResponse.BodyHandler<FirstUserId> FIRST_USER_ID = firstUserIdHandler(Auth0Json::firstUserId);
+
+  private static HttpResponse.BodyHandler<FirstUserId> firstUserIdHandler(UserListReader reader) {
+    return info -> info.statusCode() / 100 == 2
+        ? HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), body -> {
+            try {
+              return new FirstUserId(reader.userId(body), null);
+            } catch (IOException e) {
+              throw new UncheckedIOException("Unreadable Auth0 user list", e);
+            }
+          })
+        : HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8),
+            text -> new FirstUserId(null, text));
+  }
+
+  private static final int SEARCH_PAGE_SIZE = 100;   // Auth0 max per_page
+  private static final int SEARCH_MAX_PAGES = 10;    // Auth0 returns at most 1000 search results
+
+  /**
+   * Outcome of a batched lookup: input value -> user_id for hits, and the values Auth0 definitely has no user for.
+   * Values in neither set could not be decided (e.g. a hit we could not attribute) and should be looked up one by one.
+   */
+  public record BatchLookupResult(Map<String, String> userIds, Set<String> notFound) {}
+
+  @Autowired
+  public Auth0Client(AppProperties props, MeterRegistry meters) {
+    this(props, null, meters);
+  }
+
+  /**
+   * Client for one tenant of a multi-tenant run (see {@link Auth0Tenants}): own connections, token cache,
+   * rate budget and lookup cache; everything but the tenant's identity and rate comes from props.
+   */
+  public Auth0Client(AppProperties props, Auth0TenantConfig tenant, MeterRegistry meters) {
     this.props = props;
+    this.tenant = tenant;
+    this.meters = meters;
+    this.tenantName = tenant != null ? tenant.name()
+        : nz(props.getAuth0DefaultTenant()).isBlank() ? "default" : props.getAuth0DefaultTenant().trim();
+    this.tags = Tags.of("tenant", tenantName);
+    String threads = tenant == null ? "" : tenant.name() + "-";
     this.http = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .executor(Executors.newFixedThreadPool(Math.max(1, props.getAuth0HttpThreads()), daemon("auth0-http-" + threads)))
         .connectTimeout(Duration.ofSeconds(10))
         .build();
+    this.timer = Executors.newSingleThreadScheduledExecutor(daemon("auth0-limiter-" + threads));
+    this.tokens = new Auth0TokenManager(this::requestToken,
+        Duration.ofSeconds(props.getAuth0TokenExpirySkewSeconds()));
+    double rate = tenant != null && tenant.rateLimitPerSecond() > 0
+        ? tenant.rateLimitPerSecond() : props.getAuth0RateLimitPerSecond();
+    this.limiter = new Auth0RateLimiter(rate, props.getAuth0RateLimitReserve());
+    this.lookups = props.getAuth0LookupCacheMaxEntries() > 0
+        ? new Auth0LookupCache(props.getAuth0LookupCacheMaxEntries(),
+            Duration.ofSeconds(props.getAuth0LookupCacheTtlSeconds()),
+            Duration.ofSeconds(props.getAuth0LookupCacheNegativeTtlSeconds()))
+        : null;
+
+    FunctionCounter.builder("auth0.token.requests", tokens, Auth0TokenManager::getHits)
+        .tag("result", "hit").description("Management API token served from cache").tags(tags).register(meters);
+    FunctionCounter.builder("auth0.token.requests", tokens, Auth0TokenManager::getMisses)
+        .tag("result", "miss").description("Management API token requests that had to wait for a fetch").tags(tags).register(meters);
+    FunctionCounter.builder("auth0.token.refreshes", tokens, Auth0TokenManager::getRefreshes)
+        .description("/oauth/token exchanges performed").tags(tags).register(meters);
+    for (String path : SSOID_PATHS) {
+      FunctionCounter.builder("auth0.ssoid.path.hits", ssoidPaths, stats -> stats.hits(path)).tag("path", path)
+          .description("SSOIDs found on this metadata path; lookups try the busiest path first").tags(tags).register(meters);
+    }
+    if (lookups != null) {
+      FunctionCounter.builder("auth0.lookup.cache", lookups, Auth0LookupCache::getHits)
+          .tag("result", "hit").description("SSOID/email lookups answered with a cached user_id").tags(tags).register(meters);
+      FunctionCounter.builder("auth0.lookup.cache", lookups, Auth0LookupCache::getNegativeHits)
+          .tag("result", "negative_hit").description("SSOID/email lookups answered with a cached NOT_FOUND").tags(tags).register(meters);
+      FunctionCounter.builder("auth0.lookup.cache", lookups, Auth0LookupCache::getMisses)
+          .tag("result", "miss").description("SSOID/email lookups that went to Auth0").tags(tags).register(meters);
+      FunctionCounter.builder("auth0.lookup.cache.invalidations", lookups, Auth0LookupCache::getInvalidations)
+          .description("Cache entries dropped because their user was deleted").tags(tags).register(meters);
+      Gauge.builder("auth0.lookup.cache.size", lookups, Auth0LookupCache::size)
+          .description("Entries in the lookup cache").tags(tags).register(meters);
+    }
   }
 
   /* =========================
      Public API
      ========================= */
 
-  /** Exchange client credentials for a Management API access token. */
+  /** Management API access token; cached and refreshed ahead of expiry by {@link Auth0TokenManager}. */
   public String getMgmtToken() throws Exception {
-    String domain = normalizeDomain(props.getAuth0Domain());
+    return tokens.getToken();
+  }
+
+  public String getTenantName() { return tenantName; }
+
+  /** Delete a user by Auth0 user_id. Requires Management API scope: delete:users */
+  public void deleteUserById(String userId) throws Exception {
+    if (userId == null || userId.isBlank()) throw new IllegalArgumentException("userId is blank");
+    String token = getMgmtToken();
+    checkDeleted(token, userId, send(EP_DELETE_USER, deleteRequest(token, userId)));
+  }
+
+  /**
+   * Non-blocking {@link #deleteUserById}: no thread is held while the request is in flight or waiting for
+   * a rate-limit permit. Fails with the same exceptions, wrapped in the future.
+   */
+  public CompletableFuture<Void> deleteUserByIdAsync(String userId) {
+    if (userId == null || userId.isBlank()) {
+      return CompletableFuture.failedFuture(new IllegalArgumentException("userId is blank"));
+    }
+    return tokens.getTokenAsync().thenCompose(token ->
+        sendAsync(EP_DELETE_USER, deleteRequest(token, userId), HttpResponse.BodyHandlers.ofString())
+            .thenAccept(resp -> checkDeleted(token, userId, resp)));
+  }
+
+  /** Find user_id by SSOID. Tries multiple likely metadata paths. Requires read:users (and ideally read:users_app_metadata). */
+  public String findUserIdBySsoid(String ssoid) throws Exception {
+    return findUserIdBySsoid(ssoid, false);
+  }
+
+  /**
+   * Find user_id by SSOID, trying the most productive metadata path first (see {@link SsoidPathStats}).
+   * With hedge=true all paths are queried at once and the first hit wins, the rest are cancelled:
+   * one round trip of latency instead of up to five, for interactive callers.
+   */
+  public String findUserIdBySsoid(String ssoid, boolean hedge) throws Exception {
+    if (ssoid == null || ssoid.isBlank()) return null;
+    String v = ssoid.trim();
+    Auth0LookupCache.Lookup cached = cached(Auth0LookupCache.ssoidKey(v));
+    if (cached != null) return cached.userId();
+
+    String token = getMgmtToken();
+    List<String> paths = ssoidPaths.orderedPaths();
+    String uid = null;
+    boolean done = false;
+    if (hedge) {
+      try {
+        uid = searchFirstHitHedged(token, paths, v);
+        done = true;
+      } catch (Exception e) {
+        // e.g. a 429 on one of the parallel calls: the sequential path retries properly
+        log.debug("Hedged SSOID search failed ({}); falling back to sequential", e.toString());
+      }
+    }
+    if (!done) uid = searchUserFirstMatch(token, paths, v);
+    remember(Auth0LookupCache.ssoidKey(v), uid);
+    return uid;
+  }
+
+  /**
+   * Non-blocking {@link #findUserIdBySsoid(String)}: the metadata paths are tried one after another in the
+   * adaptive order, each search chained on the previous one's response.
+   */
+  public CompletableFuture<String> findUserIdBySsoidAsync(String ssoid) {
+    if (ssoid == null || ssoid.isBlank()) return CompletableFuture.completedFuture(null);
+    String v = ssoid.trim();
+    Auth0LookupCache.Lookup cached = cached(Auth0LookupCache.ssoidKey(v));
+    if (cached != null) return CompletableFuture.completedFuture(cached.userId());
+
+    return tokens.getTokenAsync()
+        .thenCompose(token -> searchFirstMatchAsync(token, ssoidPaths.orderedPaths(), 0, v))
+        .thenApply(uid -> {
+          remember(Auth0LookupCache.ssoidKey(v), uid);
+          return uid;
+        });
+  }
+
+  /**
+   * Resolve many SSOIDs with OR'ed queries such as {@code app_metadata.ssoid:("a" OR "b")}.
+   * Paths are tried in the same adaptive order as {@link #findUserIdBySsoid} and only for values still unresolved. Each query is kept under maxQueryChars.
+   */
+  public BatchLookupResult findUserIdsBySsoids(Collection<String> ssoids, int maxQueryChars) throws Exception {
+    Set<String> remaining = distinctNonBlank(ssoids);
+    Map<String, String> found = new HashMap<>();
+    Set<String> undecided = new HashSet<>();
+    Set<String> cachedMisses = new HashSet<>();
+    takeCached(remaining, Auth0LookupCache::ssoidKey, found, cachedMisses);
+    Map<String, String> fromCache = Map.copyOf(found);
+    if (remaining.isEmpty()) return new BatchLookupResult(found, cachedMisses);
+    String token = getMgmtToken();
+
+    for (String path : ssoidPaths.orderedPaths()) {
+      if (remaining.isEmpty()) break;
+      int before = found.size();
+      for (List<String> group : orGroups(path, remaining, maxQueryChars)) {
+        for (JsonNode user : searchGroup(token, path, group, "user_id," + path.split("\\.")[0])) {
+          String uid = user.path("user_id").asText(null);
+          if (uid == null) continue;
+          String v = textAt(user, path);
+          if (v != null && group.contains(v)) found.putIfAbsent(v, uid);
+          else if (v == null && group.size() == 1) found.putIfAbsent(group.get(0), uid); // path not returned
+          else undecided.addAll(group); // loose match on another value, or a hit we can't map back
+        }
+      }
+      ssoidPaths.recordHits(path, found.size() - before);
+      remaining.removeAll(found.keySet());
+    }
+    remaining.removeAll(undecided);
+    for (Map.Entry<String, String> e : found.entrySet()) {
+      if (!fromCache.containsKey(e.getKey())) remember(Auth0LookupCache.ssoidKey(e.getKey()), e.getValue());
+    }
+    for (String v : remaining) remember(Auth0LookupCache.ssoidKey(v), null);
+    remaining.addAll(cachedMisses);
+    return new BatchLookupResult(found, remaining);
+  }
+
+  /** Batched counterpart of {@link #findUserIdByEmail} using {@code email:("a" OR "b")} searches. */
+  public BatchLookupResult findUserIdsByEmails(Collection<String> emails, int maxQueryChars) throws Exception {
+    Set<String> wanted = distinctNonBlank(emails);
+    Map<String, String> found = new HashMap<>();
+    Set<String> cachedMisses = new HashSet<>();
+    takeCached(wanted, Auth0LookupCache::emailKey, found, cachedMisses);
+    if (wanted.isEmpty()) return new BatchLookupResult(found, cachedMisses);
+
+    Map<String, List<String>> byLower = new HashMap<>();   // Auth0 stores emails lower-cased
+    for (String e : wanted) byLower.computeIfAbsent(e.toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(e);
+
+    String token = getMgmtToken();
+    for (List<String> group : orGroups("email", byLower.keySet(), maxQueryChars)) {
+      for (JsonNode user : searchGroup(token, "email", group, "user_id,email")) {
+        String uid = user.path("user_id").asText(null);
+        String email = user.path("email").asText(null);
+        if (uid == null || email == null) continue;
+        for (String original : byLower.getOrDefault(email.toLowerCase(Locale.ROOT), List.of())) {
+          found.putIfAbsent(original, uid);
+        }
+      }
+    }
+    Set<String> notFound = new HashSet<>(wanted);
+    notFound.removeAll(found.keySet());
+    for (String e : wanted) remember(Auth0LookupCache.emailKey(e), found.get(e));
+    notFound.addAll(cachedMisses);
+    return new BatchLookupResult(found, notFound);
+  }
+
+  /** Find user_id by email using /users-by-email. Requires read:users. */
+  public String findUserIdByEmail(String email) throws Exception {
+    if (email == null || email.isBlank()) return null;
+    Auth0LookupCache.Lookup cached = cached(Auth0LookupCache.emailKey(email));
+    if (cached != null) return cached.userId();
+
+    String token = getMgmtToken();
+    String uid = firstUserId(token, "users-by-email",
+        send(EP_USERS_BY_EMAIL, usersByEmailRequest(token, email), FIRST_USER_ID));
+    remember(Auth0LookupCache.emailKey(email), uid);
+    return uid;
+  }
+
+  /** Non-blocking {@link #findUserIdByEmail}. */
+  public CompletableFuture<String> findUserIdByEmailAsync(String email) {
+    if (email == null || email.isBlank()) return CompletableFuture.completedFuture(null);
+    Auth0LookupCache.Lookup cached = cached(Auth0LookupCache.emailKey(email));
+    if (cached != null) return CompletableFuture.completedFuture(cached.userId());
+
+    return tokens.getTokenAsync().thenCompose(token ->
+        sendAsync(EP_USERS_BY_EMAIL, usersByEmailRequest(token, email), FIRST_USER_ID).thenApply(resp -> {
+          String uid = firstUserId(token, "users-by-email", resp);
+          remember(Auth0LookupCache.emailKey(email), uid);
+          return uid;
+        }));
+  }
+
+  /**
+   * Run a users-export job and return its result as a decompressed NDJSON stream (one user per line).
+   * fields maps export field names (e.g. app_metadata.ssoid) to their export_as names.
+   * Requires read:users (and read:users_app_metadata for metadata fields). Caller closes the stream.
+   */
+  public InputStream exportUsers(Map<String, String> fields, Duration maxWait) throws Exception {
+    String token = getMgmtToken();
+
+    ObjectNode body = om.createObjectNode();
+    body.put("format", "json");
+    ArrayNode f = body.putArray("fields");
+    fields.forEach((name, exportAs) -> f.addObject().put("name", name).put("export_as", exportAs));
+
+    HttpRequest start = HttpRequest.newBuilder()
+        .uri(URI.create(mgmtBase() + "/jobs/users-exports"))
+        .timeout(Duration.ofSeconds(30))
+        .header("authorization", "Bearer " + token)
+        .header("content-type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(om.writeValueAsString(body)))
+        .build();
+    HttpResponse<String> resp = send(EP_EXPORT_USERS, start);
+    if (resp.statusCode() / 100 != 2) {
+      dropTokenIfRejected(token, resp.statusCode());
+      throw new RuntimeException("Auth0 users-export HTTP " + resp.statusCode() + ": " + resp.body());
+    }
+    String jobId = om.readTree(resp.body()).path("id").asText(null);
+    if (jobId == null) throw new RuntimeException("Auth0 users-export returned no job id: " + resp.body());
+    log.info("Started Auth0 users export job {}", jobId);
+
+    long deadline = System.nanoTime() + maxWait.toNanos();
+    long sleepMs = 2000;
+    while (true) {
+      token = getMgmtToken(); // exports of large tenants can outlive a token
+      HttpRequest poll = HttpRequest.newBuilder()
+          .uri(URI.create(mgmtBase() + "/jobs/" + URLEncoder.encode(jobId, StandardCharsets.UTF_8)))
+          .timeout(Duration.ofSeconds(20))
+          .header("authorization", "Bearer " + token)
+          .GET()
+          .build();
+      HttpResponse<String> pr = send(EP_GET_JOB, poll);
+      if (pr.statusCode() / 100 != 2) {
+        dropTokenIfRejected(token, pr.statusCode());
+        throw new RuntimeException("Auth0 get job HTTP " + pr.statusCode() + ": " + pr.body());
+      }
+      JsonNode job = om.readTree(pr.body());
+      String status = job.path("status").asText("");
+      if ("completed".equals(status)) {
+        String location = job.path("location").asText(null);
+        if (location == null) throw new RuntimeException("Auth0 export job " + jobId + " completed without location");
+        return download(location);
+      }
+      if ("failed".equals(status) || "expired".equals(status)) {
+        throw new RuntimeException("Auth0 export job " + jobId + " " + status + ": " + pr.body());
+      }
+      if (System.nanoTime() > deadline) {
+        throw new RuntimeException("Auth0 export job " + jobId + " not finished after " + maxWait);
+      }
+      Thread.sleep(sleepMs);
+      sleepMs = Math.min(sleepMs * 2, 30_000);
+    }
+  }
+
+  /* =========================
+     Internal helpers
+     ========================= */
+
+  /** Stream the (gzipped) export file from its pre-signed location; no bearer token. */
+  private InputStream download(String location) throws Exception {
+    HttpRequest req = HttpRequest.newBuilder()
+        .uri(URI.create(location))
+        .timeout(Duration.ofMinutes(30))
+        .GET()
+        .build();
+    HttpResponse<InputStream> resp = http.send(req, HttpResponse.BodyHandlers.ofInputStream());
+    if (resp.statusCode() / 100 != 2) {
+      resp.body().close();
+      throw new RuntimeException("Auth0 export download HTTP " + resp.statusCode());
+    }
+    return location.contains(".gz") ? new GZIPInputStream(resp.body(), 1 << 16) : resp.body();
+  }
+
+  /** Exchange client credentials for a Management API access token. */
+  private Auth0TokenManager.IssuedToken requestToken() throws Exception {
+    String domain = normalizeDomain(domain());
     String audience = mgmtAudience(); // guaranteed to end with a trailing slash
-    String clientId = nz(props.getAuth0ClientId());
-    String clientSecret = nz(props.getAuth0ClientSecret());
+    String clientId = nz(tenant != null ? tenant.clientId() : props.getAuth0ClientId());
+    String clientSecret = nz(tenant != null ? tenant.clientSecret() : props.getAuth0ClientSecret());
 
     if (domain.isBlank()) throw new IllegalStateException("Missing AUTH0_DOMAIN");
     if (audience.isBlank()) throw new IllegalStateException("Missing AUTH0_AUDIENCE (https://<tenant>/api/v2/)");
     if (clientId.isBlank()) throw new IllegalStateException("Missing AUTH0_CLIENT_ID/CLIENTID");
     if (clientSecret.isBlank()) throw new IllegalStateException("Missing AUTH0_CLIENT_SECRET/CLIENTSECRET");
 
-    String tokenUrl = "https://" + domain + "/oauth/token";
+    String configuredTokenUrl = nz(tenant != null ? tenant.tokenUrl() : props.getAuth0TokenUrl()).trim();
+    String tokenUrl = configuredTokenUrl.isBlank() ? "https://" + domain + "/oauth/token" : configuredTokenUrl;
     String jsonBody = String.format(
         "{\"client_id\":\"%s\",\"client_secret\":\"%s\",\"audience\":\"%s\",\"grant_type\":\"client_credentials\"}",
         escapeJson(clientId), escapeJson(clientSecret), escapeJson(audience));
@@ -56,7 +460,7 @@ public class Auth0Client {
         .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
         .build();
 
-    HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+    HttpResponse<String> resp = send(EP_TOKEN, req);
     if (resp.statusCode() / 100 != 2) {
       throw new RuntimeException("Auth0 token HTTP " + resp.statusCode() + ": " + resp.body());
     }
@@ -65,124 +469,377 @@ public class Auth0Client {
     if (token == null || token.isBlank()) {
       throw new RuntimeException("Auth0 token missing access_token in response: " + resp.body());
     }
-    return token;
+    long expiresIn = node.path("expires_in").asLong(86400);
+    return new Auth0TokenManager.IssuedToken(token, Duration.ofSeconds(expiresIn));
   }
 
-  /** Delete a user by Auth0 user_id. Requires Management API scope: delete:users */
-  public void deleteUserById(String userId) throws Exception {
-    if (userId == null || userId.isBlank()) throw new IllegalArgumentException("userId is blank");
-    String token = getMgmtToken();
+  /** Read per call: SSM values for the APP_AUTH0_* tenant may arrive after this client is built. */
+  private String domain() {
+    return tenant != null ? tenant.domain() : props.getAuth0Domain();
+  }
 
-    String url = mgmtBase() + "/users/" + URLEncoder.encode(userId, StandardCharsets.UTF_8);
-    HttpRequest req = HttpRequest.newBuilder()
-        .uri(URI.create(url))
+  /** Audience WITH a trailing slash (required for token exchange). */
+  private String mgmtAudience() {
+    String aud = nz(tenant != null ? tenant.audience() : props.getAuth0Audience()).trim();
+    if (!aud.isBlank()) {
+      if (!aud.endsWith("/")) aud = aud + "/";
+      return aud;
+    }
+    String domain = normalizeDomain(domain());
+    if (domain.isBlank()) return "";
+    return "https://" + domain + "/api/v2/";
+  }
+
+  /** Base URL WITHOUT trailing slash (for REST calls). */
+  private String mgmtBase() {
+    String aud = nz(tenant != null ? tenant.audience() : props.getAuth0Audience()).trim();
+    if (!aud.isBlank()) {
+      while (aud.endsWith("/")) aud = aud.substring(0, aud.length() - 1);
+      return aud;
+    }
+    String domain = normalizeDomain(domain());
+    if (domain.isBlank()) return "";
+    return "https://" + domain + "/api/v2";
+  }
+
+  private HttpRequest deleteRequest(String token, String userId) {
+    return HttpRequest.newBuilder()
+        .uri(URI.create(mgmtBase() + "/users/" + URLEncoder.encode(userId, StandardCharsets.UTF_8)))
         .timeout(Duration.ofSeconds(30))
         .header("authorization", "Bearer " + token)
         .DELETE()
         .build();
+  }
 
-    HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+  /** Returns on 200/204; throws on anything else. Lookups of the user are dropped once it is gone. */
+  private void checkDeleted(String token, String userId, HttpResponse<String> resp) {
     int code = resp.statusCode();
+    if (code == 204 || code == 200 || code == 404) invalidateLookups(userId);
     if (code == 204 || code == 200) return;         // success
+    dropTokenIfRejected(token, code);
     if (code == 404) throw new RuntimeException("Auth0 delete HTTP 404 (user not found): " + userId);
     throw new RuntimeException("Auth0 delete HTTP " + code + ": " + resp.body());
   }
 
-  /** Find user_id by SSOID. Tries multiple likely metadata paths. Requires read:users (and ideally read:users_app_metadata). */
-  public String findUserIdBySsoid(String ssoid) throws Exception {
-    if (ssoid == null || ssoid.isBlank()) return null;
-    String token = getMgmtToken();
-    String v = ssoid.trim();
+  private HttpRequest usersByEmailRequest(String token, String email) {
+    return HttpRequest.newBuilder()
+        .uri(URI.create(mgmtBase() + "/users-by-email?email=" + URLEncoder.encode(email.trim(), StandardCharsets.UTF_8)
+            + "&fields=user_id&include_fields=true"))
+        .timeout(Duration.ofSeconds(20))
+        .header("authorization", "Bearer " + token)
+        .GET()
+        .build();
+  }
 
-    return searchUserFirstMatch(token,
-        "app_metadata.ssoid:\"" + v + "\"",
-        "user_metadata.ssoid:\"" + v + "\"",
-        "app_metadata.sso_id:\"" + v + "\"",
-        "app_metadata.enterprise.ssoid:\"" + v + "\"",
-        "ssoid:\"" + v + "\""
-    );
+  /** Query each SSOID path in turn and return the first matching user_id (or null). */
+  private String searchUserFirstMatch(String token, List<String> paths, String value) throws Exception {
+    for (String path : paths) {
+      String uid = firstUserId(token, "search", send(EP_SEARCH_USERS, ssoidSearch(token, path, value), ssoidHit(path, value)));
+      if (uid != null) {
+        ssoidPaths.recordHit(path);
+        return uid;
+      }
+    }
+    return null;
   }
 
-  /** Find user_id by email using /users-by-email. Requires read:users. */
-  public String findUserIdByEmail(String email) throws Exception {
-    if (email == null || email.isBlank()) return null;
+  /** Async counterpart of {@link #searchUserFirstMatch}: path i is only queried once path i-1 missed. */
+  private CompletableFuture<String> searchFirstMatchAsync(String token, List<String> paths, int i, String value) {
+    if (i >= paths.size()) return CompletableFuture.completedFuture(null);
+    String path = paths.get(i);
+    return sendAsync(EP_SEARCH_USERS, ssoidSearch(token, path, value), ssoidHit(path, value))
+        .thenCompose(resp -> {
+          String uid = firstUserId(token, "search", resp);
+          if (uid == null) return searchFirstMatchAsync(token, paths, i + 1, value);
+          ssoidPaths.recordHit(path);
+          return CompletableFuture.completedFuture(uid);
+        });
+  }
 
-    String token = getMgmtToken();
-    String url = mgmtBase() + "/users-by-email?email=" + URLEncoder.encode(email.trim(), StandardCharsets.UTF_8);
+  /** Fire one search per path concurrently; complete with the first hit, or null once all have missed. */
+  private String searchFirstHitHedged(String token, List<String> paths, String value) throws Exception {
+    CompletableFuture<String> first = new CompletableFuture<>();
+    AtomicInteger outstanding = new AtomicInteger(paths.size());
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<CompletableFuture<HttpResponse<FirstUserId>>> calls = new ArrayList<>();
 
-    HttpRequest req = HttpRequest.newBuilder()
+    for (String path : paths) {
+      limiter.acquire(EP_SEARCH_USERS);
+      long start = System.nanoTime();
+      CompletableFuture<HttpResponse<FirstUserId>> call =
+          http.sendAsync(ssoidSearch(token, path, value), ssoidHit(path, value));
+      calls.add(call);
+      call.whenComplete((resp, err) -> {
+        observe(EP_SEARCH_USERS, start, resp, err);
+        try {
+          if (err == null) {
+            String uid = firstUserId(token, "search", resp);
+            if (uid != null && first.complete(uid)) ssoidPaths.recordHit(path);
+          } else {
+            failure.compareAndSet(null, err);
+          }
+        } catch (Exception e) {
+          failure.compareAndSet(null, e);
+        }
+        if (outstanding.decrementAndGet() == 0) {
+          Throwable t = failure.get();
+          if (t != null) first.completeExceptionally(t);
+          else first.complete(null);
+        }
+      });
+      if (first.isDone()) break; // an earlier path already answered
+    }
+
+    try {
+      return first.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception ex) throw ex;
+      throw e;
+    } finally {
+      for (CompletableFuture<HttpResponse<FirstUserId>> c : calls) c.cancel(true);
+    }
+  }
+
+  /**
+   * Search for one SSOID at one metadata path. The value is quoted, and the hit must carry exactly that value
+   * at the path ({@link #ssoidHit}): with hedging the first answer wins, so a loose match must not count.
+   */
+  private HttpRequest ssoidSearch(String token, String path, String value) {
+    String url = mgmtBase() + "/users?q=" + URLEncoder.encode(path + ":" + quoteLucene(value), StandardCharsets.UTF_8)
+        + "&search_engine=v3&fields=user_id," + path.split("\\.")[0] + "&include_fields=true&per_page=1";
+    return HttpRequest.newBuilder()
         .uri(URI.create(url))
         .timeout(Duration.ofSeconds(20))
         .header("authorization", "Bearer " + token)
         .GET()
         .build();
+  }
+
+  private static HttpResponse.BodyHandler<FirstUserId> ssoidHit(String path, String value) {
+    return firstUserIdHandler(body -> Auth0Json.firstUserIdWhere(body, path, value));
+  }
 
-    HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+  /** user_id of the first user in a search response, null for an empty result; throws on non-2xx. */
+  private String firstUserId(String token, String what, HttpResponse<FirstUserId> resp) {
     if (resp.statusCode() / 100 != 2) {
-      throw new RuntimeException("Auth0 users-by-email HTTP " + resp.statusCode() + ": " + resp.body());
+      dropTokenIfRejected(token, resp.statusCode());
+      throw new RuntimeException("Auth0 " + what + " HTTP " + resp.statusCode() + ": " + resp.body().error());
     }
+    return resp.body().userId();
+  }
 
-    JsonNode arr = om.readTree(resp.body());
-    if (arr.isArray() && arr.size() > 0) {
-      return arr.get(0).path("user_id").asText(null);
+  /**
+   * Send through the shared rate limiter. A 429 pauses the endpoint until Retry-After and the request is
+   * retried (up to APP_AUTH0_MAX_429_RETRIES) instead of surfacing as an ERROR row.
+   */
+  private HttpResponse<String> send(String endpoint, HttpRequest req) throws Exception {
+    return send(endpoint, req, HttpResponse.BodyHandlers.ofString());
+  }
+
+  private <T> HttpResponse<T> send(String endpoint, HttpRequest req, HttpResponse.BodyHandler<T> body) throws Exception {
+    int maxRetries = Math.max(0, props.getAuth0Max429Retries());
+    for (int attempt = 0; ; attempt++) {
+      limiter.acquire(endpoint);
+      long start = System.nanoTime();
+      HttpResponse<T> resp;
+      try {
+        resp = http.send(req, body);
+      } catch (IOException e) {
+        observe(endpoint, start, null, e);
+        throw e;
+      }
+      observe(endpoint, start, resp, null);
+      if (resp.statusCode() != 429 || attempt >= maxRetries) return resp;
+      // the bucket is now paused; the next acquire() waits out Retry-After
     }
-    return null;
   }
 
-  /* =========================
-     Internal helpers
-     ========================= */
+  /** Non-blocking {@link #send}: permits are awaited on the limiter timer, 429s are retried the same way. */
+  private <T> CompletableFuture<HttpResponse<T>> sendAsync(String endpoint, HttpRequest req,
+                                                          HttpResponse.BodyHandler<T> body) {
+    return sendAsync(endpoint, req, body, 0);
+  }
 
-  /** Audience WITH a trailing slash (required for token exchange). */
-  private String mgmtAudience() {
-    String aud = nz(props.getAuth0Audience()).trim();
-    if (!aud.isBlank()) {
-      if (!aud.endsWith("/")) aud = aud + "/";
-      return aud;
+  private <T> CompletableFuture<HttpResponse<T>> sendAsync(String endpoint, HttpRequest req,
+                                                          HttpResponse.BodyHandler<T> body, int attempt) {
+    int maxRetries = Math.max(0, props.getAuth0Max429Retries());
+    return limiter.acquireAsync(endpoint, timer)
+        .thenCompose(permit -> {
+          long start = System.nanoTime();
+          return http.sendAsync(req, body).whenComplete((resp, err) -> observe(endpoint, start, resp, err));
+        })
+        .thenCompose(resp -> {
+          if (resp.statusCode() != 429 || attempt >= maxRetries) return CompletableFuture.completedFuture(resp);
+          return sendAsync(endpoint, req, body, attempt + 1);
+        });
+  }
+
+  /**
+   * Feed a response to the rate limiter and record the call under auth0.requests{endpoint,status}; a failed
+   * exchange is recorded as IO_ERROR, a hedged search cancelled because another path answered is not recorded.
+   */
+  private void observe(String endpoint, long startNanos, HttpResponse<?> resp, Throwable err) {
+    if (resp != null) limiter.onResponse(endpoint, resp.statusCode(), resp.headers());
+    if (resp == null && err instanceof CancellationException) return;
+    String status = resp == null ? "IO_ERROR" : Integer.toString(resp.statusCode());
+    requestTimers.computeIfAbsent(endpoint + " " + status, k -> Timer.builder("auth0.requests")
+            .description("Auth0 Management API calls by endpoint and HTTP status")
+            .tag("endpoint", endpoint).tag("status", status)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(1)).maximumExpectedValue(Duration.ofSeconds(30))
+            .tags(tags).register(meters))
+        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    if (resp != null && limiterGauges.add(endpoint)) {
+      Gauge.builder("auth0.ratelimit.remaining", limiter, l -> {
+            long remaining = l.lastRemaining(endpoint);
+            return remaining < 0 ? Double.NaN : remaining;
+          })
+          .tag("endpoint", endpoint).description("Last X-RateLimit-Remaining reported by Auth0").tags(tags).register(meters);
+      Gauge.builder("auth0.ratelimit.rate", limiter, l -> l.currentRate(endpoint))
+          .tag("endpoint", endpoint).description("Requests per second the client currently allows itself")
+          .tags(tags).register(meters);
     }
-    String domain = normalizeDomain(props.getAuth0Domain());
-    if (domain.isBlank()) return "";
-    return "https://" + domain + "/api/v2/";
   }
 
-  /** Base URL WITHOUT trailing slash (for REST calls). */
-  private String mgmtBase() {
-    String aud = nz(props.getAuth0Audience()).trim();
-    if (!aud.isBlank()) {
-      while (aud.endsWith("/")) aud = aud.substring(0, aud.length() - 1);
-      return aud;
+  private static ThreadFactory daemon(String prefix) {
+    AtomicInteger n = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r, prefix + n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+
+  /** A 401 means the cached token was revoked or rotated; force the next call to fetch a new one. */
+  private void dropTokenIfRejected(String token, int code) {
+    if (code == 401) tokens.invalidate(token);
+  }
+
+  private Auth0LookupCache.Lookup cached(String key) {
+    return lookups == null ? null : lookups.get(key);
+  }
+
+  private void remember(String key, String userId) {
+    if (lookups != null) lookups.put(key, userId);
+  }
+
+  private void invalidateLookups(String userId) {
+    if (lookups != null) lookups.invalidateUser(userId);
+  }
+
+  /** Move values with a cached answer out of pending into found / notFound. */
+  private void takeCached(Set<String> pending, Function<String, String> key,
+                          Map<String, String> found, Set<String> notFound) {
+    if (lookups == null) return;
+    for (var it = pending.iterator(); it.hasNext(); ) {
+      String v = it.next();
+      Auth0LookupCache.Lookup c = lookups.get(key.apply(v));
+      if (c == null) continue;
+      if (c.userId() != null) found.put(v, c.userId());
+      else notFound.add(v);
+      it.remove();
     }
-    String domain = normalizeDomain(props.getAuth0Domain());
-    if (domain.isBlank()) return "";
-    return "https://" + domain + "/api/v2";
   }
 
-  /** Run several queries and return the first matching user_id (or null). */
-  private String searchUserFirstMatch(String token, String... queries) throws Exception {
+  /**
+   * Users matching any value of an OR'ed group. Auth0 stops a search at 1000 hits, so when a query fills
+   * every page the group is halved and each half searched again; otherwise values past the cut would be
+   * reported (and cached) as NOT_FOUND.
+   */
+  private List<JsonNode> searchGroup(String token, String field, List<String> group, String fields) throws Exception {
+    List<JsonNode> users = new ArrayList<>();
+    if (searchAll(token, orQuery(field, group), fields, users) || group.size() == 1) return users;
+    log.debug("Auth0 search for {} {} values hit the result cap; splitting", group.size(), field);
+    int mid = group.size() / 2;
+    List<JsonNode> out = searchGroup(token, field, group.subList(0, mid), fields);
+    out.addAll(searchGroup(token, field, group.subList(mid, group.size()), fields));
+    return out;
+  }
+
+  /**
+   * Page through a search query, adding every user in the result (only the given top-level fields) to users.
+   * Returns false when the last page allowed was full, i.e. the result may have been cut off.
+   */
+  private boolean searchAll(String token, String q, String fields, List<JsonNode> users) throws Exception {
     String base = mgmtBase();
-    for (String q : queries) {
-      String enc = URLEncoder.encode(q, StandardCharsets.UTF_8);
+    String enc = URLEncoder.encode(q, StandardCharsets.UTF_8);
+    for (int page = 0; page < SEARCH_MAX_PAGES; page++) {
       String url = base + "/users?q=" + enc
-          + "&search_engine=v3&fields=user_id,email,app_metadata,user_metadata&include_fields=true";
+          + "&search_engine=v3&fields=" + fields + "&include_fields=true"
+          + "&per_page=" + SEARCH_PAGE_SIZE + "&page=" + page;
 
       HttpRequest req = HttpRequest.newBuilder()
           .uri(URI.create(url))
-          .timeout(Duration.ofSeconds(20))
+          .timeout(Duration.ofSeconds(30))
           .header("authorization", "Bearer " + token)
           .GET()
           .build();
 
-      HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+      HttpResponse<String> resp = send(EP_SEARCH_USERS, req);
       if (resp.statusCode() / 100 != 2) {
+        dropTokenIfRejected(token, resp.statusCode());
         throw new RuntimeException("Auth0 search HTTP " + resp.statusCode() + ": " + resp.body());
       }
-
       JsonNode arr = om.readTree(resp.body());
-      if (arr.isArray() && arr.size() > 0) {
-        return arr.get(0).path("user_id").asText(null);
+      if (!arr.isArray()) return true;
+      arr.forEach(users::add);
+      if (arr.size() < SEARCH_PAGE_SIZE) return true;
+    }
+    return false;
+  }
+
+  /** Split values into groups whose {@code field:("a" OR "b" ...)} query stays under maxChars. */
+  private static List<List<String>> orGroups(String field, Collection<String> values, int maxChars) {
+    int overhead = field.length() + 3; // field:( )
+    List<List<String>> groups = new ArrayList<>();
+    List<String> cur = new ArrayList<>();
+    int len = overhead;
+    for (String v : values) {
+      int add = quoteLucene(v).length() + (cur.isEmpty() ? 0 : 4); // " OR "
+      if (!cur.isEmpty() && len + add > maxChars) {
+        groups.add(cur);
+        cur = new ArrayList<>();
+        len = overhead;
+        add = quoteLucene(v).length();
       }
+      cur.add(v);
+      len += add;
     }
-    return null;
+    if (!cur.isEmpty()) groups.add(cur);
+    return groups;
+  }
+
+  private static String orQuery(String field, List<String> values) {
+    StringBuilder sb = new StringBuilder(field).append(":(");
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) sb.append(" OR ");
+      sb.append(quoteLucene(values.get(i)));
+    }
+    return sb.append(')').toString();
+  }
+
+  private static String quoteLucene(String v) {
+    return "\"" + v.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  /** Text at a dotted path such as app_metadata.enterprise.ssoid, or null. */
+  private static String textAt(JsonNode node, String dottedPath) {
+    JsonNode cur = node;
+    for (String part : dottedPath.split("\\.")) {
+      cur = cur.path(part);
+      if (cur.isMissingNode() || cur.isNull()) return null;
+    }
+    return cur.isValueNode() ? cur.asText() : null;
+  }
+
+  private static Set<String> distinctNonBlank(Collection<String> values) {
+    Set<String> out = new LinkedHashSet<>();
+    if (values == null) return out;
+    for (String v : values) {
+      if (v != null && !v.isBlank()) out.add(v.trim());
+    }
+    return out;
   }
 
   /** Ensure domain is like dev-xxxxx.us.auth0.com (no scheme, no trailing slash). */
@@ -0,0 +1,87 @@
+package com.example.auth0cleanupsb.auth0;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Streaming reads of Management API user lists. No tree or String copy of the body is built, and parsing
+ * stops at the first user_id that qualifies; the rest of the body is never tokenized.
+ */
+public final class Auth0Json {
+  private static final JsonFactory JSON = new JsonFactory();
+
+  private Auth0Json() {}
+
+  /** user_id of the first user in a JSON array such as a search result, or null if there is none. */
+  public static String firstUserId(byte[] body) throws IOException {
+    try (JsonParser p = JSON.createParser(body)) {
+      return firstUserId(p);
+    }
+  }
+
+  /**
+   * user_id of the first user in a JSON array whose value at a dotted path such as app_metadata.ssoid equals
+   * expected, or null. Like the batched lookups, only an exact match counts.
+   */
+  public static String firstUserIdWhere(byte[] body, String dottedPath, String expected) throws IOException {
+    String[] path = dottedPath.split("\\.");
+    try (JsonParser p = JSON.createParser(body)) {
+      if (p.nextToken() != JsonToken.START_ARRAY) return null;
+      while (p.nextToken() == JsonToken.START_OBJECT) {
+        String userId = null;
+        boolean match = false;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+          String name = p.currentName();
+          JsonToken value = p.nextToken();
+          if ("user_id".equals(name)) {
+            userId = value.isScalarValue() && value != JsonToken.VALUE_NULL ? p.getText() : null;
+          } else if (name.equals(path[0])) {
+            match = valueAt(p, value, path, 1, expected);
+          } else {
+            p.skipChildren();
+          }
+        }
+        if (match && userId != null) return userId;
+      }
+    }
+    return null;
+  }
+
+  /** Whether the current value holds expected at path[i..]; consumes the value. */
+  private static boolean valueAt(JsonParser p, JsonToken value, String[] path, int i, String expected) throws IOException {
+    if (i == path.length) {
+      boolean match = value.isScalarValue() && value != JsonToken.VALUE_NULL && expected.equals(p.getText());
+      p.skipChildren();
+      return match;
+    }
+    if (value != JsonToken.START_OBJECT) {
+      p.skipChildren();
+      return false;
+    }
+    boolean match = false;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String name = p.currentName();
+      JsonToken v = p.nextToken();
+      if (name.equals(path[i])) match = valueAt(p, v, path, i + 1, expected);
+      else p.skipChildren();
+    }
+    return match;
+  }
+
+  private static String firstUserId(JsonParser p) throws IOException {
+    if (p.nextToken() != JsonToken.START_ARRAY) return null;
+    if (p.nextToken() != JsonToken.START_OBJECT) return null;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String name = p.currentName();
+      JsonToken value = p.nextToken();
+      if ("user_id".equals(name)) {
+        return value != null && value.isScalarValue() && value != JsonToken.VALUE_NULL ? p.getText() : null;
+      }
+      p.skipChildren();   // e.g. identities[] ahead of user_id when fields= isn't honoured
+    }
+    return null;
+  }
+}
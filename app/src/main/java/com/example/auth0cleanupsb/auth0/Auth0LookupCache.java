@@ -0,0 +1,174 @@
+// app/src/main/java/com/example/auth0cleanupsb/auth0/Auth0LookupCache.java
+package com.example.auth0cleanupsb.auth0;
+
+import com.example.auth0cleanupsb.util.Hash64;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded LRU + TTL cache of ssoid/email -> user_id in front of the Auth0 searches, including NOT_FOUND results.
+ *
+ * Every cached key is also added to a rotating Bloom filter, so the common case in a batch of distinct rows
+ * (a key never seen before) is answered without taking the cache lock. The filter only ever short-circuits to
+ * "ask Auth0"; a filter hit is confirmed against the exact entry, so a false positive can't turn a real user
+ * into NOT_FOUND.
+ * Deleting a user invalidates every key that pointed at it.
+ */
+public class Auth0LookupCache {
+  /** Cached answer; userId == null means Auth0 had no such user. */
+  public record Lookup(String userId) {}
+
+  private record Entry(String userId, long expiresAtNanos) {}
+
+  private final int maxEntries;
+  private final long ttlNanos;
+  private final long negativeTtlNanos;
+  private final LinkedHashMap<String, Entry> entries;          // guarded by this, access order
+  private final Map<String, Set<String>> keysByUserId = new LinkedHashMap<>(); // guarded by this
+
+  private final long rotateNanos;
+  private volatile Bloom currentKeys;
+  private volatile Bloom previousKeys;
+  private volatile long rotateAtNanos;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong negativeHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  public Auth0LookupCache(int maxEntries, Duration ttl, Duration negativeTtl) {
+    this.maxEntries = Math.max(1, maxEntries);
+    this.ttlNanos = ttl.toNanos();
+    this.negativeTtlNanos = negativeTtl.toNanos();
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() <= Auth0LookupCache.this.maxEntries) return false;
+        unlinkUser(eldest.getKey(), eldest.getValue().userId());
+        return true;
+      }
+    };
+    this.rotateNanos = Math.max(1, Math.max(ttlNanos, negativeTtlNanos));
+    this.currentKeys = new Bloom(this.maxEntries);
+    this.previousKeys = new Bloom(this.maxEntries);
+    this.rotateAtNanos = System.nanoTime() + rotateNanos;
+  }
+
+  public static String ssoidKey(String ssoid) { return "s:" + ssoid.trim(); }
+  public static String emailKey(String email) { return "e:" + email.trim().toLowerCase(Locale.ROOT); }
+
+  /** Cached answer for a key, or null if Auth0 has to be asked. */
+  public Lookup get(String key) {
+    long h = Hash64.of(key);
+    if (!currentKeys.mightContain(h) && !previousKeys.mightContain(h)) {
+      misses.incrementAndGet();
+      return null;
+    }
+    long now = System.nanoTime();
+    synchronized (this) {
+      Entry e = entries.get(key);
+      if (e != null && e.expiresAtNanos() - now > 0) {
+        if (e.userId() == null) negativeHits.incrementAndGet();
+        else hits.incrementAndGet();
+        return new Lookup(e.userId());
+      }
+      if (e != null) remove(key, e);
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  public void put(String key, String userId) {
+    long now = System.nanoTime();
+    remember(key, now);
+    synchronized (this) {
+      Entry old = entries.put(key, new Entry(userId, now + (userId == null ? negativeTtlNanos : ttlNanos)));
+      if (old != null) unlinkUser(key, old.userId());
+      if (userId != null) keysByUserId.computeIfAbsent(userId, k -> new HashSet<>()).add(key);
+    }
+  }
+
+  /** Forget every key that resolved to this user (called after a delete). */
+  public void invalidateUser(String userId) {
+    if (userId == null) return;
+    synchronized (this) {
+      Set<String> keys = keysByUserId.remove(userId);
+      if (keys == null) return;
+      for (String k : keys) entries.remove(k);
+      invalidations.addAndGet(keys.size());
+    }
+  }
+
+  public synchronized int size() { return entries.size(); }
+  public long getHits() { return hits.get(); }
+  public long getNegativeHits() { return negativeHits.get(); }
+  public long getMisses() { return misses.get(); }
+  public long getInvalidations() { return invalidations.get(); }
+
+  private void remember(String key, long now) {
+    if (now - rotateAtNanos > 0) {
+      synchronized (this) {
+        if (now - rotateAtNanos > 0) {
+          // a live entry is at most one rotation old, so it is still in one of the two filters
+          previousKeys = currentKeys;
+          currentKeys = new Bloom(maxEntries);
+          rotateAtNanos = now + rotateNanos;
+        }
+      }
+    }
+    currentKeys.add(Hash64.of(key));
+  }
+
+  private void remove(String key, Entry e) {
+    entries.remove(key);
+    unlinkUser(key, e.userId());
+  }
+
+  private void unlinkUser(String key, String userId) {
+    if (userId == null) return;
+    Set<String> keys = keysByUserId.get(userId);
+    if (keys != null && keys.remove(key) && keys.isEmpty()) keysByUserId.remove(userId);
+  }
+
+  /**
+   * Fixed-size Bloom filter (~1% false positives at capacity), k=7 probes via double hashing. Lock-free:
+   * bits are only ever set, with a CAS per word.
+   */
+  private static final class Bloom {
+    private final AtomicLongArray bits;
+    private final long nbits;
+
+    Bloom(int capacity) {
+      long n = Math.max(1024, (long) capacity * 10);
+      this.bits = new AtomicLongArray((int) ((n + 63) >>> 6));
+      this.nbits = (long) bits.length() << 6;
+    }
+
+    void add(long h) {
+      long h1 = h, h2 = (h >>> 32) | 1;
+      for (int i = 0; i < 7; i++) {
+        long b = Math.floorMod(h1 + i * h2, nbits);
+        long mask = 1L << (b & 63);
+        int word = (int) (b >>> 6);
+        long cur = bits.get(word);
+        while ((cur & mask) == 0 && !bits.weakCompareAndSetVolatile(word, cur, cur | mask)) cur = bits.get(word);
+      }
+    }
+
+    boolean mightContain(long h) {
+      long h1 = h, h2 = (h >>> 32) | 1;
+      for (int i = 0; i < 7; i++) {
+        long b = Math.floorMod(h1 + i * h2, nbits);
+        if ((bits.get((int) (b >>> 6)) & (1L << (b & 63))) == 0) return false;
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,168 @@
+// app/src/main/java/com/example/auth0cleanupsb/auth0/Auth0RateLimiter.java
+package com.example.auth0cleanupsb.auth0;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpHeaders;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-endpoint token buckets shared by every Auth0 call in the process.
+ * Buckets start at a configured rate and are then re-tuned from Auth0's X-RateLimit-Limit/Remaining/Reset
+ * headers so we throttle before the tenant budget runs out; a 429 pauses the endpoint until Retry-After.
+ */
+public class Auth0RateLimiter {
+  private static final Logger log = LoggerFactory.getLogger(Auth0RateLimiter.class);
+
+  private final double initialRatePerSec;
+  private final double reserveFraction;   // share of X-RateLimit-Limit we never spend
+  private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+  public Auth0RateLimiter(double initialRatePerSec, double reserveFraction) {
+    this.initialRatePerSec = initialRatePerSec > 0 ? initialRatePerSec : 10;
+    this.reserveFraction = Math.min(Math.max(reserveFraction, 0), 0.9);
+  }
+
+  /** Block until a call to this endpoint is allowed. */
+  public void acquire(String endpoint) throws InterruptedException {
+    bucket(endpoint).acquire();
+  }
+
+  /**
+   * Completes once a call to this endpoint is allowed, without holding a thread while waiting:
+   * retries are scheduled on the given timer.
+   */
+  public CompletableFuture<Void> acquireAsync(String endpoint, ScheduledExecutorService timer) {
+    CompletableFuture<Void> f = new CompletableFuture<>();
+    tryAcquireAsync(bucket(endpoint), timer, f);
+    return f;
+  }
+
+  private static void tryAcquireAsync(Bucket b, ScheduledExecutorService timer, CompletableFuture<Void> f) {
+    long waitMs = b.tryAcquire();
+    if (waitMs == 0) {
+      f.complete(null);
+    } else {
+      timer.schedule(() -> tryAcquireAsync(b, timer, f), waitMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Feed the response back so the bucket follows what Auth0 reports. */
+  public void onResponse(String endpoint, int status, HttpHeaders headers) {
+    Bucket b = bucket(endpoint);
+    OptionalLong limit = longHeader(headers, "x-ratelimit-limit");
+    OptionalLong remaining = longHeader(headers, "x-ratelimit-remaining");
+    OptionalLong reset = longHeader(headers, "x-ratelimit-reset");   // epoch seconds
+    long nowMs = System.currentTimeMillis();
+
+    if (limit.isPresent() && remaining.isPresent() && reset.isPresent()) {
+      b.observe(limit.getAsLong(), remaining.getAsLong(), reset.getAsLong() * 1000L, nowMs, reserveFraction);
+    }
+    if (status == 429) {
+      long waitMs = retryAfterMs(headers, reset, nowMs);
+      log.warn("Auth0 429 on {}; pausing endpoint for {} ms", endpoint, waitMs);
+      b.pause(nowMs + waitMs);
+    }
+  }
+
+  /** Current permits per second for an endpoint (for diagnostics). */
+  public double currentRate(String endpoint) { return bucket(endpoint).rate(); }
+
+  /** Last X-RateLimit-Remaining seen for an endpoint, or -1 if none yet. */
+  public long lastRemaining(String endpoint) { return bucket(endpoint).lastRemaining(); }
+
+  private Bucket bucket(String endpoint) {
+    return buckets.computeIfAbsent(endpoint, k -> new Bucket(initialRatePerSec));
+  }
+
+  /** How long to pause after a 429: Retry-After, else X-RateLimit-Reset, else 1s. */
+  private static long retryAfterMs(HttpHeaders headers, OptionalLong reset, long nowMs) {
+    OptionalLong retryAfter = longHeader(headers, "retry-after");
+    if (retryAfter.isPresent()) return Math.max(0, retryAfter.getAsLong()) * 1000L;
+    if (reset.isPresent()) return Math.max(0, reset.getAsLong() * 1000L - nowMs);
+    return 1000L;
+  }
+
+  private static OptionalLong longHeader(HttpHeaders headers, String name) {
+    if (headers == null) return OptionalLong.empty();
+    return headers.firstValue(name).map(v -> {
+      try {
+        return OptionalLong.of(Long.parseLong(v.trim()));
+      } catch (NumberFormatException e) {
+        return OptionalLong.empty(); // Retry-After may be an HTTP date; fall back to the reset header
+      }
+    }).orElse(OptionalLong.empty());
+  }
+
+  /** Classic token bucket; capacity and refill rate are adjusted from response headers. */
+  private static final class Bucket {
+    private double capacity;
+    private double ratePerSec;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private long pausedUntilMs;
+    private volatile long lastRemaining = -1;
+    private final double initialRate;
+
+    Bucket(double ratePerSec) {
+      this.initialRate = ratePerSec;
+      this.ratePerSec = ratePerSec;
+      this.capacity = Math.max(1, ratePerSec);
+      this.tokens = capacity;
+    }
+
+    void acquire() throws InterruptedException {
+      long sleepMs;
+      while ((sleepMs = tryAcquire()) > 0) Thread.sleep(sleepMs);
+    }
+
+    /** Takes a permit and returns 0, or returns how long to wait before trying again. */
+    synchronized long tryAcquire() {
+      long nowMs = System.currentTimeMillis();
+      if (pausedUntilMs > nowMs) return pausedUntilMs - nowMs;
+      refill();
+      if (tokens >= 1) {
+        tokens -= 1;
+        return 0;
+      }
+      return Math.max(1, (long) Math.ceil((1 - tokens) / ratePerSec * 1000.0));
+    }
+
+    synchronized void observe(long limit, long remaining, long resetAtMs, long nowMs, double reserveFraction) {
+      lastRemaining = remaining;
+      refill();
+      long reserve = (long) Math.ceil(limit * reserveFraction);
+      double spendable = Math.max(0, remaining - reserve);
+      capacity = Math.max(1, limit - reserve);
+      if (remaining < limit && resetAtMs > nowMs) {
+        // Auth0 refills continuously and reports when the bucket will be full again: that gives the refill rate
+        double secondsToReset = Math.max(1.0, (resetAtMs - nowMs) / 1000.0);
+        double refillRate = (limit - remaining) / secondsToReset;
+        // reset has 1s granularity, so the estimate is low while the deficit is small; don't throttle a mostly-full bucket
+        ratePerSec = remaining * 2 > limit ? Math.max(refillRate, initialRate) : Math.max(0.1, refillRate);
+      }
+      tokens = Math.min(tokens, spendable);
+    }
+
+    synchronized void pause(long untilMs) {
+      pausedUntilMs = Math.max(pausedUntilMs, untilMs);
+      tokens = 0;
+    }
+
+    synchronized double rate() { return ratePerSec; }
+    long lastRemaining() { return lastRemaining; }
+
+    private void refill() {
+      long now = System.nanoTime();
+      double elapsed = (now - lastRefillNanos) / 1_000_000_000.0;
+      lastRefillNanos = now;
+      tokens = Math.min(capacity, tokens + elapsed * ratePerSec);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package com.example.auth0cleanupsb.auth0;
+
+import com.example.auth0cleanupsb.config.AppProperties;
+import com.example.auth0cleanupsb.config.Auth0TenantConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Auth0 tenants a multi-tenant run can route rows to: the APP_AUTH0_* tenant (named by
+ * APP_AUTH0_DEFAULT_TENANT, when it has a domain) plus those in {@link AppProperties#getAuth0Tenants()}.
+ * Each gets its own {@link Auth0Client}, built on first use and kept, so token and lookup caches and the
+ * learnt rate budget carry over between runs.
+ */
+@Component
+public class Auth0Tenants {
+  private final AppProperties props;
+  private final Auth0Client defaultClient;
+  private final MeterRegistry meters;
+  private final Map<String, Auth0Client> clients = new ConcurrentHashMap<>();
+
+  public Auth0Tenants(AppProperties props, Auth0Client defaultClient, MeterRegistry meters) {
+    this.props = props;
+    this.defaultClient = defaultClient;
+    this.meters = meters;
+  }
+
+  /** Tenant name for a row's tenant cell; blank means the APP_AUTH0_* tenant. */
+  public String nameOf(String tenantCell) {
+    String t = tenantCell == null ? "" : tenantCell.trim();
+    return t.isEmpty() ? defaultName() : t;
+  }
+
+  /** Configured tenants, the APP_AUTH0_* one first. Read per run: SSM tenants load after startup. */
+  public List<String> names() {
+    List<String> out = new ArrayList<>();
+    String domain = props.getAuth0Domain();
+    if (domain != null && !domain.isBlank()) out.add(defaultName());
+    for (String name : props.getAuth0Tenants().keySet()) {
+      if (!out.contains(name)) out.add(name);
+    }
+    return out;
+  }
+
+  public boolean isConfigured(String name) {
+    return names().contains(name);
+  }
+
+  /** Client for a configured tenant; the APP_AUTH0_* tenant is the application's own Auth0Client bean. */
+  public Auth0Client client(String name) {
+    if (name == null || name.isBlank() || name.equals(defaultName())) return defaultClient;
+    Auth0TenantConfig cfg = props.getAuth0Tenants().get(name);
+    if (cfg == null) throw new IllegalArgumentException("No Auth0 tenant '" + name + "' configured");
+    return clients.computeIfAbsent(name, n -> new Auth0Client(props, cfg, meters));
+  }
+
+  private String defaultName() {
+    String name = props.getAuth0DefaultTenant();
+    return name == null || name.isBlank() ? "default" : name.trim();
+  }
+}
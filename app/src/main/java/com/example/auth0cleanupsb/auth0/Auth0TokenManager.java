@@ -0,0 +1,146 @@
+// app/src/main/java/com/example/auth0cleanupsb/auth0/Auth0TokenManager.java
+package com.example.auth0cleanupsb.auth0;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the Management API token until shortly before it expires.
+ * Callers inside the refresh-ahead window get the cached token and kick off a background refresh;
+ * callers without a usable token all wait on the same in-flight /oauth/token exchange.
+ */
+public class Auth0TokenManager {
+  private static final Logger log = LoggerFactory.getLogger(Auth0TokenManager.class);
+
+  /** Performs the actual client-credentials exchange. */
+  @FunctionalInterface
+  public interface TokenSource {
+    IssuedToken fetch() throws Exception;
+  }
+
+  /** Access token plus its lifetime as reported by Auth0 (expires_in). */
+  public record IssuedToken(String accessToken, Duration expiresIn) {}
+
+  private record CachedToken(String accessToken, Instant refreshAt, Instant expiresAt) {}
+
+  private final TokenSource source;
+  private final Duration expirySkew;   // stop handing out the token this long before expiry
+  private final Clock clock;
+  private final ExecutorService refresher;
+
+  private volatile CachedToken current;
+  private CompletableFuture<CachedToken> inFlight; // guarded by this
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong refreshes = new AtomicLong();
+
+  public Auth0TokenManager(TokenSource source, Duration expirySkew) {
+    this(source, expirySkew, Clock.systemUTC());
+  }
+
+  Auth0TokenManager(TokenSource source, Duration expirySkew, Clock clock) {
+    this.source = source;
+    this.expirySkew = expirySkew == null || expirySkew.isNegative() ? Duration.ZERO : expirySkew;
+    this.clock = clock;
+    this.refresher = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "auth0-token-refresh");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /** Return a valid access token, fetching one only when the cache is empty or stale. */
+  public String getToken() throws Exception {
+    CachedToken t = current;
+    Instant now = clock.instant();
+    if (t != null && now.isBefore(t.expiresAt())) {
+      hits.incrementAndGet();
+      if (!now.isBefore(t.refreshAt())) refresh(); // refresh ahead, don't wait for it
+      return t.accessToken();
+    }
+    misses.incrementAndGet();
+    return await(refresh()).accessToken();
+  }
+
+  /** Non-blocking {@link #getToken()}: completes immediately on a cached token, else when the fetch does. */
+  public CompletableFuture<String> getTokenAsync() {
+    CachedToken t = current;
+    Instant now = clock.instant();
+    if (t != null && now.isBefore(t.expiresAt())) {
+      hits.incrementAndGet();
+      if (!now.isBefore(t.refreshAt())) refresh();
+      return CompletableFuture.completedFuture(t.accessToken());
+    }
+    misses.incrementAndGet();
+    return refresh().thenApply(CachedToken::accessToken);
+  }
+
+  /** Drop the cached token if it is still the one the caller used (e.g. after a 401). */
+  public void invalidate(String accessToken) {
+    CachedToken t = current;
+    if (t != null && t.accessToken().equals(accessToken)) {
+      synchronized (this) {
+        if (current == t) current = null;
+      }
+    }
+  }
+
+  public long getHits() { return hits.get(); }
+  public long getMisses() { return misses.get(); }
+  public long getRefreshes() { return refreshes.get(); }
+
+  /** Start a refresh unless one is already running; every caller gets the same future. */
+  private synchronized CompletableFuture<CachedToken> refresh() {
+    if (inFlight != null) return inFlight;
+    refreshes.incrementAndGet();
+    CompletableFuture<CachedToken> f = CompletableFuture.supplyAsync(this::fetchAndCache, refresher);
+    inFlight = f;
+    f.whenComplete((tok, err) -> {
+      synchronized (this) {
+        if (inFlight == f) inFlight = null;
+      }
+      if (err != null) log.warn("Auth0 token refresh failed: {}", err.toString());
+    });
+    return f;
+  }
+
+  private CachedToken fetchAndCache() {
+    try {
+      Instant issuedAt = clock.instant();
+      IssuedToken tok = source.fetch();
+      Duration life = tok.expiresIn() == null ? Duration.ZERO : tok.expiresIn();
+      Instant expiresAt = life.compareTo(expirySkew) > 0
+          ? issuedAt.plus(life).minus(expirySkew)
+          : issuedAt.plus(life.dividedBy(2)); // very short-lived token: skew would eat it all
+      // refresh in the background once 80% of the usable lifetime is gone
+      Instant refreshAt = issuedAt.plus(Duration.between(issuedAt, expiresAt).multipliedBy(4).dividedBy(5));
+      CachedToken cached = new CachedToken(tok.accessToken(), refreshAt, expiresAt);
+      current = cached;
+      log.debug("Auth0 token refreshed; usable until {}", expiresAt);
+      return cached;
+    } catch (Exception e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  private static CachedToken await(CompletableFuture<CachedToken> f) throws Exception {
+    try {
+      return f.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception ex) throw ex;
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+// app/src/main/java/com/example/auth0cleanupsb/auth0/SsoidPathStats.java
+package com.example.auth0cleanupsb.auth0;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts which metadata path SSOIDs are actually found on, so lookups try the most productive path first.
+ * Ties keep the configured order, so a fresh instance behaves exactly like the static path list.
+ */
+public class SsoidPathStats {
+  private final List<String> paths;
+  private final Map<String, AtomicLong> hits = new ConcurrentHashMap<>();
+
+  public SsoidPathStats(List<String> paths) {
+    this.paths = List.copyOf(paths);
+    for (String p : paths) hits.put(p, new AtomicLong());
+  }
+
+  public void recordHit(String path) {
+    AtomicLong c = hits.get(path);
+    if (c != null) c.incrementAndGet();
+  }
+
+  public void recordHits(String path, long n) {
+    AtomicLong c = hits.get(path);
+    if (c != null && n > 0) c.addAndGet(n);
+  }
+
+  /** Paths by descending hit count (stable). */
+  public List<String> orderedPaths() {
+    List<String> out = new ArrayList<>(paths);
+    out.sort(Comparator.comparingLong((String p) -> hits.get(p).get()).reversed());
+    return out;
+  }
+
+  /** SSOIDs found on a path so far; reported as auth0.ssoid.path.hits. */
+  public long hits(String path) {
+    AtomicLong c = hits.get(path);
+    return c == null ? 0 : c.get();
+  }
+}
@@ -1,28 +1,66 @@
 package com.example.auth0cleanupsb.batch;
 
 import com.example.auth0cleanupsb.auth0.Auth0Client;
+import com.example.auth0cleanupsb.auth0.Auth0Tenants;
+import com.example.auth0cleanupsb.batch.io.DeduplicatingUserReader;
+import com.example.auth0cleanupsb.batch.io.DeleteResultWriter;
+import com.example.auth0cleanupsb.batch.io.FutureUnwrappingItemWriter;
+import com.example.auth0cleanupsb.batch.io.ResolvingUserReader;
 import com.example.auth0cleanupsb.batch.io.S3CsvResultWriter;
 import com.example.auth0cleanupsb.batch.io.S3CsvUserReader;
+import com.example.auth0cleanupsb.batch.io.S3MultipartCsvResultWriter;
+import com.example.auth0cleanupsb.batch.io.S3ShardedCsvResultWriter;
+import com.example.auth0cleanupsb.batch.io.TenantFilteringReader;
+import com.example.auth0cleanupsb.batch.listener.StepThroughputListener;
 import com.example.auth0cleanupsb.batch.model.DeleteResult;
 import com.example.auth0cleanupsb.batch.model.UserDeleteRecord;
+import com.example.auth0cleanupsb.batch.partition.S3CsvRangePartitioner;
+import com.example.auth0cleanupsb.batch.partition.TenantPartitioner;
+import com.example.auth0cleanupsb.batch.policy.AdaptiveCompletionPolicy;
 import com.example.auth0cleanupsb.batch.processor.Auth0DeleteProcessor;
+import com.example.auth0cleanupsb.batch.processor.BoundedAsyncItemProcessor;
+import com.example.auth0cleanupsb.batch.processor.ConcurrentItemProcessor;
+import com.example.auth0cleanupsb.batch.resolve.Auth0SearchIdentityResolver;
+import com.example.auth0cleanupsb.batch.resolve.LocalIdentityIndexProvider;
+import com.example.auth0cleanupsb.batch.resolve.LocalIndexIdentityResolver;
+import com.example.auth0cleanupsb.batch.tasklet.ShardCompactionTasklet;
+import com.example.auth0cleanupsb.batch.tasklet.ShardManifestTasklet;
 import com.example.auth0cleanupsb.config.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.job.builder.FlowBuilder;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
+import org.springframework.batch.core.job.flow.support.SimpleFlow;
 import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemStreamReader;
-import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 import software.amazon.awssdk.services.s3.S3Client;
 
+import java.time.Duration;
+import java.util.concurrent.Future;
 
 
 @Configuration
@@ -32,46 +70,249 @@ public class JobConfig {
 
 @Bean
 @StepScope  // optional but recommended
-public ItemStreamReader<UserDeleteRecord> s3Reader(S3Client s3, AppProperties props) {
-  return new S3CsvUserReader(s3, props, true);
+public ItemStreamReader<UserDeleteRecord> s3Reader(S3Client s3, AppProperties props, Auth0Tenants tenants,
+                                                  LocalIdentityIndexProvider identityIndex,
+                                                  @Value("#{stepExecutionContext['partition.startByte']}") Long startByte,
+                                                  @Value("#{stepExecutionContext['partition.endByte']}") Long endByte,
+                                                  @Value("#{stepExecutionContext['partition.headerLine']}") String headerLine,
+                                                  @Value("#{stepExecutionContext['partition.tenant']}") String tenant,
+                                                  @Value("#{stepExecutionContext['partition.takesUnknownTenants']}") String takesUnknown,
+                                                  MeterRegistry meters) {
+  // partition keys are only present when running as a worker of partitionedDeleteUsersStep
+  ItemStreamReader<UserDeleteRecord> reader = startByte == null
+      ? new S3CsvUserReader(s3, props, true)
+      : new S3CsvUserReader(s3, props, true, startByte, endByte, headerLine);
+  Auth0Client auth0 = tenants.client(tenant);
+  if (tenant != null) {
+    // worker of tenantDeleteUsersStep: only this tenant's rows, looked up in this tenant
+    reader = new TenantFilteringReader(reader, tenants, tenant, Boolean.parseBoolean(takesUnknown));
+  }
+  if (props.isInputDedup()) {
+    // repeated identities are reported as DUPLICATE before any lookup is spent on them
+    reader = new DeduplicatingUserReader(reader, Counter.builder("batch.input.duplicates")
+        .description("Input rows skipped as repeats of an earlier row").register(meters));
+  }
+  // the users export is the APP_AUTH0_* tenant's; other tenants resolve through their own client
+  if ("export".equalsIgnoreCase(props.getIdentityResolution()) && auth0 == tenants.client(null)) {
+    // resolve every row from a local index of a users export; Auth0 calls are spent on deletes only
+    reader = new ResolvingUserReader(reader, new LocalIndexIdentityResolver(identityIndex),
+        Math.max(500, props.getAuth0LookupBatchSize()));
+  } else if (props.getAuth0LookupBatchSize() > 1) {
+    // resolve user_ids for many rows per Auth0 search instead of one row at a time
+    reader = new ResolvingUserReader(reader,
+        new Auth0SearchIdentityResolver(auth0, props.getAuth0LookupMaxQueryChars()),
+        props.getAuth0LookupBatchSize());
+  }
+  return reader;
 }
 
   @Bean
   @StepScope
-  public ItemProcessor<UserDeleteRecord, DeleteResult> deleteProcessor(
-      Auth0Client auth0,
+  public Auth0DeleteProcessor deleteProcessor(
+      Auth0Tenants tenants,
       // default to "false" if not provided
-      @Value("#{jobParameters['dryRun'] ?: 'false'}") String dryRun) {
-    return new Auth0DeleteProcessor(auth0, dryRun);
+      @Value("#{jobParameters['dryRun'] ?: 'false'}") String dryRun,
+      // set on workers of tenantDeleteUsersStep only
+      @Value("#{stepExecutionContext['partition.tenant']}") String tenant,
+      MeterRegistry meters) {
+    return new Auth0DeleteProcessor(tenants.client(tenant), tenant, dryRun, meters);
   }
 
 @Bean
 @StepScope
-public ItemStreamWriter<DeleteResult> s3Writer(S3Client s3, AppProperties props) {
-  return new S3CsvResultWriter(s3, props);
+public DeleteResultWriter s3Writer(S3Client s3, AppProperties props,
+                                   @Value("#{stepExecutionContext['partition.outputKey']}") String outputKey,
+                                   @Value("#{stepExecutionContext['partition.index'] ?: 0}") Integer partition,
+                                   @Value("#{stepExecution.jobExecution}") JobExecution jobExecution) {
+  if ("sharded".equalsIgnoreCase(props.getOutputWriterMode())) {
+    return new S3ShardedCsvResultWriter(s3, props, S3ShardedCsvResultWriter.runId(jobExecution), partition);
+  }
+  if ("multipart".equalsIgnoreCase(props.getOutputWriterMode())) {
+    return new S3MultipartCsvResultWriter(s3, props, outputKey);
+  }
+  return new S3CsvResultWriter(s3, props, outputKey);
 }
 
+  /**
+   * Runs the processor for each chunk's items in parallel; the `concurrency` job parameter caps
+   * in-flight Auth0 calls. 1 (default) keeps everything on the step thread.
+   * Not used with APP_AUTH0_ASYNC_PIPELINE=true, see asyncDeleteCalls.
+   */
+  @Bean
+  @StepScope
+  public TaskExecutor auth0CallExecutor(@Value("#{jobParameters['concurrency'] ?: 1}") Long concurrency) {
+    int n = concurrency == null ? 1 : (int) Math.max(1, concurrency);
+    if (n == 1) return new SyncTaskExecutor();
+    ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
+    ex.setCorePoolSize(n);
+    ex.setMaxPoolSize(n);
+    ex.setThreadNamePrefix("auth0-call-");
+    ex.setDaemon(true);
+    ex.initialize();
+    return ex; // shut down by the step scope when the step ends
+  }
+
+  /**
+   * APP_AUTH0_ASYNC_PIPELINE=true: the chunk's items are in flight on the async client instead of a thread
+   * each, still at most `concurrency` (job parameter, default 1) at a time per step.
+   */
+  @Bean
+  @StepScope
+  public ItemProcessor<UserDeleteRecord, Future<DeleteResult>> asyncDeleteCalls(
+      Auth0DeleteProcessor processor,
+      @Value("#{jobParameters['concurrency'] ?: 1}") Long concurrency) {
+    int n = concurrency == null ? 1 : (int) Math.max(1, concurrency);
+    return new BoundedAsyncItemProcessor<>(processor::processAsync, n);
+  }
+
+  /**
+   * Runs jobs launched by POST /batch/run off the servlet thread, APP_BATCH_MAX_CONCURRENT_JOBS at a time;
+   * queued runs wait here (BatchController caps the queue).
+   */
+  @Bean
+  public ThreadPoolTaskExecutor batchJobExecutor(AppProperties props) {
+    int n = Math.max(1, props.getBatchMaxConcurrentJobs());
+    ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
+    ex.setCorePoolSize(n);
+    ex.setMaxPoolSize(n);
+    ex.setThreadNamePrefix("batch-job-");
+    return ex;
+  }
+
+  /** batch.step.items / batch.step.items.per.second for deleteUsersStep, including its partition workers. */
+  @Bean
+  public StepThroughputListener stepThroughputListener(MeterRegistry meters) {
+    return new StepThroughputListener(meters);
+  }
+
   // Step & Job (Boot provides JobRepository and TX manager via H2 datasource)
 
   @Bean
   public Step deleteUsersStep(JobRepository repo,
                               PlatformTransactionManager transactionManager,
                               ItemStreamReader<UserDeleteRecord> reader,
-                              ItemProcessor<UserDeleteRecord, DeleteResult> processor,
-                              ItemStreamWriter<DeleteResult> writer) {
-    return new StepBuilder("deleteUsersStep", repo)
-        .<UserDeleteRecord, DeleteResult>chunk(new SimpleCompletionPolicy(50))
+                              Auth0DeleteProcessor processor,
+                              ItemProcessor<UserDeleteRecord, Future<DeleteResult>> asyncDeleteCalls,
+                              DeleteResultWriter writer,
+                              TaskExecutor auth0CallExecutor,
+                              StepThroughputListener stepThroughputListener,
+                              MeterRegistry meters,
+                              AppProperties props) {
+    ItemProcessor<UserDeleteRecord, Future<DeleteResult>> calls = props.isAuth0AsyncPipeline()
+        ? asyncDeleteCalls
+        : new ConcurrentItemProcessor<>(processor, auth0CallExecutor);
+    // one policy for the step singleton, so partition workers share (and runs keep) the size it has learnt
+    AdaptiveCompletionPolicy adaptive = props.isBatchChunkAdaptive()
+        ? new AdaptiveCompletionPolicy("deleteUsersStep", props.getBatchChunkSize(), props.getBatchChunkMinSize(),
+            props.getBatchChunkMaxSize(), Duration.ofMillis(props.getBatchChunkTargetMillis()), meters)
+        : null;
+    SimpleStepBuilder<UserDeleteRecord, Future<DeleteResult>> step = new StepBuilder("deleteUsersStep", repo)
+        .<UserDeleteRecord, Future<DeleteResult>>chunk(adaptive != null ? adaptive
+            : new SimpleCompletionPolicy(Math.max(1, props.getBatchChunkSize())))
         .reader(reader)
-        .processor(processor)
-        .writer(writer)
-        .transactionManager(transactionManager)
+        .processor(calls)
+        .writer(new FutureUnwrappingItemWriter<>(adaptive != null ? adaptive.timing(writer) : writer))
+        .listener((StepExecutionListener) stepThroughputListener)
+        .listener((StepExecutionListener) writer)
+        .listener((ChunkListener) stepThroughputListener);
+    if (adaptive != null) step.listener((ChunkListener) adaptive);
+    return step.transactionManager(transactionManager).build();
+  }
+
+  /**
+   * Splits the input into byte ranges (the `partitions` job parameter, capped at 64) for
+   * partitionedDeleteUsersStep. Each range runs deleteUsersStep on its own thread and writes its own shard.
+   */
+  @Bean
+  @StepScope
+  public S3CsvRangePartitioner inputPartitioner(S3Client s3, AppProperties props,
+                                                @Value("#{jobParameters['partitions'] ?: 1}") Long partitions) {
+    return new S3CsvRangePartitioner(s3, props, true, (int) Math.min(64, Math.max(1, partitions)));
+  }
+
+  @Bean
+  public Step partitionedDeleteUsersStep(JobRepository repo, Step deleteUsersStep, S3CsvRangePartitioner inputPartitioner) {
+    SimpleAsyncTaskExecutor workers = new SimpleAsyncTaskExecutor("partition-");
+    workers.setDaemon(true);
+    return new StepBuilder("partitionedDeleteUsersStep", repo)
+        .partitioner(deleteUsersStep.getName(), inputPartitioner)
+        .step(deleteUsersStep)
+        .taskExecutor(workers)
+        .build();
+  }
+
+  @Bean
+  public TenantPartitioner tenantPartitioner(Auth0Tenants tenants, AppProperties props) {
+    return new TenantPartitioner(tenants, props);
+  }
+
+  /**
+   * Multi-tenant runs (job parameter multiTenant=true): deleteUsersStep once per configured tenant, all in
+   * parallel, each on its tenant's own Auth0Client. The partitions job parameter does not apply.
+   */
+  @Bean
+  public Step tenantDeleteUsersStep(JobRepository repo, Step deleteUsersStep, TenantPartitioner tenantPartitioner) {
+    SimpleAsyncTaskExecutor workers = new SimpleAsyncTaskExecutor("tenant-");
+    workers.setDaemon(true);
+    return new StepBuilder("tenantDeleteUsersStep", repo)
+        .partitioner(deleteUsersStep.getName(), tenantPartitioner)
+        .step(deleteUsersStep)
+        .taskExecutor(workers)
         .build();
   }
 
+  /** Sharded output only: lists the run's shards with row counts in manifest.json. */
+  @Bean
+  @StepScope
+  public Tasklet shardManifestTasklet(S3Client s3, AppProperties props, JobExplorer jobExplorer) {
+    if (!"sharded".equalsIgnoreCase(props.getOutputWriterMode())) return (contribution, chunk) -> RepeatStatus.FINISHED;
+    return new ShardManifestTasklet(s3, props, jobExplorer);
+  }
+
+  /** Sharded output with APP_OUTPUT_COMPACT=true: merges the shards into the legacy APP_S3_KEY object. */
+  @Bean
+  @StepScope
+  public Tasklet shardCompactionTasklet(S3Client s3, AppProperties props,
+                                        @Value("#{stepExecution.jobExecution}") JobExecution jobExecution) {
+    if (!"sharded".equalsIgnoreCase(props.getOutputWriterMode()) || !props.isOutputCompact()) {
+      return (contribution, chunk) -> RepeatStatus.FINISHED;
+    }
+    return new ShardCompactionTasklet(s3, props, S3ShardedCsvResultWriter.runId(jobExecution));
+  }
+
+  @Bean
+  public Step writeShardManifestStep(JobRepository repo, PlatformTransactionManager transactionManager,
+                                     Tasklet shardManifestTasklet) {
+    return new StepBuilder("writeShardManifestStep", repo).tasklet(shardManifestTasklet, transactionManager).build();
+  }
+
+  @Bean
+  public Step compactShardsStep(JobRepository repo, PlatformTransactionManager transactionManager,
+                                Tasklet shardCompactionTasklet) {
+    return new StepBuilder("compactShardsStep", repo).tasklet(shardCompactionTasklet, transactionManager).build();
+  }
+
   @Bean
-  public Job deleteUsersJob(JobRepository repo, Step deleteUsersStep) {
+  public Job deleteUsersJob(JobRepository repo, Step deleteUsersStep, Step partitionedDeleteUsersStep,
+                            Step tenantDeleteUsersStep, Step writeShardManifestStep, Step compactShardsStep) {
+    JobExecutionDecider mode = (jobExecution, stepExecution) -> {
+      if (Boolean.parseBoolean(jobExecution.getJobParameters().getString("multiTenant"))) {
+        return new FlowExecutionStatus("TENANTS");
+      }
+      Long partitions = jobExecution.getJobParameters().getLong("partitions");
+      return new FlowExecutionStatus(partitions != null && partitions > 1 ? "PARTITIONED" : "SINGLE");
+    };
+    Flow processInput = new FlowBuilder<SimpleFlow>("processInput")
+        .start(mode)
+        .on("TENANTS").to(tenantDeleteUsersStep)
+        .from(mode).on("PARTITIONED").to(partitionedDeleteUsersStep)
+        .from(mode).on("*").to(deleteUsersStep)
+        .build();
     return new JobBuilder("deleteUsersJob", repo)
-        .start(deleteUsersStep)
+        .start(processInput)
+        .next(writeShardManifestStep)
+        .next(compactShardsStep)
+        .end()
         .build();
   }
 }
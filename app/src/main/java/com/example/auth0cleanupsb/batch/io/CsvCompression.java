@@ -0,0 +1,78 @@
+package com.example.auth0cleanupsb.batch.io;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of batch CSV objects. Output is written as a series of complete gzip members / zstd frames
+ * (one per chunk); concatenations of those are valid .gz/.zst files, which keeps append and restart simple.
+ */
+public enum CsvCompression {
+  NONE("", "text/csv; charset=utf-8"),
+  GZIP(".gz", "application/gzip"),
+  ZSTD(".zst", "application/zstd");
+
+  private final String suffix;
+  private final String contentType;
+
+  CsvCompression(String suffix, String contentType) {
+    this.suffix = suffix;
+    this.contentType = contentType;
+  }
+
+  public String suffix() { return suffix; }
+  public String contentType() { return contentType; }
+
+  /** From a setting such as APP_OUTPUT_COMPRESSION: none | gzip | zstd. */
+  public static CsvCompression named(String name) {
+    String n = name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    return switch (n) {
+      case "gzip", "gz" -> GZIP;
+      case "zstd", "zst" -> ZSTD;
+      case "", "none" -> NONE;
+      default -> throw new IllegalArgumentException("Unknown compression '" + name + "' (none, gzip, zstd)");
+    };
+  }
+
+  /** Detect an input's compression from its Content-Encoding, falling back to the key suffix. */
+  public static CsvCompression detect(String key, String contentEncoding) {
+    String enc = contentEncoding == null ? "" : contentEncoding.trim().toLowerCase(Locale.ROOT);
+    if (enc.contains("gzip")) return GZIP;
+    if (enc.contains("zstd")) return ZSTD;
+    String k = key == null ? "" : key.toLowerCase(Locale.ROOT);
+    if (k.endsWith(".gz") || k.endsWith(".gzip")) return GZIP;
+    if (k.endsWith(".zst") || k.endsWith(".zstd")) return ZSTD;
+    return NONE;
+  }
+
+  /** key with this codec's suffix, unless it already has it. */
+  public String applyTo(String key) {
+    return key == null || key.toLowerCase(Locale.ROOT).endsWith(suffix) ? key : key + suffix;
+  }
+
+  public InputStream decompress(InputStream in) throws IOException {
+    return switch (this) {
+      case NONE -> in;
+      case GZIP -> new GZIPInputStream(in, 64 * 1024);    // reads concatenated members
+      case ZSTD -> new ZstdInputStream(in);               // reads concatenated frames
+    };
+  }
+
+  /** One complete, independently decodable member/frame for these bytes. */
+  public byte[] compress(byte[] plain) throws IOException {
+    if (this == NONE) return plain;
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, plain.length / 3));
+    try (OutputStream out = this == GZIP ? new GZIPOutputStream(bos, 64 * 1024) : new ZstdOutputStream(bos, 3)) {
+      out.write(plain);
+    }
+    return bos.toByteArray();
+  }
+}
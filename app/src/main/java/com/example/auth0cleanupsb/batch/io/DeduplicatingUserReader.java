@@ -0,0 +1,84 @@
+package com.example.auth0cleanupsb.batch.io;
+
+import com.example.auth0cleanupsb.batch.model.UserDeleteRecord;
+import com.example.auth0cleanupsb.util.Hash64;
+import com.example.auth0cleanupsb.util.LongHashSet;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+import java.util.Locale;
+
+/**
+ * Marks rows whose identity already appeared earlier in the input, so the processor reports them as
+ * DUPLICATE without calling Auth0 (the first row already did the search and delete).
+ *
+ * The identity is what the processor would look the row up by, within the row's tenant: the user_id if
+ * present, else ssoid and email together (email is the ssoid fallback), else the email. Seen identities are
+ * kept as 64-bit hashes in a {@link LongHashSet} (~10 bytes per row).
+ *
+ * The set lives for one step execution: after a restart only rows read since the restart are compared, and
+ * in a byte-range partitioned run each worker only compares the rows of its own range (a repeat in another
+ * range is looked up again and ends as ERROR with a 404 once the first copy deleted the user).
+ */
+public class DeduplicatingUserReader implements ItemStreamReader<UserDeleteRecord> {
+  private static final Logger log = LoggerFactory.getLogger(DeduplicatingUserReader.class);
+  private static final String CTX_DUPLICATES = "dedup.duplicates";
+
+  private final ItemStreamReader<UserDeleteRecord> delegate;
+  private final Counter duplicatesCounter;
+  private LongHashSet seen;
+  private long duplicates;
+
+  public DeduplicatingUserReader(ItemStreamReader<UserDeleteRecord> delegate, Counter duplicatesCounter) {
+    this.delegate = delegate;
+    this.duplicatesCounter = duplicatesCounter;
+  }
+
+  @Override
+  public void open(ExecutionContext ctx) throws ItemStreamException {
+    delegate.open(ctx);
+    seen = new LongHashSet(1 << 16);
+    duplicates = ctx.getLong(CTX_DUPLICATES, 0);
+  }
+
+  @Override
+  public UserDeleteRecord read() throws Exception {
+    UserDeleteRecord r = delegate.read();
+    if (r == null) return null;
+    String id = identity(r);
+    if (id == null || seen.add(Hash64.of(id))) return r;
+    duplicates++;
+    if (duplicatesCounter != null) duplicatesCounter.increment();
+    return r.asDuplicate();
+  }
+
+  @Override
+  public void update(ExecutionContext ctx) throws ItemStreamException {
+    delegate.update(ctx);
+    ctx.putLong(CTX_DUPLICATES, duplicates);
+  }
+
+  @Override
+  public void close() throws ItemStreamException {
+    if (seen != null) log.info("Input dedup: {} distinct identities, {} duplicate rows", seen.size(), duplicates);
+    seen = null;
+    delegate.close();
+  }
+
+  private static String identity(UserDeleteRecord r) {
+    // the same user_id in another tenant is another user (and a row for an unconfigured tenant, passed on
+    // by the first tenant partition, must not shadow that tenant's own row)
+    String tenant = r.getTenant().trim() + "\n";
+    String uid = r.getUserId().trim();
+    if (!uid.isEmpty()) return tenant + "u:" + uid;
+    String ssoid = r.getSsoid().trim();
+    String email = r.getEmail().trim().toLowerCase(Locale.ROOT);
+    if (!ssoid.isEmpty()) return tenant + "s:" + ssoid + "\n" + email;
+    if (!email.isEmpty()) return tenant + "e:" + email;
+    return null; // nothing to look up; the processor reports it as NOT_FOUND anyway
+  }
+}
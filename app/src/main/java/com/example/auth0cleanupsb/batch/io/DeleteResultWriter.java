@@ -0,0 +1,13 @@
+package com.example.auth0cleanupsb.batch.io;
+
+import com.example.auth0cleanupsb.batch.model.DeleteResult;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ItemStreamWriter;
+
+/**
+ * Result writer of deleteUsersStep. It is also registered as the step's listener, so a writer with work
+ * left after the last chunk can do it in afterStep, where a failure still fails the step; close() runs
+ * after the step was stored as COMPLETED and can only log.
+ */
+public interface DeleteResultWriter extends ItemStreamWriter<DeleteResult>, StepExecutionListener {
+}
@@ -0,0 +1,39 @@
+package com.example.auth0cleanupsb.batch.io;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/** Waits for the chunk's processor futures (in read order) and passes the results to the real writer. */
+public class FutureUnwrappingItemWriter<T> implements ItemStreamWriter<Future<T>> {
+  private final ItemStreamWriter<T> delegate;
+
+  public FutureUnwrappingItemWriter(ItemStreamWriter<T> delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void write(Chunk<? extends Future<T>> items) throws Exception {
+    Chunk<T> results = new Chunk<>();
+    for (Future<T> f : items.getItems()) {
+      T r;
+      try {
+        r = f.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception ex) throw ex;
+        throw e;
+      }
+      if (r != null) results.add(r); // null = filtered by the processor
+    }
+    delegate.write(results);
+  }
+
+  @Override public void open(ExecutionContext ctx) throws ItemStreamException { delegate.open(ctx); }
+  @Override public void update(ExecutionContext ctx) throws ItemStreamException { delegate.update(ctx); }
+  @Override public void close() throws ItemStreamException { delegate.close(); }
+}
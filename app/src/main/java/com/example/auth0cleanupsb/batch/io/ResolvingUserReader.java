@@ -0,0 +1,115 @@
+package com.example.auth0cleanupsb.batch.io;
+
+import com.example.auth0cleanupsb.batch.model.UserDeleteRecord;
+import com.example.auth0cleanupsb.batch.resolve.IdentityResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads ahead a batch of rows from the delegate and resolves their user_ids in one go,
+ * so the processor only spends Auth0 calls on deletes.
+ *
+ * Restart-safe: while a batch is only partly handed out, update() saves the delegate's state from
+ * before the batch was read plus how many of its rows were already emitted; open() skips those again.
+ */
+public class ResolvingUserReader implements ItemStreamReader<UserDeleteRecord> {
+  private static final Logger log = LoggerFactory.getLogger(ResolvingUserReader.class);
+  private static final String CTX_EMITTED = "resolvingReader.emittedFromBatch";
+
+  private final ItemStreamReader<UserDeleteRecord> delegate;
+  private final IdentityResolver resolver;
+  private final int batchSize;
+
+  private final Deque<UserDeleteRecord> buffer = new ArrayDeque<>();
+  private ExecutionContext beforeBatch = new ExecutionContext(); // delegate state before the current batch
+  private int emittedFromBatch;
+  private int skipOnRefill;
+
+  public ResolvingUserReader(ItemStreamReader<UserDeleteRecord> delegate, IdentityResolver resolver, int batchSize) {
+    this.delegate = delegate;
+    this.resolver = resolver;
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  @Override
+  public void open(ExecutionContext ctx) throws ItemStreamException {
+    delegate.open(ctx);
+    buffer.clear();
+    emittedFromBatch = 0;
+    skipOnRefill = ctx.getInt(CTX_EMITTED, 0);
+  }
+
+  @Override
+  public UserDeleteRecord read() throws Exception {
+    if (buffer.isEmpty()) fill();
+    UserDeleteRecord next = buffer.poll();
+    if (next != null) emittedFromBatch++;
+    return next;
+  }
+
+  @Override
+  public void update(ExecutionContext ctx) throws ItemStreamException {
+    if (buffer.isEmpty()) {
+      delegate.update(ctx);
+      ctx.putInt(CTX_EMITTED, 0);
+    } else {
+      for (Map.Entry<String, Object> e : beforeBatch.entrySet()) ctx.put(e.getKey(), e.getValue());
+      ctx.putInt(CTX_EMITTED, emittedFromBatch);
+    }
+  }
+
+  @Override
+  public void close() throws ItemStreamException {
+    buffer.clear();
+    delegate.close();
+  }
+
+  private void fill() throws Exception {
+    while (buffer.isEmpty()) {
+      beforeBatch = new ExecutionContext();
+      delegate.update(beforeBatch);
+
+      List<UserDeleteRecord> batch = new ArrayList<>(batchSize);
+      UserDeleteRecord r;
+      while (batch.size() < batchSize && (r = delegate.read()) != null) batch.add(r);
+      if (batch.isEmpty()) return;
+
+      // restart inside a batch: rows already emitted and committed are skipped before any lookup
+      int skip = Math.min(skipOnRefill, batch.size());
+      skipOnRefill -= skip;
+      emittedFromBatch = skip;
+      List<UserDeleteRecord> todo = batch.subList(skip, batch.size());
+      if (todo.isEmpty()) continue;
+
+      try {
+        buffer.addAll(resolveUnique(todo));
+      } catch (Exception e) {
+        // leave the rows unresolved; the processor falls back to per-row lookups
+        log.warn("Batched identity lookup failed for {} rows: {}", todo.size(), e.toString());
+        buffer.addAll(todo);
+      }
+    }
+  }
+
+  /** Duplicates are answered without a lookup, so only the other rows go to the resolver. */
+  private List<UserDeleteRecord> resolveUnique(List<UserDeleteRecord> rows) throws Exception {
+    List<UserDeleteRecord> unique = new ArrayList<>(rows.size());
+    for (UserDeleteRecord r : rows) if (!r.isDuplicate()) unique.add(r);
+    if (unique.size() == rows.size()) return resolver.resolve(rows);
+
+    Iterator<UserDeleteRecord> resolved = resolver.resolve(unique).iterator();
+    List<UserDeleteRecord> out = new ArrayList<>(rows.size());
+    for (UserDeleteRecord r : rows) out.add(r.isDuplicate() ? r : resolved.next());
+    return out;
+  }
+}
@@ -7,7 +7,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.Chunk;
 import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemStreamException;
-import org.springframework.batch.item.ItemStreamWriter;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
@@ -20,31 +19,52 @@ import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-public class S3CsvResultWriter implements ItemStreamWriter<DeleteResult> {
+public class S3CsvResultWriter implements DeleteResultWriter {
   private static final Logger log = LoggerFactory.getLogger(S3CsvResultWriter.class);
+  static final String HEADER = "ssoid,email,auth0_user_id,status,deactivation_flag,last_update_timestamp,error\n";
 
   private final S3Client s3;
   private final AppProperties props;
+  private final String outputKey;       // null = APP_S3_KEY; set for partition shards
 
+  private final CsvCompression codec;
   private String bucket;   // resolved at open()
   private String key;      // resolved at open()
   private boolean headerPresent;
+  private ExecutorService compressor;   // only for compressed output
 
   public S3CsvResultWriter(S3Client s3, AppProperties props) {
+    this(s3, props, null);
+  }
+
+  public S3CsvResultWriter(S3Client s3, AppProperties props, String outputKey) {
     this.s3 = s3;
     this.props = props;
+    this.outputKey = outputKey;
+    this.codec = CsvCompression.named(props.getOutputCompression());
   }
 
   @Override
   public void open(ExecutionContext ctx) throws ItemStreamException {
     this.bucket = nz(props.getS3Bucket());
-    this.key    = nz(props.getOutputS3Key());
+    this.key    = codec.applyTo(outputKey != null ? outputKey : nz(props.getOutputS3Key()));
 
     if (bucket.isBlank()) throw new ItemStreamException("S3 bucket is blank");
     if (key.isBlank())    throw new ItemStreamException("S3 key is blank");
 
     log.info("Opening S3 CSV writer s3://{}/{}", bucket, key);
+    if (codec != CsvCompression.NONE && compressor == null) {
+      compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "csv-compress");
+        t.setDaemon(true);
+        return t;
+      });
+    }
 
     try {
       HeadObjectResponse head = s3.headObject(HeadObjectRequest.builder()
@@ -69,45 +89,58 @@ public class S3CsvResultWriter implements ItemStreamWriter<DeleteResult> {
     StringBuilder sb = new StringBuilder(1024);
 
     if (!headerPresent) {
-      sb.append("ssoid,email,auth0_user_id,status,deactivation_flag,last_update_timestamp,error\n");
+      sb.append(HEADER);
       headerPresent = true;
     }
 
-    for (DeleteResult r : items.getItems()) {
-      String err = r.getError() == null ? "" : r.getError().replace("\"", "\"\"");
-      sb.append(nz(r.getSsoid())).append(',')
-        .append(nz(r.getEmail())).append(',')
-        .append(nz(r.getAuth0UserId())).append(',')
-        .append(nz(r.getStatus())).append(',')
-        .append(nz(r.getDeactivationFlag())).append(',')
-        .append(nz(r.getLastUpdateTimestamp())).append(',')
-        .append('"').append(err).append('"')
-        .append('\n');
-    }
+    for (DeleteResult r : items.getItems()) appendRow(sb, r);
 
-    byte[] newChunk = sb.toString().getBytes(StandardCharsets.UTF_8);
+    // compressed output: each chunk is its own gzip member / zstd frame, so appending stays a byte concat.
+    // The chunk must be in S3 before it commits, so compression only overlaps with fetching the existing object.
+    byte[] rows = sb.toString().getBytes(StandardCharsets.UTF_8);
+    Future<byte[]> compressed = compressor == null ? null : compressor.submit(() -> codec.compress(rows));
     byte[] toUpload;
 
-    if (objectExists(bucket, key)) {
-      byte[] existing = readAll(s3.getObject(GetObjectRequest.builder()
-          .bucket(bucket).key(key).build()));
-      toUpload = concat(existing, newChunk);
-    } else {
-      toUpload = newChunk;
+    try {
+      byte[] existing = objectExists(bucket, key)
+          ? readAll(s3.getObject(GetObjectRequest.builder().bucket(bucket).key(key).build()))
+          : null;
+      byte[] newChunk = compressed == null ? rows : await(compressed);
+      toUpload = existing == null ? newChunk : concat(existing, newChunk);
+    } finally {
+      if (compressed != null) compressed.cancel(true);   // no-op once done
     }
 
     s3.putObject(
         PutObjectRequest.builder()
             .bucket(bucket)
             .key(key)
-            .contentType("text/csv; charset=utf-8")
+            .contentType(codec.contentType())
             .build(),
         RequestBody.fromBytes(toUpload)
     );
   }
 
   @Override public void update(ExecutionContext ctx) {}
-  @Override public void close() {}
+
+  @Override
+  public void close() {
+    if (compressor != null) compressor.shutdownNow();
+    compressor = null;
+  }
+
+  /** One output CSV line; shared by the other result writers so the format stays identical. */
+  static void appendRow(StringBuilder sb, DeleteResult r) {
+    String err = r.getError() == null ? "" : r.getError().replace("\"", "\"\"");
+    sb.append(nz(r.getSsoid())).append(',')
+      .append(nz(r.getEmail())).append(',')
+      .append(nz(r.getAuth0UserId())).append(',')
+      .append(nz(r.getStatus())).append(',')
+      .append(nz(r.getDeactivationFlag())).append(',')
+      .append(nz(r.getLastUpdateTimestamp())).append(',')
+      .append('"').append(err).append('"')
+      .append('\n');
+  }
 
   private boolean objectExists(String b, String k) {
     try {
@@ -127,6 +160,16 @@ public class S3CsvResultWriter implements ItemStreamWriter<DeleteResult> {
     }
   }
 
+  private static <T> T await(Future<T> f) throws Exception {
+    try {
+      return f.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception ex) throw ex;
+      throw e;
+    }
+  }
+
   private static byte[] concat(byte[] a, byte[] b) {
     byte[] out = new byte[a.length + b.length];
     System.arraycopy(a, 0, out, 0, a.length);
@@ -10,73 +10,272 @@ import org.slf4j.Logger; import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemStreamException;
 import org.springframework.batch.item.ItemStreamReader;
-import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+/**
+ * Reads user rows from the input CSV in S3.
+ *
+ * Records are framed on raw bytes (a line break outside quotes ends a record) so the reader always knows the
+ * byte offset of the next record. update() saves that offset and the row count; on restart open() resumes
+ * with a ranged GET from the offset instead of re-reading the object from byte 0.
+ * .gz/.zst input (by Content-Encoding or key suffix) is decompressed on the fly; offsets then count
+ * decompressed bytes and a restart re-reads and skips up to the offset, without repeating any Auth0 calls.
+ * APP_INPUT_READ_MODE=prefetch reads through {@link S3PrefetchInputStream} instead of one long GET, and
+ * frames and parses records on a background thread into a bounded queue; each queued record carries the
+ * offset after it, so update() still saves the position of the next record handed to the step.
+ */
 public class S3CsvUserReader implements ItemStreamReader<UserDeleteRecord> {
   private static final Logger log = LoggerFactory.getLogger(S3CsvUserReader.class);
 
+  private static final String CTX_OFFSET = "s3CsvUserReader.offset";      // byte offset of the next record
+  private static final String CTX_COUNT  = "s3CsvUserReader.count";       // records read so far
+  private static final String CTX_HEADER = "s3CsvUserReader.headerLine";
+  private static final String CTX_CODEC  = "s3CsvUserReader.compression";
+  private static final String[] DEFAULT_COLUMNS = {"user_id", "email", "ssoid"};
+  private static final int MAX_BLOCK_SIZE_MB = 1024;   // a block is one byte[]
+  private static final int PARSE_AHEAD = 4096;         // records parsed ahead of the step in prefetch mode
+
+  private record Parsed(UserDeleteRecord item, long next, Exception error) {}
+  private static final Parsed END = new Parsed(null, -1, null);
+
   private final S3Client s3;
   private final AppProperties props;    // <-- read bucket/key from here in open()
   private final boolean header;
+  private final long startByte;         // first byte of this reader's range (a record start)
+  private final long endByte;           // exclusive end of the range, -1 = end of object
+  private final String headerLine;      // CSV header for ranges that don't start at byte 0
 
-  private ResponseInputStream<GetObjectResponse> in;
-  private CSVParser parser;
-  private Iterator<CSVRecord> it;
+  private InputStream in;
+  private final byte[] ibuf = new byte[64 * 1024];   // own buffer: no per-byte lock as in BufferedInputStream
+  private int ipos;
+  private int ilen;
+  private long offset;                  // framing position, in decompressed bytes for compressed input
+  private long position;                // offset of the next record read() hands out; what update() saves
+  private long limit;                   // endByte, or -1 for compressed input (ranges don't apply)
+  private CsvCompression codec;
+  private long count;
+  private String headerText;
+  private String[] columns;
+  private byte[] buf = new byte[1024];
+  private BlockingQueue<Parsed> parsed; // prefetch mode only
+  private Thread parser;
+  private volatile boolean closed;
+  private boolean drained;
 
   public S3CsvUserReader(S3Client s3, AppProperties props, boolean header) {
+    this(s3, props, header, 0, -1, null);
+  }
+
+  /** Read only bytes [startByte, endByte) of the input, e.g. one partition from {@code S3CsvRangePartitioner}. */
+  public S3CsvUserReader(S3Client s3, AppProperties props, boolean header,
+                         long startByte, long endByte, String headerLine) {
     this.s3 = s3;
     this.props = props;
     this.header = header;
+    this.startByte = Math.max(0, startByte);
+    this.endByte = endByte;
+    this.headerLine = headerLine;
   }
 
   @Override
   public void open(ExecutionContext ctx) throws ItemStreamException {
     String bucket = nz(props.getS3Bucket());
     String key    = nz(props.getInputS3Key());
+    boolean resume = ctx.containsKey(CTX_OFFSET);
+    offset = resume ? ctx.getLong(CTX_OFFSET) : startByte;
+    count  = resume ? ctx.getLong(CTX_COUNT, 0) : 0;
+    headerText = resume ? ctx.getString(CTX_HEADER, nz(headerLine)) : nz(headerLine);
+    position = offset;
+    closed = drained = false;
     try {
       if (bucket.isBlank()) throw new IllegalStateException("S3 bucket is blank");
       if (key.isBlank())    throw new IllegalStateException("S3 key is blank");
 
-      log.info("Opening S3 CSV s3://{}/{}", bucket, key);
+      columns = header && !headerText.isBlank() ? parseLine(headerText) : DEFAULT_COLUMNS;
+      codec = resume && ctx.containsKey(CTX_CODEC) ? CsvCompression.valueOf(ctx.getString(CTX_CODEC)) : detect(bucket, key);
+      boolean compressed = codec != CsvCompression.NONE;
+      limit = compressed ? -1 : endByte;
+      if (limit >= 0 && offset >= limit) return; // empty range, or finished before the restart
 
-      in = s3.getObject(GetObjectRequest.builder().bucket(bucket).key(key).build());
+      // a compressed stream can't be entered mid-way: fetch from 0 and skip decompressed bytes instead
+      long fetchFrom = compressed ? 0 : offset;
+      GetObjectRequest.Builder get = GetObjectRequest.builder().bucket(bucket).key(key);
+      if (fetchFrom > 0 || limit >= 0) {
+        get.range("bytes=" + fetchFrom + "-" + (limit >= 0 ? String.valueOf(limit - 1) : ""));
+      }
+      if (resume) {
+        log.info("Resuming S3 CSV s3://{}/{} at byte {} after {} records", bucket, key, offset, count);
+      } else if (fetchFrom > 0 || limit >= 0) {
+        log.info("Opening S3 CSV s3://{}/{} bytes [{}, {})", bucket, key, offset, limit >= 0 ? limit : "end");
+      } else {
+        log.info("Opening S3 CSV s3://{}/{} (compression={})", bucket, key, codec);
+      }
 
-      CSVFormat fmt = header
-          ? CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build()
-          : CSVFormat.DEFAULT.builder().setHeader("user_id","email","ssoid").build();
+      InputStream raw;
+      boolean prefetch = "prefetch".equalsIgnoreCase(props.getInputReadMode());
+      if (prefetch) {
+        int blockMb = props.getInputBlockSizeMb();
+        if (blockMb < 1 || blockMb > MAX_BLOCK_SIZE_MB) {
+          throw new IllegalStateException("APP_INPUT_BLOCK_SIZE_MB must be between 1 and " + MAX_BLOCK_SIZE_MB + ", was " + blockMb);
+        }
+        raw = new S3PrefetchInputStream(s3, bucket, key, fetchFrom, limit,
+            (int) (blockMb * 1024L * 1024L), props.getInputPrefetchBlocks(), props.getInputBlockRetries());
+      } else {
+        raw = s3.getObject(get.build());
+      }
+      in = codec.decompress(raw);
+      if (compressed && offset > 0) in.skipNBytes(offset);
+      ipos = ilen = 0;
 
-      parser = new CSVParser(new InputStreamReader(in, StandardCharsets.UTF_8), fmt);
-      it = parser.iterator();
+      if (header && offset == 0) {
+        String line = nextRecord();
+        headerText = line == null ? "" : line;
+        columns = headerText.isBlank() ? DEFAULT_COLUMNS : parseLine(headerText);
+      }
+      position = offset;
+      if (prefetch) {
+        parsed = new ArrayBlockingQueue<>(PARSE_AHEAD);
+        parser = new Thread(this::parseAhead, "csv-parse");
+        parser.setDaemon(true);
+        parser.start();
+      }
     } catch (Exception e) {
       throw new ItemStreamException("Failed to open S3 CSV s3://" + bucket + "/" + key, e);
     }
   }
 
-  @Override public UserDeleteRecord read() {
-    if (it == null || !it.hasNext()) return null;
-    CSVRecord r = it.next();
-    String userId = getField(r, "user_id", 0);
-    String email  = getField(r, "email",   1);
-    String ssoid  = getField(r, "ssoid",   2);
-    return new UserDeleteRecord(clean(userId), clean(ssoid), clean(email));
+  @Override public UserDeleteRecord read() throws Exception {
+    if (in == null) return null;
+    if (parsed != null) return takeParsed();
+    UserDeleteRecord r = parseNext();
+    position = offset;
+    if (r != null) count++;
+    return r;
+  }
+
+  @Override public void update(ExecutionContext ctx) {
+    ctx.putLong(CTX_OFFSET, position);
+    ctx.putLong(CTX_COUNT, count);
+    ctx.putString(CTX_HEADER, headerText == null ? "" : headerText);
+    if (codec != null) ctx.putString(CTX_CODEC, codec.name());
   }
 
-  @Override public void update(ExecutionContext ctx) {}
   @Override public void close() {
-    try { if (parser != null) parser.close(); } catch (Exception ignored) {}
+    closed = true;
+    if (parser != null) parser.interrupt();
     try { if (in != null) in.close(); } catch (Exception ignored) {}
+    in = null;
+    parser = null;
+    parsed = null;
+  }
+
+  private UserDeleteRecord takeParsed() throws Exception {
+    if (drained) return null;
+    Parsed p = parsed.take();
+    if (p.error() != null) {
+      drained = true;
+      throw p.error();
+    }
+    if (p == END) {
+      drained = true;
+      return null;
+    }
+    position = p.next();
+    count++;
+    return p.item();
+  }
+
+  /** Prefetch mode: frames and parses records ahead of the step until the range ends or the reader closes. */
+  private void parseAhead() {
+    try {
+      UserDeleteRecord r;
+      while (!closed && (r = parseNext()) != null) parsed.put(new Parsed(r, offset, null));
+      if (!closed) parsed.put(END);
+    } catch (InterruptedException e) {
+      // closed by the step
+    } catch (Exception e) {
+      try {
+        if (!closed) parsed.put(new Parsed(null, -1, e));
+      } catch (InterruptedException ignored) {
+        // closed by the step
+      }
+    }
   }
 
-  private static String getField(CSVRecord r, String name, int pos) {
-    if (r.isMapped(name)) return nz(r.get(name)).trim();
-    if (pos < r.size())   return nz(r.get(pos)).trim();
+  /** Next non-blank record of the range, or null at its end. */
+  private UserDeleteRecord parseNext() throws IOException {
+    String line;
+    do {
+      if (limit >= 0 && offset >= limit) return null;
+      line = nextRecord();
+      if (line == null) return null;
+    } while (line.isBlank());   // like CSVFormat.DEFAULT, ignore empty lines
+
+    String[] v = parseLine(line);
+    String userId = getField(v, "user_id", 0);
+    String email  = getField(v, "email",   1);
+    String ssoid  = getField(v, "ssoid",   2);
+    String tenant = getField(v, "tenant", -1);   // optional, only by header name
+    return new UserDeleteRecord(clean(userId), clean(ssoid), clean(email), clean(tenant));
+  }
+
+  private CsvCompression detect(String bucket, String key) {
+    CsvCompression byKey = CsvCompression.detect(key, null);
+    if (byKey != CsvCompression.NONE) return byKey;
+    return CsvCompression.detect(key,
+        s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build()).contentEncoding());
+  }
+
+  /** Next record without its line break, or null at end of stream; advances offset by the raw byte length. */
+  private String nextRecord() throws IOException {
+    int len = 0;
+    boolean quoted = false;
+    int b;
+    while ((b = nextByte()) >= 0) {
+      offset++;
+      if (b == '"') quoted = !quoted;        // "" inside a quoted field toggles twice
+      else if (b == '\n' && !quoted) break;
+      if (len == buf.length) buf = Arrays.copyOf(buf, len * 2);
+      buf[len++] = (byte) b;
+    }
+    if (b < 0 && len == 0) return null;
+    if (len > 0 && buf[len - 1] == '\r') len--;
+    return new String(buf, 0, len, StandardCharsets.UTF_8);
+  }
+
+  private int nextByte() throws IOException {
+    if (ipos == ilen) {
+      ilen = in.read(ibuf, 0, ibuf.length);
+      ipos = 0;
+      if (ilen <= 0) {
+        ilen = 0;
+        return -1;
+      }
+    }
+    return ibuf[ipos++] & 0xff;
+  }
+
+  private static String[] parseLine(String line) throws IOException {
+    try (CSVParser p = CSVParser.parse(line, CSVFormat.DEFAULT)) {
+      for (CSVRecord r : p) return r.values();
+      return new String[0];
+    }
+  }
+
+  private String getField(String[] values, String name, int pos) {
+    for (int i = 0; i < columns.length && i < values.length; i++) {
+      if (name.equals(columns[i])) return nz(values[i]).trim();
+    }
+    if (pos >= 0 && pos < values.length) return nz(values[pos]).trim();
     return "";
   }
   private static String clean(String v) {
@@ -0,0 +1,527 @@
+package com.example.auth0cleanupsb.batch.io;
+
+import com.example.auth0cleanupsb.batch.model.DeleteResult;
+import com.example.auth0cleanupsb.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Streams results into one S3 multipart upload instead of re-uploading the whole object every chunk.
+ *
+ * Rows are appended to a local spool file; once it reaches the part size it is uploaded as a part on a
+ * background thread. Every checkpoint also PUTs the spool bytes added since the previous one as a small
+ * staging object under {@code <key>.staging/<uploadId>/}, so everything committed is in S3, not only in
+ * this task's /tmp. The upload id, finished part ETags and the committed spool length go into the
+ * ExecutionContext; a restarted step, on this host or another, rebuilds the spool and any part that was
+ * still uploading from the staging objects and continues the same upload.
+ *
+ * The upload is completed in afterStep once the step COMPLETED, so a failed last part or
+ * CompleteMultipartUpload fails the step and its restart completes the upload; close() only cleans up. A
+ * failed step leaves the upload open for the restart. One that is never restarted stays until the bucket's
+ * AbortIncompleteMultipartUpload lifecycle rule removes it, staging objects included.
+ *
+ * An existing output object is kept (same append semantics as {@link S3CsvResultWriter}): large objects
+ * become part 1 via UploadPartCopy, small ones are copied into the spool.
+ *
+ * With APP_OUTPUT_COMPRESSION each chunk is compressed into one gzip member / zstd frame on a separate
+ * thread, overlapping with the next chunk's processing.
+ */
+public class S3MultipartCsvResultWriter implements DeleteResultWriter {
+  private static final Logger log = LoggerFactory.getLogger(S3MultipartCsvResultWriter.class);
+
+  static final long MIN_PART_SIZE = 5L * 1024 * 1024;   // S3 minimum for every part except the last
+
+  private static final String CTX_UPLOAD_ID = "s3MultipartWriter.uploadId";
+  private static final String CTX_PARTS     = "s3MultipartWriter.parts";         // "1=etag;2=etag"
+  private static final String CTX_PENDING   = "s3MultipartWriter.pendingLengths"; // "3=length;4=length", fully staged
+  private static final String CTX_NEXT_PART = "s3MultipartWriter.nextPart";     // part the spool will become
+  private static final String CTX_SPOOL_LEN = "s3MultipartWriter.spoolLength";
+  private static final String CTX_UNSPOOLED = "s3MultipartWriter.unspooledRows";  // committed, still compressing
+
+  private final S3Client s3;
+  private final AppProperties props;
+  private final String outputKey;       // null = APP_S3_KEY; set for partition shards
+  private final long partSize;
+  private final int uploadThreads;
+  private final CsvCompression codec;
+
+  private String bucket;   // resolved at open()
+  private String key;      // resolved at open()
+  private String uploadId;
+  private int nextPart;
+  private final SortedMap<Integer, String> completedParts = new ConcurrentSkipListMap<>();
+  private final Map<Integer, PendingPart> inFlight = new ConcurrentHashMap<>();
+  private final Object partsLock = new Object();   // a part moves from inFlight to completedParts atomically
+
+  private String stagingPrefix;
+  private Path spool;
+  private OutputStream spoolOut;
+  private long spoolLength;
+  private long stagedLength;              // spool bytes already in staging objects
+  private ExecutorService uploader;
+  private ExecutorService compressor;     // only for compressed output
+  private Future<?> pendingSpool;         // last chunk still being compressed into the spool
+  private ExecutionContext stateBeforePending = new ExecutionContext();
+  private String pendingRows = "";
+
+  private record PendingPart(Path file, long length, Future<?> upload) {}
+
+  public S3MultipartCsvResultWriter(S3Client s3, AppProperties props) {
+    this(s3, props, null);
+  }
+
+  public S3MultipartCsvResultWriter(S3Client s3, AppProperties props, String outputKey) {
+    this.s3 = s3;
+    this.props = props;
+    this.outputKey = outputKey;
+    this.partSize = Math.max(MIN_PART_SIZE, props.getOutputPartSizeMb() * 1024L * 1024L);
+    this.uploadThreads = Math.max(1, props.getOutputUploadThreads());
+    this.codec = CsvCompression.named(props.getOutputCompression());
+  }
+
+  @Override
+  public void open(ExecutionContext ctx) throws ItemStreamException {
+    this.bucket = nz(props.getS3Bucket());
+    this.key    = codec.applyTo(outputKey != null ? outputKey : nz(props.getOutputS3Key()));
+
+    if (bucket.isBlank()) throw new ItemStreamException("S3 bucket is blank");
+    if (key.isBlank())    throw new ItemStreamException("S3 key is blank");
+
+    uploader = Executors.newFixedThreadPool(uploadThreads, r -> {
+      Thread t = new Thread(r, "s3-part-upload");
+      t.setDaemon(true);
+      return t;
+    });
+    if (codec != CsvCompression.NONE) {
+      compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "csv-compress");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+
+    boolean resuming = ctx.containsKey(CTX_UPLOAD_ID);
+    try {
+      if (resuming) resume(ctx);
+      else start();
+      spoolOut = new BufferedOutputStream(Files.newOutputStream(spool, StandardOpenOption.APPEND), 64 * 1024);
+    } catch (Exception e) {
+      if (!resuming) abort();   // not checkpointed yet, so nothing could ever resume it
+      if (e instanceof ItemStreamException ise) throw ise;
+      throw new ItemStreamException("Failed to open multipart upload for s3://" + bucket + "/" + key, e);
+    }
+  }
+
+  @Override
+  public void write(Chunk<? extends DeleteResult> items) throws Exception {
+    failIfUploadFailed();
+    awaitSpool();
+    if (spoolLength >= partSize) rollSpool();   // spool holds committed rows only here
+    if (items == null || items.isEmpty()) return;
+
+    StringBuilder sb = new StringBuilder(1024);
+    for (DeleteResult r : items.getItems()) S3CsvResultWriter.appendRow(sb, r);
+    String rows = sb.toString();
+    byte[] bytes = rows.getBytes(StandardCharsets.UTF_8);
+    if (compressor == null) {
+      spoolOut.write(bytes);
+      spoolLength += bytes.length;
+      return;
+    }
+    // Compress off the step thread while the next chunk is read and processed. If update() comes before
+    // that finishes, it checkpoints the state before this chunk plus the chunk's rows (see update()).
+    stateBeforePending = new ExecutionContext();
+    saveState(stateBeforePending);
+    pendingRows = rows;
+    pendingSpool = compressor.submit(() -> {
+      byte[] member = codec.compress(bytes);   // one gzip member / zstd frame per chunk
+      spoolOut.write(member);
+      spoolLength += member.length;
+      return null;
+    });
+  }
+
+  @Override
+  public void update(ExecutionContext ctx) throws ItemStreamException {
+    if (uploadId == null) return;
+    try {
+      if (pendingSpool != null && !pendingSpool.isDone()) {
+        // the committed chunk is still being compressed: record its rows so a restart can spool them again
+        stage(stateBeforePending.getLong(CTX_SPOOL_LEN));
+        for (Map.Entry<String, Object> e : stateBeforePending.entrySet()) ctx.put(e.getKey(), e.getValue());
+        ctx.putString(CTX_UNSPOOLED, pendingRows);
+      } else {
+        awaitSpool();
+        spoolOut.flush();
+        stage(spoolLength);
+        saveState(ctx);
+        ctx.putString(CTX_UNSPOOLED, "");
+      }
+    } catch (ItemStreamException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new ItemStreamException("Failed to checkpoint multipart upload " + uploadId + " for s3://" + bucket + "/" + key, e);
+    }
+  }
+
+  private void saveState(ExecutionContext ctx) {
+    try {
+      spoolOut.flush();
+    } catch (IOException e) {
+      throw new ItemStreamException("Failed to flush result spool " + spool, e);
+    }
+    StringBuilder parts = new StringBuilder();
+    StringBuilder pending = new StringBuilder();
+    synchronized (partsLock) {   // a part finishing meanwhile must land in exactly one of the two lists
+      completedParts.forEach((n, etag) -> parts.append(n).append('=').append(etag).append(';'));
+      inFlight.forEach((n, p) -> pending.append(n).append('=').append(p.length()).append(';'));
+    }
+
+    ctx.putString(CTX_UPLOAD_ID, uploadId);
+    ctx.putString(CTX_PARTS, parts.toString());
+    ctx.putString(CTX_PENDING, pending.toString());
+    ctx.putInt(CTX_NEXT_PART, nextPart);
+    ctx.putLong(CTX_SPOOL_LEN, spoolLength);
+  }
+
+  /** Uploads the last part and completes the upload of a completed step, before the step is stored. */
+  @Override
+  public ExitStatus afterStep(StepExecution stepExecution) {
+    if (uploadId == null || stepExecution.getStatus() != BatchStatus.COMPLETED) return null;
+    try {
+      complete();
+      return null;
+    } catch (Exception e) {
+      log.error("Failed to complete multipart upload {} for s3://{}/{}", uploadId, bucket, key, e);
+      stepExecution.upgradeStatus(BatchStatus.FAILED);
+      stepExecution.addFailureException(e);
+      return ExitStatus.FAILED.addExitDescription(e);
+    }
+  }
+
+  @Override
+  public void close() throws ItemStreamException {
+    try {
+      if (uploadId == null) return;
+      if (StepSynchronizationManager.getContext() == null) {
+        // used outside a step: no afterStep and no restart, so finish here or give the upload up
+        try {
+          complete();
+        } catch (Exception e) {
+          abort();
+          throw new ItemStreamException("Failed to complete multipart upload for s3://" + bucket + "/" + key, e);
+        }
+        return;
+      }
+      log.warn("Step did not complete; leaving multipart upload {} for s3://{}/{} open for restart", uploadId, bucket, key);
+      discardLocalFiles();   // the restart rebuilds them from the staging objects
+    } finally {
+      uploadId = null;
+      uploader.shutdownNow();
+      if (compressor != null) compressor.shutdownNow();
+    }
+  }
+
+  /* ---------- internals ---------- */
+
+  private void start() throws Exception {
+    uploadId = s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+        .bucket(bucket).key(key).contentType(codec.contentType()).build()).uploadId();
+    stagingPrefix = key + ".staging/" + uploadId + "/";
+    nextPart = 1;
+    spool = Files.createTempFile("s3-result-", ".csv");
+    spoolLength = 0;
+    stagedLength = 0;
+    log.info("Opening S3 multipart CSV writer s3://{}/{} (uploadId={})", bucket, key, uploadId);
+
+    long existing = existingLength();
+    if (existing >= MIN_PART_SIZE) {
+      // keep what is already there without pulling it through this task
+      String etag = s3.uploadPartCopy(UploadPartCopyRequest.builder()
+          .sourceBucket(bucket).sourceKey(key)
+          .destinationBucket(bucket).destinationKey(key)
+          .uploadId(uploadId).partNumber(nextPart).build()).copyPartResult().eTag();
+      completedParts.put(nextPart++, etag);
+    } else if (existing > 0) {
+      try (ResponseInputStream<GetObjectResponse> in =
+               s3.getObject(GetObjectRequest.builder().bucket(bucket).key(key).build())) {
+        Files.copy(in, spool, StandardCopyOption.REPLACE_EXISTING);
+      }
+      spoolLength = Files.size(spool);
+    } else {
+      Files.write(spool, codec.compress(S3CsvResultWriter.HEADER.getBytes(StandardCharsets.UTF_8)));
+      spoolLength = Files.size(spool);
+    }
+  }
+
+  private void resume(ExecutionContext ctx) throws Exception {
+    uploadId = ctx.getString(CTX_UPLOAD_ID);
+    stagingPrefix = key + ".staging/" + uploadId + "/";
+    nextPart = ctx.getInt(CTX_NEXT_PART);
+    completedParts.putAll(parse(ctx.getString(CTX_PARTS, "")));
+    // parts that were still uploading at the last commit: upload them again (same part number replaces)
+    for (Map.Entry<Integer, String> e : parse(ctx.getString(CTX_PENDING, "")).entrySet()) {
+      if (!completedParts.containsKey(e.getKey())) {
+        uploadPart(e.getKey(), restore(e.getKey(), Long.parseLong(e.getValue())));
+      }
+    }
+    // the committed spool, without rows from the chunk that was rolled back
+    spoolLength = ctx.getLong(CTX_SPOOL_LEN);
+    spool = restore(nextPart, spoolLength);
+    stagedLength = spoolLength;
+    // rows of the last committed chunk that were still being compressed
+    String unspooled = ctx.getString(CTX_UNSPOOLED, "");
+    if (!unspooled.isEmpty()) {
+      byte[] member = codec.compress(unspooled.getBytes(StandardCharsets.UTF_8));
+      Files.write(spool, member, StandardOpenOption.APPEND);
+      spoolLength += member.length;
+    }
+    log.info("Resuming S3 multipart CSV writer s3://{}/{} (uploadId={}, parts={}, spooled={} bytes)",
+        bucket, key, uploadId, completedParts.size(), spoolLength);
+  }
+
+  /**
+   * Rebuilds the first {@code length} bytes of a part from its staging objects, keyed by part and offset.
+   * Objects staged by a checkpoint that never committed are either replaced by a later one at the same
+   * offset or lie past {@code length}.
+   */
+  private Path restore(int part, long length) throws IOException {
+    String prefix = stagingPrefix + String.format("%05d-", part);
+    Map<Long, String> staged = new HashMap<>();
+    for (var page : s3.listObjectsV2Paginator(ListObjectsV2Request.builder().bucket(bucket).prefix(prefix).build())) {
+      for (S3Object o : page.contents()) staged.put(Long.parseLong(o.key().substring(prefix.length())), o.key());
+    }
+    Path file = Files.createTempFile("s3-result-", ".csv");
+    try (OutputStream out = Files.newOutputStream(file)) {
+      for (long at = 0; at < length; ) {
+        String k = staged.get(at);
+        if (k == null) {
+          throw new ItemStreamException("Staged bytes " + at + "+ of part " + part + " are missing under s3://"
+              + bucket + "/" + prefix + "; cannot resume upload " + uploadId);
+        }
+        byte[] b = s3.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(k).build()).asByteArray();
+        int n = (int) Math.min(b.length, length - at);
+        out.write(b, 0, n);
+        at += n;
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+    return file;
+  }
+
+  /** PUTs the spool bytes up to {@code upTo} that are not staged yet as the next staging object of its part. */
+  private void stage(long upTo) throws IOException {
+    if (upTo <= stagedLength) return;
+    ByteBuffer buf = ByteBuffer.allocate((int) (upTo - stagedLength));   // one chunk, or one part's header
+    try (FileChannel ch = FileChannel.open(spool, StandardOpenOption.READ)) {
+      while (buf.hasRemaining()) {
+        if (ch.read(buf, stagedLength + buf.position()) < 0) throw new IOException("Result spool " + spool + " is short");
+      }
+    }
+    s3.putObject(PutObjectRequest.builder().bucket(bucket).key(stagingPrefix + String.format("%05d-%d", nextPart, stagedLength))
+        .build(), RequestBody.fromBytes(buf.array()));
+    stagedLength = upTo;
+  }
+
+  private void awaitSpool() throws Exception {
+    Future<?> f = pendingSpool;
+    pendingSpool = null;
+    if (f != null) await(f);
+  }
+
+  /** Hand the full spool to the uploader and start a fresh one. */
+  private void rollSpool() throws IOException {
+    spoolOut.close();
+    stage(spoolLength);   // the whole part is in S3 before it is handed over, so a checkpoint can list it as pending
+    Path partFile = spool;
+    int partNumber = nextPart++;
+    FutureTask<Void> upload = new FutureTask<>(() -> {
+      uploadPart(partNumber, partFile);
+      return null;
+    });
+    inFlight.put(partNumber, new PendingPart(partFile, spoolLength, upload));   // before it can finish and remove itself
+    uploader.execute(upload);
+
+    spool = Files.createTempFile("s3-result-", ".csv");
+    spoolLength = 0;
+    stagedLength = 0;
+    spoolOut = new BufferedOutputStream(Files.newOutputStream(spool, StandardOpenOption.APPEND), 64 * 1024);
+  }
+
+  private void uploadPart(int partNumber, Path file) throws IOException {
+    String etag = s3.uploadPart(UploadPartRequest.builder()
+        .bucket(bucket).key(key).uploadId(uploadId)
+        .partNumber(partNumber).contentLength(Files.size(file))
+        .build(), RequestBody.fromFile(file)).eTag();
+    synchronized (partsLock) {
+      completedParts.put(partNumber, etag);
+      inFlight.remove(partNumber);
+    }
+    deleteQuietly(file);   // a restart takes the part's bytes from staging
+    log.debug("Uploaded part {} of s3://{}/{}", partNumber, bucket, key);
+  }
+
+  /** Surface a failed background upload on the next chunk instead of at the very end. */
+  private void failIfUploadFailed() throws Exception {
+    for (PendingPart p : inFlight.values()) {
+      if (p.upload().isDone()) await(p.upload());
+    }
+  }
+
+  private void complete() throws Exception {
+    awaitSpool();
+    spoolOut.close();
+    // last part may be smaller than 5 MiB
+    if (spoolLength > 0 || (completedParts.isEmpty() && inFlight.isEmpty())) {
+      uploadPart(nextPart++, spool);
+    } else {
+      Files.deleteIfExists(spool);
+    }
+    for (PendingPart p : inFlight.values()) await(p.upload());
+
+    List<CompletedPart> parts = new ArrayList<>();
+    completedParts.forEach((n, etag) -> parts.add(CompletedPart.builder().partNumber(n).eTag(etag).build()));
+    s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+        .bucket(bucket).key(key).uploadId(uploadId)
+        .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+        .build());
+    log.info("Completed multipart upload s3://{}/{} ({} parts)", bucket, key, parts.size());
+    uploadId = null;
+    deleteStaging();
+  }
+
+  /** Gives up an upload nothing can resume, with its staging objects. */
+  private void abort() {
+    if (uploadId == null) return;
+    try {
+      s3.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(bucket).key(key).uploadId(uploadId).build());
+      log.warn("Aborted multipart upload {} for s3://{}/{}", uploadId, bucket, key);
+      deleteStaging();
+    } catch (RuntimeException e) {
+      log.warn("Could not abort multipart upload {} for s3://{}/{}: {}", uploadId, bucket, key, e.getMessage());
+    }
+    discardLocalFiles();
+  }
+
+  private void deleteStaging() {
+    try {
+      List<ObjectIdentifier> ids = new ArrayList<>();
+      for (var page : s3.listObjectsV2Paginator(ListObjectsV2Request.builder().bucket(bucket).prefix(stagingPrefix).build())) {
+        for (S3Object o : page.contents()) ids.add(ObjectIdentifier.builder().key(o.key()).build());
+      }
+      for (int i = 0; i < ids.size(); i += 1000) {
+        s3.deleteObjects(DeleteObjectsRequest.builder().bucket(bucket)
+            .delete(Delete.builder().objects(ids.subList(i, Math.min(ids.size(), i + 1000))).quiet(true).build()).build());
+      }
+    } catch (RuntimeException e) {
+      log.warn("Could not delete staging objects s3://{}/{}: {}", bucket, stagingPrefix, e.getMessage());
+    }
+  }
+
+  private void discardLocalFiles() {
+    Future<?> f = pendingSpool;
+    if (f != null) f.cancel(true);
+    try {
+      if (spoolOut != null) spoolOut.close();
+    } catch (IOException e) {
+      log.debug("Closing result spool {} failed: {}", spool, e.getMessage());
+    }
+    deleteQuietly(spool);
+    for (PendingPart p : inFlight.values()) {
+      p.upload().cancel(true);
+      deleteQuietly(p.file());
+    }
+  }
+
+  private long existingLength() {
+    try {
+      Long len = s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build()).contentLength();
+      return len == null ? 0 : len;
+    } catch (S3Exception e) {
+      if (e.statusCode() == 404) return -1;
+      throw new ItemStreamException("Failed to inspect existing S3 object s3://" + bucket + "/" + key, e);
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    if (file == null) return;
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("Could not delete result file {}: {}", file, e.getMessage());
+    }
+  }
+
+  private static void await(Future<?> f) throws Exception {
+    try {
+      f.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception ex) throw ex;
+      throw e;
+    }
+  }
+
+  private static SortedMap<Integer, String> parse(String encoded) {
+    SortedMap<Integer, String> out = new ConcurrentSkipListMap<>();
+    for (String entry : encoded.split(";")) {
+      int eq = entry.indexOf('=');
+      if (eq > 0) out.put(Integer.parseInt(entry.substring(0, eq)), entry.substring(eq + 1));
+    }
+    return out;
+  }
+
+  private static String nz(String s) { return s == null ? "" : s; }
+}
@@ -0,0 +1,127 @@
+package com.example.auth0cleanupsb.batch.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * InputStream over a byte range of an S3 object, fetched ahead by a background thread as fixed-size ranged
+ * GETs into a bounded queue. A slow or reset GET only costs a retry of that block (with backoff), not the
+ * whole stream, and the consumer keeps parsing buffered blocks meanwhile.
+ */
+public class S3PrefetchInputStream extends InputStream {
+  private static final Logger log = LoggerFactory.getLogger(S3PrefetchInputStream.class);
+
+  private record Block(byte[] data, Exception error) {}
+  private static final Block EOF = new Block(new byte[0], null);
+
+  private final BlockingQueue<Block> queue;
+  private final Thread fetcher;
+  private volatile boolean closed;
+
+  private byte[] current = new byte[0];
+  private int pos;
+  private boolean done;
+
+  /**
+   * @param end exclusive end of the range, or -1 for the end of the object (one HEAD)
+   */
+  public S3PrefetchInputStream(S3Client s3, String bucket, String key, long start, long end,
+                               int blockSize, int queueDepth, int maxRetries) {
+    long stop = end >= 0 ? end
+        : s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build()).contentLength();
+    int block = Math.max(64 * 1024, blockSize);
+    this.queue = new ArrayBlockingQueue<>(Math.max(1, queueDepth));
+    this.fetcher = new Thread(() -> fetchAll(s3, bucket, key, start, stop, block, Math.max(0, maxRetries)),
+        "s3-prefetch");
+    this.fetcher.setDaemon(true);
+    this.fetcher.start();
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureData()) return -1;
+    return current[pos++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) return 0;
+    if (!ensureData()) return -1;
+    int n = Math.min(len, current.length - pos);
+    System.arraycopy(current, pos, b, off, n);
+    pos += n;
+    return n;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    fetcher.interrupt();
+    queue.clear();
+  }
+
+  private boolean ensureData() throws IOException {
+    while (pos >= current.length) {
+      if (done) return false;
+      Block b;
+      try {
+        b = queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for S3 block", e);
+      }
+      if (b.error() != null) {
+        done = true;
+        throw new IOException("S3 block fetch failed", b.error());
+      }
+      if (b == EOF) {
+        done = true;
+        return false;
+      }
+      current = b.data();
+      pos = 0;
+    }
+    return true;
+  }
+
+  private void fetchAll(S3Client s3, String bucket, String key, long start, long stop, int blockSize, int maxRetries) {
+    try {
+      for (long from = start; from < stop && !closed; from += blockSize) {
+        long to = Math.min(stop, from + blockSize) - 1;
+        queue.put(new Block(fetch(s3, bucket, key, from, to, maxRetries), null));
+      }
+      if (!closed) queue.put(EOF);
+    } catch (InterruptedException e) {
+      // closed by the consumer
+    } catch (Exception e) {
+      try {
+        if (!closed) queue.put(new Block(null, e));
+      } catch (InterruptedException ignored) {
+        // closed by the consumer
+      }
+    }
+  }
+
+  private byte[] fetch(S3Client s3, String bucket, String key, long from, long to, int maxRetries) throws Exception {
+    for (int attempt = 0; ; attempt++) {
+      try {
+        return s3.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(key)
+            .range("bytes=" + from + "-" + to).build()).asByteArray();
+      } catch (Exception e) {
+        if (attempt >= maxRetries || closed) throw e;
+        long backoffMs = Math.min(10_000L, 200L << attempt);
+        log.warn("S3 block bytes={}-{} of s3://{}/{} failed ({}); retry {} in {} ms",
+            from, to, bucket, key, e.toString(), attempt + 1, backoffMs);
+        Thread.sleep(backoffMs);
+      }
+    }
+  }
+}
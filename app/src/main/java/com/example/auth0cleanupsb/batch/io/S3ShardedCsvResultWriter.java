@@ -0,0 +1,320 @@
+package com.example.auth0cleanupsb.batch.io;
+
+import com.example.auth0cleanupsb.batch.model.DeleteResult;
+import com.example.auth0cleanupsb.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes results as immutable shard objects under {@code <APP_OUTPUT_SHARD_PREFIX><jobId>-<ts>/}, named
+ * part-PPPPP-NNNNN.csv (partition, sequence). Writers never touch each other's keys, so partitions and
+ * tasks can write in parallel. Each shard has its own header and carries its row count and header length
+ * as object metadata for the manifest and compaction steps. The keys a writer has cut are kept in its step
+ * ExecutionContext ({@link #shardKeys}), which is what the manifest is built from: job ids restart at 1 with
+ * an in-memory job repository, so listing the prefix could pick up another run's shards.
+ *
+ * Rows are spooled locally and a shard is cut once the spool reaches the part size. Shards are only cut from
+ * committed rows (at the start of the next write), so a rolled-back chunk never ends up in a shard; a
+ * restart re-cuts the same bytes under the same key. The last shard is cut in afterStep, so a failed PUT
+ * fails the step and the restart cuts it again.
+ *
+ * With APP_OUTPUT_COMPRESSION each chunk is compressed on a separate thread, overlapping with the next
+ * chunk's processing; a checkpoint taken meanwhile records the chunk's rows so a restart can spool them again.
+ */
+public class S3ShardedCsvResultWriter implements DeleteResultWriter {
+  private static final Logger log = LoggerFactory.getLogger(S3ShardedCsvResultWriter.class);
+
+  public static final String META_ROWS = "rows";
+  public static final String META_HEADER_BYTES = "header-bytes";
+
+  private static final String CTX_SEQ       = "s3ShardedWriter.nextSeq";
+  private static final String CTX_SPOOL     = "s3ShardedWriter.spoolFile";
+  private static final String CTX_SPOOL_LEN = "s3ShardedWriter.spoolLength";
+  private static final String CTX_ROWS      = "s3ShardedWriter.spoolRows";       // unspooled rows included
+  private static final String CTX_UNSPOOLED = "s3ShardedWriter.unspooledRows";   // committed, still compressing
+  private static final String CTX_PREFIX    = "s3ShardedWriter.prefix";
+  private static final String CTX_SHARDS    = "s3ShardedWriter.shards";
+
+  private final S3Client s3;
+  private final AppProperties props;
+  private final String runId;
+  private final int partition;
+  private final long partSize;
+  private final CsvCompression codec;
+  private final byte[] header;
+
+  private String bucket;   // resolved at open()
+  private String prefix;   // resolved at open(), kept across restarts
+  private final List<String> shards = new ArrayList<>();
+  private int nextSeq;
+  private Path spool;
+  private OutputStream spoolOut;
+  private long spoolLength;
+  private long spoolRows;
+  private final List<Path> retired = new ArrayList<>();     // cut since the last commit
+  private final List<Path> deletable = new ArrayList<>();   // cut before the last commit
+  private ExecutorService compressor;     // only for compressed output
+  private Future<?> pendingSpool;         // last chunk still being compressed into the spool
+  private ExecutionContext stateBeforePending = new ExecutionContext();
+  private String pendingRows = "";
+
+  public S3ShardedCsvResultWriter(S3Client s3, AppProperties props, String runId, int partition) {
+    this.s3 = s3;
+    this.props = props;
+    this.runId = runId;
+    this.partition = partition;
+    this.partSize = Math.max(1, props.getOutputPartSizeMb()) * 1024L * 1024L;
+    this.codec = CsvCompression.named(props.getOutputCompression());
+    try {
+      this.header = codec.compress(S3CsvResultWriter.HEADER.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot compress CSV header", e);
+    }
+  }
+
+  /** Identifies one job instance across repository resets: its id plus the "ts" job parameter, e.g. 42-1718000000000. */
+  public static String runId(JobExecution job) {
+    Long ts = job.getJobParameters().getLong("ts");
+    return ts == null ? Long.toString(job.getJobId()) : job.getJobId() + "-" + ts;
+  }
+
+  /** Common key prefix of one run's shards and manifest, e.g. output/42-1718000000000/. */
+  public static String jobPrefix(AppProperties props, String runId) {
+    String p = props.getOutputShardPrefix() == null ? "" : props.getOutputShardPrefix().trim();
+    if (!p.isEmpty() && !p.endsWith("/")) p += "/";
+    return p + runId + "/";
+  }
+
+  /** Shard keys a writer recorded in its step ExecutionContext, in the order they were cut. */
+  public static List<String> shardKeys(ExecutionContext ctx) {
+    String v = ctx.containsKey(CTX_SHARDS) ? ctx.getString(CTX_SHARDS) : "";
+    return v.isEmpty() ? List.of() : List.of(v.split("\n"));
+  }
+
+  @Override
+  public void open(ExecutionContext ctx) throws ItemStreamException {
+    this.bucket = props.getS3Bucket() == null ? "" : props.getS3Bucket();
+    if (bucket.isBlank()) throw new ItemStreamException("S3 bucket is blank");
+    try {
+      shards.clear();
+      if (ctx.containsKey(CTX_SPOOL)) {
+        prefix = ctx.getString(CTX_PREFIX);
+        shards.addAll(shardKeys(ctx));
+        nextSeq = ctx.getInt(CTX_SEQ);
+        spool = Path.of(ctx.getString(CTX_SPOOL));
+        spoolLength = ctx.getLong(CTX_SPOOL_LEN);
+        spoolRows = ctx.getLong(CTX_ROWS);
+        if (!Files.exists(spool) || Files.size(spool) < spoolLength) {
+          throw new ItemStreamException("Result spool " + spool + " is missing or short; cannot resume shard writer");
+        }
+        try (FileChannel ch = FileChannel.open(spool, StandardOpenOption.WRITE)) {
+          ch.truncate(spoolLength);   // drop rows from the chunk that was rolled back
+        }
+        // rows of the last committed chunk that were still being compressed
+        String unspooled = ctx.getString(CTX_UNSPOOLED, "");
+        if (!unspooled.isEmpty()) {
+          byte[] bytes = codec.compress(unspooled.getBytes(StandardCharsets.UTF_8));
+          Files.write(spool, bytes, StandardOpenOption.APPEND);
+          spoolLength += bytes.length;
+        }
+        log.info("Resuming sharded writer s3://{}/{} at part {} ({} spooled rows)",
+            bucket, prefix, nextSeq, spoolRows);
+      } else {
+        prefix = jobPrefix(props, runId);
+        nextSeq = 0;
+        newSpool();
+        log.info("Opening sharded writer s3://{}/{}part-{}-*", bucket, prefix, String.format("%05d", partition));
+      }
+      spoolOut = new BufferedOutputStream(Files.newOutputStream(spool, StandardOpenOption.APPEND), 64 * 1024);
+      if (codec != CsvCompression.NONE) {
+        compressor = Executors.newSingleThreadExecutor(r -> {
+          Thread t = new Thread(r, "csv-compress");
+          t.setDaemon(true);
+          return t;
+        });
+      }
+    } catch (ItemStreamException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new ItemStreamException("Failed to open sharded writer for s3://" + bucket + "/" + jobPrefix(props, runId), e);
+    }
+  }
+
+  @Override
+  public void write(Chunk<? extends DeleteResult> items) throws Exception {
+    for (Path p : deletable) Files.deleteIfExists(p);
+    deletable.clear();
+    awaitSpool();
+    if (spoolRows > 0 && spoolLength >= partSize) cutShard();   // spool holds committed rows only here
+    if (items == null || items.isEmpty()) return;
+
+    StringBuilder sb = new StringBuilder(1024);
+    for (DeleteResult r : items.getItems()) S3CsvResultWriter.appendRow(sb, r);
+    String rows = sb.toString();
+    byte[] bytes = rows.getBytes(StandardCharsets.UTF_8);
+    spoolRows += items.size();
+    if (compressor == null) {
+      spoolOut.write(bytes);
+      spoolLength += bytes.length;
+      return;
+    }
+    // Compress off the step thread while the next chunk is read and processed. If update() comes before
+    // that finishes, it checkpoints the spool without this chunk plus the chunk's rows (see update()).
+    stateBeforePending = new ExecutionContext();
+    saveState(stateBeforePending);
+    pendingRows = rows;
+    pendingSpool = compressor.submit(() -> {
+      byte[] member = codec.compress(bytes);   // one gzip member / zstd frame per chunk
+      spoolOut.write(member);
+      spoolLength += member.length;
+      return null;
+    });
+  }
+
+  @Override
+  public void update(ExecutionContext ctx) throws ItemStreamException {
+    if (spoolOut == null) return;
+    if (pendingSpool != null && !pendingSpool.isDone()) {
+      // the committed chunk is still being compressed: record its rows so a restart can spool them again
+      for (Map.Entry<String, Object> e : stateBeforePending.entrySet()) ctx.put(e.getKey(), e.getValue());
+      ctx.putString(CTX_UNSPOOLED, pendingRows);
+    } else {
+      try {
+        awaitSpool();
+      } catch (Exception e) {
+        throw new ItemStreamException("Failed to compress results into spool " + spool, e);
+      }
+      saveState(ctx);
+      ctx.putString(CTX_UNSPOOLED, "");
+    }
+    deletable.addAll(retired);
+    retired.clear();
+  }
+
+  private void saveState(ExecutionContext ctx) {
+    try {
+      spoolOut.flush();
+    } catch (IOException e) {
+      throw new ItemStreamException("Failed to flush result spool " + spool, e);
+    }
+    ctx.putInt(CTX_SEQ, nextSeq);
+    ctx.putString(CTX_SPOOL, spool.toString());
+    ctx.putLong(CTX_SPOOL_LEN, spoolLength);
+    ctx.putLong(CTX_ROWS, spoolRows);
+    ctx.putString(CTX_PREFIX, prefix);
+    ctx.putString(CTX_SHARDS, String.join("\n", shards));
+  }
+
+  /** Cuts the last shard of a completed step and records it before the step's context is saved. */
+  @Override
+  public ExitStatus afterStep(StepExecution stepExecution) {
+    if (spoolOut == null || stepExecution.getStatus() != BatchStatus.COMPLETED) return null;
+    try {
+      awaitSpool();
+      if (spoolRows > 0) cutShard();
+      update(stepExecution.getExecutionContext());
+      return null;
+    } catch (Exception e) {
+      log.error("Failed to write last shard for s3://{}/{}", bucket, prefix, e);
+      stepExecution.upgradeStatus(BatchStatus.FAILED);
+      stepExecution.addFailureException(e);
+      return ExitStatus.FAILED.addExitDescription(e);
+    }
+  }
+
+  @Override
+  public void close() throws ItemStreamException {
+    if (spoolOut == null) return;
+    try {
+      if (!stepCompleted()) {
+        Future<?> f = pendingSpool;
+        if (f != null) f.cancel(true);   // its rows are in the checkpoint as unspooled rows
+        spoolOut.close();
+        log.warn("Step did not complete; keeping result spool {} for restart", spool);
+        return;
+      }
+      awaitSpool();
+      if (spoolRows > 0) cutShard();   // used outside a step (no afterStep)
+      spoolOut.close();
+      Files.deleteIfExists(spool);
+      for (Path p : retired) Files.deleteIfExists(p);
+      for (Path p : deletable) Files.deleteIfExists(p);
+    } catch (Exception e) {
+      throw new ItemStreamException("Failed to write last shard for s3://" + bucket + "/" + prefix, e);
+    } finally {
+      spoolOut = null;
+      if (compressor != null) compressor.shutdownNow();
+      compressor = null;
+    }
+  }
+
+  /* ---------- internals ---------- */
+
+  private void cutShard() throws IOException {
+    spoolOut.close();
+    String key = prefix + String.format("part-%05d-%05d.csv", partition, nextSeq) + codec.suffix();
+    s3.putObject(PutObjectRequest.builder().bucket(bucket).key(key).contentType(codec.contentType())
+            .metadata(Map.of(META_ROWS, Long.toString(spoolRows), META_HEADER_BYTES, Integer.toString(header.length)))
+            .build(),
+        RequestBody.fromFile(spool));
+    log.info("Wrote shard s3://{}/{} ({} rows, {} bytes)", bucket, key, spoolRows, spoolLength);
+    nextSeq++;
+    shards.add(key);
+    retired.add(spool);   // kept until committed: a rollback resumes from this file and re-cuts the same key
+    newSpool();
+    spoolOut = new BufferedOutputStream(Files.newOutputStream(spool, StandardOpenOption.APPEND), 64 * 1024);
+  }
+
+  private void awaitSpool() throws Exception {
+    Future<?> f = pendingSpool;
+    pendingSpool = null;
+    if (f == null) return;
+    try {
+      f.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception ex) throw ex;
+      throw e;
+    }
+  }
+
+  private void newSpool() throws IOException {
+    spool = Files.createTempFile("s3-shard-", ".csv");
+    Files.write(spool, header);
+    spoolLength = header.length;
+    spoolRows = 0;
+  }
+
+  private static boolean stepCompleted() {
+    StepContext c = StepSynchronizationManager.getContext();
+    return c == null || c.getStepExecution().getStatus() == BatchStatus.COMPLETED;
+  }
+}
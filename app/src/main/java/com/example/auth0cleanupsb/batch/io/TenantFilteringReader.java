@@ -0,0 +1,45 @@
+package com.example.auth0cleanupsb.batch.io;
+
+import com.example.auth0cleanupsb.auth0.Auth0Tenants;
+import com.example.auth0cleanupsb.batch.model.UserDeleteRecord;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+/**
+ * One tenant's rows of a multi-tenant input: every tenant partition reads the whole file and keeps the rows
+ * whose "tenant" cell names its tenant (blank = the APP_AUTH0_* tenant). Rows for a tenant that isn't
+ * configured are passed on by the partition marked to take them, with nothing left to look up, so the
+ * processor reports them as ERROR instead of them vanishing from the output.
+ *
+ * Skipped rows are simply consumed; the delegate's saved offset stays valid for restarts.
+ */
+public class TenantFilteringReader implements ItemStreamReader<UserDeleteRecord> {
+  private final ItemStreamReader<UserDeleteRecord> delegate;
+  private final Auth0Tenants tenants;
+  private final String tenant;
+  private final boolean takesUnknown;
+
+  public TenantFilteringReader(ItemStreamReader<UserDeleteRecord> delegate, Auth0Tenants tenants, String tenant,
+                               boolean takesUnknown) {
+    this.delegate = delegate;
+    this.tenants = tenants;
+    this.tenant = tenant;
+    this.takesUnknown = takesUnknown;
+  }
+
+  @Override
+  public UserDeleteRecord read() throws Exception {
+    UserDeleteRecord r;
+    while ((r = delegate.read()) != null) {
+      String name = tenants.nameOf(r.getTenant());
+      if (name.equals(tenant)) return r.withTenant(name);
+      if (takesUnknown && !tenants.isConfigured(name)) return r.withTenant(name).withLookup(r.getUserId());
+    }
+    return null;
+  }
+
+  @Override public void open(ExecutionContext ctx) throws ItemStreamException { delegate.open(ctx); }
+  @Override public void update(ExecutionContext ctx) throws ItemStreamException { delegate.update(ctx); }
+  @Override public void close() throws ItemStreamException { delegate.close(); }
+}
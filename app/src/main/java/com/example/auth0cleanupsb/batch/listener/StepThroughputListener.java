@@ -0,0 +1,110 @@
+package com.example.auth0cleanupsb.batch.listener;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-step throughput: batch.step.items{step,type=read|written|filtered} counters, advanced after every
+ * chunk, and a batch.step.items.per.second{step} gauge (items written per second since each running execution
+ * started, summed over partitions). Partition workers ("deleteUsersStep:partition3") report under their step
+ * name so the series don't multiply with the partition count.
+ */
+public class StepThroughputListener implements StepExecutionListener, ChunkListener {
+
+  /** Counts already reported for one running step execution. */
+  private static final class Progress {
+    final String step;
+    final StepExecution execution;
+    long read;
+    long written;
+    long filtered;
+
+    Progress(String step, StepExecution execution) {
+      this.step = step;
+      this.execution = execution;
+    }
+  }
+
+  private final MeterRegistry meters;
+  private final Map<Long, Progress> running = new ConcurrentHashMap<>();
+  private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+  private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+  public StepThroughputListener(MeterRegistry meters) {
+    this.meters = meters;
+  }
+
+  @Override
+  public void beforeStep(StepExecution stepExecution) {
+    String step = stepName(stepExecution);
+    running.put(stepExecution.getId(), new Progress(step, stepExecution));
+    gauges.computeIfAbsent(step, s -> Gauge.builder("batch.step.items.per.second", this, l -> l.itemsPerSecond(s))
+        .description("Items written per second by the running executions of a step").tag("step", s)
+        .register(meters));
+  }
+
+  @Override
+  public void afterChunk(ChunkContext context) {
+    report(context.getStepContext().getStepExecution());
+  }
+
+  @Override
+  public void afterChunkError(ChunkContext context) {
+    report(context.getStepContext().getStepExecution());
+  }
+
+  @Override
+  public ExitStatus afterStep(StepExecution stepExecution) {
+    report(stepExecution);
+    running.remove(stepExecution.getId());
+    return null;
+  }
+
+  private void report(StepExecution execution) {
+    Progress p = running.get(execution.getId());
+    if (p == null) return;
+    synchronized (p) {
+      p.read = advance(p.step, "read", p.read, execution.getReadCount());
+      p.written = advance(p.step, "written", p.written, execution.getWriteCount());
+      p.filtered = advance(p.step, "filtered", p.filtered, execution.getFilterCount());
+    }
+  }
+
+  private long advance(String step, String type, long reported, long now) {
+    if (now > reported) {
+      counters.computeIfAbsent(step + " " + type, k -> Counter.builder("batch.step.items")
+          .description("Items handled by a step").tag("step", step).tag("type", type).register(meters))
+          .increment(now - reported);
+    }
+    return Math.max(reported, now);
+  }
+
+  private double itemsPerSecond(String step) {
+    double total = 0;
+    LocalDateTime now = LocalDateTime.now();
+    for (Progress p : running.values()) {
+      LocalDateTime start = p.execution.getStartTime();
+      if (!p.step.equals(step) || start == null) continue;
+      double seconds = Duration.between(start, now).toMillis() / 1000.0;
+      if (seconds > 0) total += p.execution.getWriteCount() / seconds;
+    }
+    return total;
+  }
+
+  private static String stepName(StepExecution stepExecution) {
+    String name = stepExecution.getStepName();
+    int colon = name.indexOf(':');
+    return colon < 0 ? name : name.substring(0, colon);
+  }
+}
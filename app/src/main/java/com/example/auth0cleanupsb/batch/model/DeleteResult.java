@@ -4,7 +4,7 @@ public class DeleteResult {
   private final String ssoid;
   private final String email;
   private final String auth0UserId;
-  private final String status;              // e.g., DELETED, DRY_RUN, NOT_FOUND, ERROR
+  private final String status;              // e.g., DELETED, DRY_RUN, NOT_FOUND, DUPLICATE, ERROR
   private final String deactivationFlag;    // "Y" or "N"
   private final String lastUpdateTimestamp; // ISO-8601 string
   private final String error;               // nullable; message text
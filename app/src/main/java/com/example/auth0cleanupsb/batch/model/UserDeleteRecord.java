@@ -4,14 +4,47 @@ public class UserDeleteRecord {
   private final String userId;
   private final String ssoid;
   private final String email;
+  private final String tenant;      // Auth0 tenant of a multi-tenant run; blank = the APP_AUTH0_* tenant
+  private final boolean lookedUp;   // user_id already searched for upstream; blank user_id means not found
+  private final boolean duplicate;  // an earlier row had the same identity; reported without any call
 
   public UserDeleteRecord(String userId, String ssoid, String email) {
+    this(userId, ssoid, email, "");
+  }
+
+  public UserDeleteRecord(String userId, String ssoid, String email, String tenant) {
+    this(userId, ssoid, email, tenant, false, false);
+  }
+
+  private UserDeleteRecord(String userId, String ssoid, String email, String tenant, boolean lookedUp,
+                           boolean duplicate) {
     this.userId = userId == null ? "" : userId;
     this.ssoid  = ssoid  == null ? "" : ssoid;
     this.email  = email  == null ? "" : email;
+    this.tenant = tenant == null ? "" : tenant;
+    this.lookedUp = lookedUp;
+    this.duplicate = duplicate;
+  }
+
+  /** Copy carrying the result of an upstream lookup (null/blank = no such user). */
+  public UserDeleteRecord withLookup(String resolvedUserId) {
+    return new UserDeleteRecord(resolvedUserId, ssoid, email, tenant, true, duplicate);
+  }
+
+  /** Copy marked as a repeat of an earlier row. */
+  public UserDeleteRecord asDuplicate() {
+    return new UserDeleteRecord(userId, ssoid, email, tenant, lookedUp, true);
+  }
+
+  /** Copy routed to the named tenant. */
+  public UserDeleteRecord withTenant(String tenantName) {
+    return new UserDeleteRecord(userId, ssoid, email, tenantName, lookedUp, duplicate);
   }
 
   public String getUserId() { return userId; }
   public String getSsoid()  { return ssoid; }
   public String getEmail()  { return email; }
+  public String getTenant() { return tenant; }
+  public boolean isLookedUp() { return lookedUp; }
+  public boolean isDuplicate() { return duplicate; }
 }
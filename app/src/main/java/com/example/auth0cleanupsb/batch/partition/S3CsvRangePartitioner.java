@@ -0,0 +1,135 @@
+package com.example.auth0cleanupsb.batch.partition;
+
+import com.example.auth0cleanupsb.batch.io.CsvCompression;
+import com.example.auth0cleanupsb.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the input CSV into byte ranges, one per worker step, using HEAD for the size and small ranged GETs
+ * to move each cut forward to the start of the next line. Nothing but those probes is read here; each worker
+ * streams only its own range.
+ *
+ * Cuts are made at line breaks, so quoted fields must not contain newlines (true for user_id/email/ssoid).
+ * Each partition also gets its own result shard key derived from APP_S3_KEY.
+ */
+public class S3CsvRangePartitioner implements Partitioner {
+  private static final Logger log = LoggerFactory.getLogger(S3CsvRangePartitioner.class);
+
+  public static final String CTX_INDEX       = "partition.index";
+  public static final String CTX_START_BYTE  = "partition.startByte";
+  public static final String CTX_END_BYTE    = "partition.endByte";
+  public static final String CTX_HEADER_LINE = "partition.headerLine";
+  public static final String CTX_OUTPUT_KEY  = "partition.outputKey";
+
+  private static final int PROBE_BYTES = 64 * 1024;
+  private static final long MIN_PARTITION_BYTES = 1024 * 1024;   // smaller ranges aren't worth a worker
+
+  private final S3Client s3;
+  private final AppProperties props;
+  private final boolean header;
+  private final int partitions;
+
+  /** partitions overrides Spring Batch's gridSize, which is fixed when the step is built. */
+  public S3CsvRangePartitioner(S3Client s3, AppProperties props, boolean header, int partitions) {
+    this.s3 = s3;
+    this.props = props;
+    this.header = header;
+    this.partitions = Math.max(1, partitions);
+  }
+
+  @Override
+  public Map<String, ExecutionContext> partition(int gridSize) {
+    String bucket = props.getS3Bucket();
+    String key = props.getInputS3Key();
+    HeadObjectResponse head = s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
+    long size = head.contentLength();
+    if (CsvCompression.detect(key, head.contentEncoding()) != CsvCompression.NONE) {
+      // a compressed object has no record boundaries we can seek to: one worker reads it all
+      log.info("s3://{}/{} is compressed; running it as a single partition", bucket, key);
+      return Map.of(String.format("partition%05d", 0), context(0, 0, -1, ""));
+    }
+
+    String headerLine = "";
+    long dataStart = 0;
+    if (header && size > 0) {
+      long eol = nextLineStart(bucket, key, 0, size);
+      headerLine = new String(range(bucket, key, 0, eol - 1), StandardCharsets.UTF_8).strip();
+      dataStart = eol;
+    }
+
+    int n = (int) Math.max(1, Math.min(partitions, (size - dataStart) / MIN_PARTITION_BYTES));
+    List<Long> cuts = new ArrayList<>();
+    cuts.add(0L); // the first range includes the header line and skips it like a plain read
+    for (int i = 1; i < n; i++) {
+      long nominal = dataStart + (size - dataStart) * i / n;
+      long cut = nextLineStart(bucket, key, nominal, size);
+      if (cut > cuts.get(cuts.size() - 1) && cut < size) cuts.add(cut);
+    }
+    cuts.add(size);
+
+    Map<String, ExecutionContext> out = new HashMap<>();
+    for (int i = 0; i + 1 < cuts.size(); i++) {
+      out.put(String.format("partition%05d", i), context(i, cuts.get(i), cuts.get(i + 1), headerLine));
+    }
+    log.info("Partitioned s3://{}/{} ({} bytes) into {} ranges", bucket, key, size, out.size());
+    if (props.isInputDedup() && out.size() > 1) {
+      log.info("Input dedup compares rows within each range only; a row repeated in another range is looked up again");
+    }
+    return out;
+  }
+
+  private ExecutionContext context(int index, long start, long end, String headerLine) {
+    ExecutionContext ctx = new ExecutionContext();
+    ctx.putInt(CTX_INDEX, index);
+    ctx.putLong(CTX_START_BYTE, start);
+    ctx.putLong(CTX_END_BYTE, end);
+    ctx.putString(CTX_HEADER_LINE, headerLine);
+    ctx.putString(CTX_OUTPUT_KEY, shardKey(props.getOutputS3Key(), index));
+    return ctx;
+  }
+
+  /** output/deleted_users.csv -> output/deleted_users.part-00003.csv */
+  public static String shardKey(String outputKey, int index) {
+    String k = outputKey == null ? "" : outputKey;
+    int slash = k.lastIndexOf('/');
+    int dot = k.lastIndexOf('.');
+    String suffix = String.format(".part-%05d", index);
+    return dot > slash ? k.substring(0, dot) + suffix + k.substring(dot) : k + suffix;
+  }
+
+  /** Offset just after the first '\n' at or after from-1 (so a cut already at a line start stays put). */
+  private long nextLineStart(String bucket, String key, long from, long size) {
+    long pos = Math.max(0, from - 1);
+    while (pos < size) {
+      long end = Math.min(size, pos + PROBE_BYTES) - 1;
+      byte[] buf = range(bucket, key, pos, end);
+      for (int i = 0; i < buf.length; i++) {
+        if (buf[i] == '\n') return pos + i + 1;
+      }
+      pos += buf.length;
+    }
+    return size;
+  }
+
+  private byte[] range(String bucket, String key, long first, long lastInclusive) {
+    if (lastInclusive < first) return new byte[0];
+    ResponseBytes<GetObjectResponse> bytes = s3.getObjectAsBytes(GetObjectRequest.builder()
+        .bucket(bucket).key(key).range("bytes=" + first + "-" + lastInclusive).build());
+    return bytes.asByteArray();
+  }
+}
@@ -0,0 +1,64 @@
+package com.example.auth0cleanupsb.batch.partition;
+
+import com.example.auth0cleanupsb.auth0.Auth0Tenants;
+import com.example.auth0cleanupsb.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One partition per configured Auth0 tenant for multi-tenant runs. Each worker reads the whole input, keeps
+ * its tenant's rows ({@code TenantFilteringReader}) and calls Auth0 through that tenant's own client, so
+ * tenants run in parallel on separate rate budgets and the run takes about as long as the slowest tenant.
+ * Results go to a per-tenant key derived from APP_S3_KEY; the first partition also reports rows whose
+ * tenant isn't configured.
+ */
+public class TenantPartitioner implements Partitioner {
+  private static final Logger log = LoggerFactory.getLogger(TenantPartitioner.class);
+
+  public static final String CTX_TENANT         = "partition.tenant";
+  public static final String CTX_TAKES_UNKNOWN  = "partition.takesUnknownTenants";
+
+  private final Auth0Tenants tenants;
+  private final AppProperties props;
+
+  public TenantPartitioner(Auth0Tenants tenants, AppProperties props) {
+    this.tenants = tenants;
+    this.props = props;
+  }
+
+  @Override
+  public Map<String, ExecutionContext> partition(int gridSize) {
+    List<String> names = tenants.names();
+    if (names.isEmpty()) {
+      throw new IllegalStateException("Multi-tenant run without tenants: set APP_AUTH0_DOMAIN or SSM "
+          + "<APP_PARAM_PREFIX>tenants/<name>/AUTH0_DOMAIN");
+    }
+    Map<String, ExecutionContext> out = new LinkedHashMap<>();
+    for (int i = 0; i < names.size(); i++) {
+      String tenant = names.get(i);
+      ExecutionContext ctx = new ExecutionContext();
+      ctx.putInt(S3CsvRangePartitioner.CTX_INDEX, i);
+      ctx.putString(CTX_TENANT, tenant);
+      ctx.putString(CTX_TAKES_UNKNOWN, Boolean.toString(i == 0));
+      ctx.putString(S3CsvRangePartitioner.CTX_OUTPUT_KEY, tenantKey(props.getOutputS3Key(), tenant));
+      out.put("tenant-" + tenant, ctx);
+    }
+    log.info("Multi-tenant run over {} tenants: {}", names.size(), names);
+    return out;
+  }
+
+  /** output/deleted_users.csv -> output/deleted_users.tenant-prod.csv */
+  public static String tenantKey(String outputKey, String tenant) {
+    String k = outputKey == null ? "" : outputKey;
+    int slash = k.lastIndexOf('/');
+    int dot = k.lastIndexOf('.');
+    String suffix = ".tenant-" + tenant;
+    return dot > slash ? k.substring(0, dot) + suffix + k.substring(dot) : k + suffix;
+  }
+}
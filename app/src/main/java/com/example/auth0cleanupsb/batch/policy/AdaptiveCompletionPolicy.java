@@ -0,0 +1,132 @@
+package com.example.auth0cleanupsb.batch.policy;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
+
+import java.time.Duration;
+
+/**
+ * Chunk size that follows the measured cost of a chunk instead of a fixed 50.
+ *
+ * Each chunk is split in two phases: the item phase (read, Auth0 calls, waiting for their results) and the
+ * commit overhead (output write, ExecutionContext update, job-repository commit), which starts when the
+ * results reach the real writer (see {@link #timing}). With smoothed per-item and overhead estimates the next
+ * size is the one whose chunk takes the target duration, but never so small that the overhead is more than
+ * half of the chunk, clamped to [min, max] and at most doubled or halved per chunk. Fast Auth0 therefore
+ * means big chunks and few commits; throttling shrinks chunks so a failure rolls back less work.
+ *
+ * One instance serves every thread of the step (partition workers share the estimates, since they share
+ * the Auth0 budget and the output store) and keeps its size between job runs.
+ */
+public class AdaptiveCompletionPolicy extends SimpleCompletionPolicy implements ChunkListener {
+  private static final Logger log = LoggerFactory.getLogger(AdaptiveCompletionPolicy.class);
+  private static final double SMOOTHING = 0.3;   // weight of the newest chunk in the estimates
+
+  private final String stepName;
+  private final int minSize;
+  private final int maxSize;
+  private final long targetNanos;
+  private final Counter resizes;
+
+  /** Per thread: chunk start, start of the real write, items written. */
+  private final ThreadLocal<long[]> marks = ThreadLocal.withInitial(() -> new long[3]);
+  private double perItemNanos = -1;
+  private double overheadNanos = -1;
+
+  public AdaptiveCompletionPolicy(String stepName, int initialSize, int minSize, int maxSize, Duration target,
+                                  MeterRegistry meters) {
+    this.stepName = stepName;
+    this.minSize = Math.max(1, minSize);
+    this.maxSize = Math.max(this.minSize, maxSize);
+    this.targetNanos = Math.max(1, target.toNanos());
+    setChunkSize(clamp(initialSize));
+
+    Gauge.builder("batch.chunk.size", this, AdaptiveCompletionPolicy::getChunkSize).tag("step", stepName)
+        .description("Current chunk size chosen by the adaptive completion policy").register(meters);
+    Gauge.builder("batch.chunk.item.seconds", this, p -> p.estimate(true)).tag("step", stepName)
+        .description("Smoothed time per item (read + Auth0 calls)").register(meters);
+    Gauge.builder("batch.chunk.overhead.seconds", this, p -> p.estimate(false)).tag("step", stepName)
+        .description("Smoothed fixed cost per chunk (output write + commit)").register(meters);
+    this.resizes = Counter.builder("batch.chunk.resizes").tag("step", stepName)
+        .description("Chunk size changes made by the adaptive completion policy").register(meters);
+  }
+
+  /** Wrap the step's real writer so the policy sees when a chunk's items are done and its overhead begins. */
+  public <T> ItemStreamWriter<T> timing(ItemStreamWriter<T> writer) {
+    return new ItemStreamWriter<>() {
+      @Override
+      public void write(Chunk<? extends T> items) throws Exception {
+        long[] m = marks.get();
+        m[1] = System.nanoTime();
+        m[2] = items.size();
+        writer.write(items);
+      }
+
+      @Override public void open(ExecutionContext ctx) throws ItemStreamException { writer.open(ctx); }
+      @Override public void update(ExecutionContext ctx) throws ItemStreamException { writer.update(ctx); }
+      @Override public void close() throws ItemStreamException { writer.close(); }
+    };
+  }
+
+  @Override
+  public void beforeChunk(ChunkContext context) {
+    long[] m = marks.get();
+    m[0] = System.nanoTime();
+    m[1] = 0;
+    m[2] = 0;
+  }
+
+  @Override
+  public void afterChunk(ChunkContext context) {
+    long[] m = marks.get();
+    if (m[1] == 0 || m[2] == 0) return;   // nothing was written (end of input)
+    long now = System.nanoTime();
+    observe((int) m[2], m[1] - m[0], now - m[1]);
+    m[1] = 0;
+  }
+
+  @Override
+  public void afterChunkError(ChunkContext context) {
+    marks.get()[1] = 0;
+  }
+
+  synchronized void observe(int items, long itemPhaseNanos, long overheadPhaseNanos) {
+    double perItem = (double) itemPhaseNanos / items;
+    perItemNanos = perItemNanos < 0 ? perItem : perItemNanos + SMOOTHING * (perItem - perItemNanos);
+    overheadNanos = overheadNanos < 0 ? overheadPhaseNanos
+        : overheadNanos + SMOOTHING * (overheadPhaseNanos - overheadNanos);
+
+    double perItemSafe = Math.max(1, perItemNanos);
+    double forTarget = (targetNanos - overheadNanos) / perItemSafe;   // chunk lasts about the target
+    double amortized = overheadNanos / perItemSafe;                     // overhead at most half of the chunk
+    int current = getChunkSize();
+    long wanted = Math.round(Math.max(forTarget, amortized));
+    int next = clamp((int) Math.max(current / 2, Math.min((long) current * 2, wanted)));
+    if (next == current || Math.abs(next - current) < Math.max(1, current / 10)) return;
+
+    setChunkSize(next);
+    resizes.increment();
+    log.info("{} chunk size {} -> {} (per item {} ms, commit overhead {} ms, target {} ms)", stepName, current,
+        next, String.format("%.2f", perItemNanos / 1e6), String.format("%.1f", overheadNanos / 1e6),
+        targetNanos / 1_000_000);
+  }
+
+  private double estimate(boolean perItem) {
+    double v = perItem ? perItemNanos : overheadNanos;
+    return v < 0 ? Double.NaN : v / 1e9;
+  }
+
+  private int clamp(int size) {
+    return Math.min(maxSize, Math.max(minSize, size));
+  }
+}
@@ -3,21 +3,46 @@ package com.example.auth0cleanupsb.batch.processor;
 import com.example.auth0cleanupsb.auth0.Auth0Client;
 import com.example.auth0cleanupsb.batch.model.DeleteResult;
 import com.example.auth0cleanupsb.batch.model.UserDeleteRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.batch.item.ItemProcessor;
 
 import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Auth0DeleteProcessor implements ItemProcessor<UserDeleteRecord, DeleteResult> {
   private final Auth0Client auth0;
+  private final String tenant;              // multi-tenant runs: rows of any other tenant are not ours to touch
   private final boolean dryRun;
+  private final MeterRegistry meters;       // null = no batch.results counters
+  private final Map<String, Counter> results = new ConcurrentHashMap<>();
 
   public Auth0DeleteProcessor(Auth0Client auth0, String dryRunParam) {
+    this(auth0, dryRunParam, null);
+  }
+
+  public Auth0DeleteProcessor(Auth0Client auth0, String dryRunParam, MeterRegistry meters) {
+    this(auth0, null, dryRunParam, meters);
+  }
+
+  /** Processor for one tenant's partition of a multi-tenant run; tenant null = single-tenant run. */
+  public Auth0DeleteProcessor(Auth0Client auth0, String tenant, String dryRunParam, MeterRegistry meters) {
     this.auth0 = auth0;
+    this.tenant = tenant;
     this.dryRun = Boolean.parseBoolean(dryRunParam);
+    this.meters = meters;
   }
 
   @Override
   public DeleteResult process(UserDeleteRecord item) throws Exception {
+    return counted(resolve(item));
+  }
+
+  private DeleteResult resolve(UserDeleteRecord item) {
     String userId = nz(item.getUserId());
     String ssoid  = nz(item.getSsoid());
     String email  = nz(item.getEmail());
@@ -27,6 +52,14 @@ public class Auth0DeleteProcessor implements ItemProcessor<UserDeleteRecord, Del
     String error = null;
     String effectiveUserId = userId;
 
+    DeleteResult foreign = otherTenant(item, ts);
+    if (foreign != null) return foreign;
+
+    // Same identity as an earlier row of this run: that row already did the work
+    if (item.isDuplicate()) {
+      return new DeleteResult(ssoid, email, userId.isBlank() ? null : userId, "DUPLICATE", "N", ts, null);
+    }
+
     try {
       // 1) Prefer direct delete by user_id
       if (!userId.isBlank()) {
@@ -35,6 +68,11 @@ public class Auth0DeleteProcessor implements ItemProcessor<UserDeleteRecord, Del
         return new DeleteResult(ssoid, email, userId, status, dryRun ? "N" : "Y", ts, null);
       }
 
+      // Already resolved upstream (batched lookup) and nothing matched
+      if (item.isLookedUp()) {
+        return new DeleteResult(ssoid, email, null, "NOT_FOUND", "N", ts, null);
+      }
+
       // 2) Fallback: find by SSOID
       if (!ssoid.isBlank()) {
         effectiveUserId = auth0.findUserIdBySsoid(ssoid);
@@ -61,5 +99,78 @@ public class Auth0DeleteProcessor implements ItemProcessor<UserDeleteRecord, Del
     }
   }
 
+  /**
+   * Same outcomes as {@link #process} on the non-blocking client: lookups and the delete are chained on
+   * each other's responses, so a chunk's items are all in flight without a thread per item.
+   */
+  public CompletableFuture<DeleteResult> processAsync(UserDeleteRecord item) {
+    return resolveAsync(item).thenApply(this::counted);
+  }
+
+  private CompletableFuture<DeleteResult> resolveAsync(UserDeleteRecord item) {
+    String userId = nz(item.getUserId());
+    String ssoid  = nz(item.getSsoid());
+    String email  = nz(item.getEmail());
+    String ts = OffsetDateTime.now().toString();
+
+    DeleteResult foreign = otherTenant(item, ts);
+    if (foreign != null) return CompletableFuture.completedFuture(foreign);
+    if (item.isDuplicate()) {
+      return CompletableFuture.completedFuture(
+          new DeleteResult(ssoid, email, userId.isBlank() ? null : userId, "DUPLICATE", "N", ts, null));
+    }
+    if (!userId.isBlank()) return deleteAsync(ssoid, email, userId, ts);
+    if (item.isLookedUp()) {
+      return CompletableFuture.completedFuture(new DeleteResult(ssoid, email, null, "NOT_FOUND", "N", ts, null));
+    }
+
+    CompletableFuture<String> lookup = ssoid.isBlank()
+        ? CompletableFuture.completedFuture(null)
+        : auth0.findUserIdBySsoidAsync(ssoid);
+    AtomicReference<String> effectiveUserId = new AtomicReference<>();   // as in resolve(): reported with an ERROR
+    return lookup
+        .thenCompose(uid -> {
+          effectiveUserId.set(uid);
+          return nz(uid).isBlank() && !email.isBlank()
+              ? auth0.findUserIdByEmailAsync(email)
+              : CompletableFuture.completedFuture(uid);
+        })
+        .thenCompose(uid -> {
+          effectiveUserId.set(uid);
+          return nz(uid).isBlank()
+              ? CompletableFuture.completedFuture(new DeleteResult(ssoid, email, null, "NOT_FOUND", "N", ts, null))
+              : deleteAsync(ssoid, email, uid, ts);
+        })
+        .exceptionally(e -> new DeleteResult(ssoid, email, effectiveUserId.get(), "ERROR", "N", ts, cause(e).getMessage()));
+  }
+
+  private CompletableFuture<DeleteResult> deleteAsync(String ssoid, String email, String userId, String ts) {
+    CompletableFuture<Void> delete = dryRun ? CompletableFuture.completedFuture(null) : auth0.deleteUserByIdAsync(userId);
+    return delete.handle((ok, e) -> e == null
+        ? new DeleteResult(ssoid, email, userId, dryRun ? "DRY_RUN" : "DELETED", dryRun ? "N" : "Y", ts, null)
+        : new DeleteResult(ssoid, email, userId, "ERROR", "N", ts, cause(e).getMessage()));
+  }
+
+  /** ERROR for a row routed to a tenant that has no configuration (only the one partition taking those sees them). */
+  private DeleteResult otherTenant(UserDeleteRecord item, String ts) {
+    if (tenant == null || tenant.equals(item.getTenant())) return null;
+    String userId = nz(item.getUserId());
+    return new DeleteResult(nz(item.getSsoid()), nz(item.getEmail()), userId.isBlank() ? null : userId, "ERROR", "N",
+        ts, "No Auth0 tenant '" + item.getTenant() + "' configured");
+  }
+
+  /** Count the outcome under batch.results{status} (DELETED, NOT_FOUND, ERROR, ...). */
+  private DeleteResult counted(DeleteResult r) {
+    if (meters != null) {
+      results.computeIfAbsent(r.getStatus(), status -> Counter.builder("batch.results")
+          .description("Batch rows processed, by outcome").tag("status", status).register(meters)).increment();
+    }
+    return r;
+  }
+
+  private static Throwable cause(Throwable e) {
+    return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+  }
+
   private static String nz(String s) { return s == null ? "" : s.trim(); }
 }
@@ -0,0 +1,36 @@
+package com.example.auth0cleanupsb.batch.processor;
+
+import org.springframework.batch.item.ItemProcessor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Starts each item's non-blocking call and returns its future, with at most {@code limit} calls in flight:
+ * once the window is full the step thread waits for one to finish before starting the next.
+ * Pair with {@code FutureUnwrappingItemWriter}, like {@link ConcurrentItemProcessor}.
+ */
+public class BoundedAsyncItemProcessor<I, O> implements ItemProcessor<I, Future<O>> {
+  private final Function<I, CompletableFuture<O>> call;
+  private final Semaphore window;
+
+  public BoundedAsyncItemProcessor(Function<I, CompletableFuture<O>> call, int limit) {
+    this.call = call;
+    this.window = new Semaphore(Math.max(1, limit));
+  }
+
+  @Override
+  public Future<O> process(I item) throws InterruptedException {
+    window.acquire();
+    CompletableFuture<O> f;
+    try {
+      f = call.apply(item);
+    } catch (RuntimeException e) {
+      window.release();
+      throw e;
+    }
+    return f.whenComplete((r, e) -> window.release());
+  }
+}
@@ -0,0 +1,43 @@
+package com.example.auth0cleanupsb.batch.processor;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Hands each item to a bounded executor and returns a Future for it.
+ * Pair with {@code FutureUnwrappingItemWriter}: the chunk's futures are awaited in read order at write time,
+ * so output order and the chunk transaction boundary are unchanged.
+ */
+public class ConcurrentItemProcessor<I, O> implements ItemProcessor<I, Future<O>> {
+  private final ItemProcessor<I, O> delegate;
+  private final TaskExecutor executor;
+
+  public ConcurrentItemProcessor(ItemProcessor<I, O> delegate, TaskExecutor executor) {
+    this.delegate = delegate;
+    this.executor = executor;
+  }
+
+  @Override
+  public Future<O> process(I item) {
+    // step-scoped delegates need the step context on the worker thread too
+    StepContext ctx = StepSynchronizationManager.getContext();
+    StepExecution stepExecution = ctx == null ? null : ctx.getStepExecution();
+
+    FutureTask<O> task = new FutureTask<>(() -> {
+      if (stepExecution != null) StepSynchronizationManager.register(stepExecution);
+      try {
+        return delegate.process(item);
+      } finally {
+        if (stepExecution != null) StepSynchronizationManager.close();
+      }
+    });
+    executor.execute(task);
+    return task;
+  }
+}
@@ -0,0 +1,71 @@
+package com.example.auth0cleanupsb.batch.resolve;
+
+import com.example.auth0cleanupsb.auth0.Auth0Client;
+import com.example.auth0cleanupsb.auth0.Auth0Client.BatchLookupResult;
+import com.example.auth0cleanupsb.batch.model.UserDeleteRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Resolves a batch with OR'ed Auth0 searches: SSOIDs first, then emails for whatever is still missing. */
+public class Auth0SearchIdentityResolver implements IdentityResolver {
+  private final Auth0Client auth0;
+  private final int maxQueryChars;
+
+  public Auth0SearchIdentityResolver(Auth0Client auth0, int maxQueryChars) {
+    this.auth0 = auth0;
+    this.maxQueryChars = maxQueryChars;
+  }
+
+  @Override
+  public List<UserDeleteRecord> resolve(List<UserDeleteRecord> batch) throws Exception {
+    List<String> ssoids = new ArrayList<>();
+    for (UserDeleteRecord r : batch) {
+      if (needsLookup(r) && !nz(r.getSsoid()).isBlank()) ssoids.add(nz(r.getSsoid()));
+    }
+    BatchLookupResult bySsoid = ssoids.isEmpty() ? empty() : auth0.findUserIdsBySsoids(ssoids, maxQueryChars);
+
+    List<String> emails = new ArrayList<>();
+    for (UserDeleteRecord r : batch) {
+      if (needsLookup(r) && ssoidMissed(r, bySsoid) && !nz(r.getEmail()).isBlank()) emails.add(nz(r.getEmail()));
+    }
+    BatchLookupResult byEmail = emails.isEmpty() ? empty() : auth0.findUserIdsByEmails(emails, maxQueryChars);
+
+    List<UserDeleteRecord> out = new ArrayList<>(batch.size());
+    for (UserDeleteRecord r : batch) out.add(needsLookup(r) ? apply(r, bySsoid, byEmail) : r);
+    return out;
+  }
+
+  private static UserDeleteRecord apply(UserDeleteRecord r, BatchLookupResult bySsoid, BatchLookupResult byEmail) {
+    String ssoid = nz(r.getSsoid());
+    String email = nz(r.getEmail());
+    if (ssoid.isBlank() && email.isBlank()) return r;
+
+    if (!ssoid.isBlank()) {
+      String uid = bySsoid.userIds().get(ssoid);
+      if (uid != null) return r.withLookup(uid);
+      if (!bySsoid.notFound().contains(ssoid)) return r;   // undecided: per-row fallback
+    }
+    if (email.isBlank()) return r.withLookup(null);
+
+    String uid = byEmail.userIds().get(email);
+    if (uid != null) return r.withLookup(uid);
+    if (byEmail.notFound().contains(email)) return r.withLookup(null);
+    return r;
+  }
+
+  private static boolean needsLookup(UserDeleteRecord r) {
+    return nz(r.getUserId()).isBlank() && !r.isLookedUp();
+  }
+
+  private static boolean ssoidMissed(UserDeleteRecord r, BatchLookupResult bySsoid) {
+    String ssoid = nz(r.getSsoid());
+    return ssoid.isBlank() || bySsoid.notFound().contains(ssoid);
+  }
+
+  private static BatchLookupResult empty() { return new BatchLookupResult(Map.of(), Set.of()); }
+
+  private static String nz(String s) { return s == null ? "" : s.trim(); }
+}
@@ -0,0 +1,14 @@
+package com.example.auth0cleanupsb.batch.resolve;
+
+import com.example.auth0cleanupsb.batch.model.UserDeleteRecord;
+
+import java.util.List;
+
+/**
+ * Resolves user_ids for a batch of input rows at once.
+ * Returns the rows in the same order; resolved rows are {@link UserDeleteRecord#withLookup} copies,
+ * rows it could not decide are returned unchanged so the processor looks them up itself.
+ */
+public interface IdentityResolver {
+  List<UserDeleteRecord> resolve(List<UserDeleteRecord> batch) throws Exception;
+}
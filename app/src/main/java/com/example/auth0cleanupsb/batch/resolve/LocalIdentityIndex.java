@@ -0,0 +1,230 @@
+package com.example.auth0cleanupsb.batch.resolve;
+
+import com.example.auth0cleanupsb.util.Hash64;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Read-only ssoid/email -> user_id index built from an Auth0 users export (NDJSON, one user per line).
+ *
+ * Everything lives in memory-mapped temp files, not on the heap: a record file of
+ * [keyLen][key][userIdLen][userId] entries and an open-addressing table of [hash64][recordOffset] slots.
+ * Lookups verify the stored key, so a 64-bit hash collision can never resolve to the wrong user.
+ * The first user seen for a key wins, like the first element of a search result.
+ */
+public class LocalIdentityIndex implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(LocalIdentityIndex.class);
+  private static final int SLOT_BYTES = 16;
+
+  private final List<String> ssoidPaths;
+  private final Path recordsFile;
+  private final Path tableFile;
+  private final MappedByteBuffer records;
+  private final MappedByteBuffer table;
+  private final long mask;
+  private final long entries;
+
+  private LocalIdentityIndex(List<String> ssoidPaths, Path recordsFile, Path tableFile,
+                             MappedByteBuffer records, MappedByteBuffer table, long slots, long entries) {
+    this.ssoidPaths = ssoidPaths;
+    this.recordsFile = recordsFile;
+    this.tableFile = tableFile;
+    this.records = records;
+    this.table = table;
+    this.mask = slots - 1;
+    this.entries = entries;
+  }
+
+  /**
+   * Stream an export and build the index. Each line is a JSON user; fields are read either flat by their
+   * export_as name (user_id, email, ssoid_0..n in ssoidPaths order) or nested by their metadata path.
+   */
+  public static LocalIdentityIndex build(InputStream ndjson, List<String> ssoidPaths) throws IOException {
+    ObjectMapper om = new ObjectMapper();
+    Path recordsFile = Files.createTempFile("identity-index-", ".rec");
+    Path entriesFile = Files.createTempFile("identity-index-", ".ent");
+    Path tableFile = Files.createTempFile("identity-index-", ".tab");
+    long count = 0;
+    long users = 0;
+
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8), 1 << 16);
+         DataOutputStream rec = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(recordsFile), 1 << 16));
+         DataOutputStream ent = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(entriesFile), 1 << 16))) {
+      long offset = 0;
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.isBlank()) continue;
+        JsonNode u = om.readTree(line);
+        String uid = text(u, "user_id", "user_id");
+        if (uid == null) continue;
+        users++;
+
+        String email = text(u, "email", "email");
+        if (email != null) {
+          offset = writeEntry(rec, ent, offset, emailKey(email), uid);
+          count++;
+        }
+        for (int i = 0; i < ssoidPaths.size(); i++) {
+          String ssoid = text(u, "ssoid_" + i, ssoidPaths.get(i));
+          if (ssoid != null) {
+            offset = writeEntry(rec, ent, offset, ssoidKey(i, ssoid), uid);
+            count++;
+          }
+        }
+      }
+    }
+
+    long slots = Long.highestOneBit(Math.max(16, count * 2)) << 1; // load factor <= 0.5
+    if (slots * SLOT_BYTES > Integer.MAX_VALUE || Files.size(recordsFile) > Integer.MAX_VALUE) {
+      Files.deleteIfExists(recordsFile);
+      Files.deleteIfExists(entriesFile);
+      Files.deleteIfExists(tableFile);
+      throw new IOException("Identity index too large for a single mapping (" + count + " keys)");
+    }
+
+    MappedByteBuffer records;
+    MappedByteBuffer table;
+    try (FileChannel rc = FileChannel.open(recordsFile, StandardOpenOption.READ);
+         FileChannel tc = FileChannel.open(tableFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      records = rc.map(FileChannel.MapMode.READ_ONLY, 0, rc.size());
+      table = tc.map(FileChannel.MapMode.READ_WRITE, 0, slots * SLOT_BYTES);
+    }
+    LocalIdentityIndex index = new LocalIdentityIndex(List.copyOf(ssoidPaths), recordsFile, tableFile,
+        records, table, slots, count);
+
+    try (DataInputStream ent = new DataInputStream(new BufferedInputStream(Files.newInputStream(entriesFile), 1 << 16))) {
+      for (long i = 0; i < count; i++) index.insert(ent.readLong(), ent.readLong());
+    } finally {
+      Files.deleteIfExists(entriesFile);
+    }
+    log.info("Built local identity index: {} users, {} keys, {} MiB mapped",
+        users, count, (records.capacity() + table.capacity()) >> 20);
+    return index;
+  }
+
+  /** user_id for an SSOID, honouring path order, or null. */
+  public String findBySsoid(String ssoid) {
+    if (ssoid == null || ssoid.isBlank()) return null;
+    for (int i = 0; i < ssoidPaths.size(); i++) {
+      String uid = get(ssoidKey(i, ssoid.trim()));
+      if (uid != null) return uid;
+    }
+    return null;
+  }
+
+  /** user_id for an email (case-insensitive), or null. */
+  public String findByEmail(String email) {
+    if (email == null || email.isBlank()) return null;
+    return get(emailKey(email));
+  }
+
+  public long size() { return entries; }
+
+  /** Delete the backing files; existing mappings stay readable until collected. */
+  @Override
+  public void close() {
+    try { Files.deleteIfExists(recordsFile); } catch (IOException ignored) {}
+    try { Files.deleteIfExists(tableFile); } catch (IOException ignored) {}
+  }
+
+  /* ---------- internals ---------- */
+
+  private void insert(long hash, long recordOffset) {
+    long slot = hash & mask;
+    while (true) {
+      int pos = (int) (slot * SLOT_BYTES);
+      long h = table.getLong(pos);
+      if (h == 0) {
+        table.putLong(pos, hash);
+        table.putLong(pos + 8, recordOffset);
+        return;
+      }
+      // same key already present: first user wins
+      if (h == hash && keyAt(table.getLong(pos + 8)).equals(keyAt(recordOffset))) return;
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private String get(String key) {
+    long hash = Hash64.of(key);
+    long slot = hash & mask;
+    while (true) {
+      int pos = (int) (slot * SLOT_BYTES);
+      long h = table.getLong(pos);
+      if (h == 0) return null;
+      if (h == hash) {
+        long off = table.getLong(pos + 8);
+        if (keyAt(off).equals(key)) return userIdAt(off);
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private String keyAt(long offset) {
+    int p = (int) offset;
+    int len = records.getInt(p);
+    return readString(p + 4, len);
+  }
+
+  private String userIdAt(long offset) {
+    int p = (int) offset;
+    int keyLen = records.getInt(p);
+    int q = p + 4 + keyLen;
+    return readString(q + 4, records.getInt(q));
+  }
+
+  private String readString(int pos, int len) {
+    byte[] b = new byte[len];
+    records.get(pos, b); // absolute bulk get, no shared position
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  private static long writeEntry(DataOutputStream rec, DataOutputStream ent, long offset, String key, String uid)
+      throws IOException {
+    byte[] k = key.getBytes(StandardCharsets.UTF_8);
+    byte[] v = uid.getBytes(StandardCharsets.UTF_8);
+    rec.writeInt(k.length);
+    rec.write(k);
+    rec.writeInt(v.length);
+    rec.write(v);
+    ent.writeLong(Hash64.of(key));
+    ent.writeLong(offset);
+    return offset + 8 + k.length + v.length;
+  }
+
+  private static String ssoidKey(int pathIndex, String ssoid) { return "s" + pathIndex + ":" + ssoid; }
+  private static String emailKey(String email) { return "e:" + email.trim().toLowerCase(Locale.ROOT); }
+
+  private static String text(JsonNode u, String flatName, String dottedPath) {
+    JsonNode n = u.get(flatName);
+    if (n == null || n.isNull()) {
+      n = u;
+      for (String part : dottedPath.split("\\.")) {
+        n = n.path(part);
+        if (n.isMissingNode() || n.isNull()) return null;
+      }
+    }
+    if (!n.isValueNode()) return null;
+    String s = n.asText().trim();
+    return s.isEmpty() ? null : s;
+  }
+}
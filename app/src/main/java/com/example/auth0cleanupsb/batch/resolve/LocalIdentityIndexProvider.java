@@ -0,0 +1,72 @@
+package com.example.auth0cleanupsb.batch.resolve;
+
+import com.example.auth0cleanupsb.auth0.Auth0Client;
+import com.example.auth0cleanupsb.config.AppProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Builds and caches the {@link LocalIdentityIndex}: from APP_IDENTITY_INDEX_EXPORT_FILE when set
+ * (a local NDJSON or .gz export, e.g. a fixture), otherwise from a fresh Auth0 users-export job.
+ * The index is rebuilt once it is older than APP_IDENTITY_INDEX_MAX_AGE_MINUTES.
+ */
+@Component
+public class LocalIdentityIndexProvider {
+  private final Auth0Client auth0;
+  private final AppProperties props;
+
+  private LocalIdentityIndex index;
+  private Instant builtAt;
+
+  public LocalIdentityIndexProvider(Auth0Client auth0, AppProperties props) {
+    this.auth0 = auth0;
+    this.props = props;
+  }
+
+  public synchronized LocalIdentityIndex get() throws Exception {
+    Duration maxAge = Duration.ofMinutes(Math.max(1, props.getIdentityIndexMaxAgeMinutes()));
+    if (index != null && builtAt.plus(maxAge).isAfter(Instant.now())) return index;
+
+    LocalIdentityIndex fresh;
+    try (InputStream in = openExport()) {
+      fresh = LocalIdentityIndex.build(in, Auth0Client.SSOID_PATHS);
+    }
+    if (index != null) index.close();
+    index = fresh;
+    builtAt = Instant.now();
+    return index;
+  }
+
+  @PreDestroy
+  public synchronized void close() {
+    if (index != null) index.close();
+    index = null;
+  }
+
+  private InputStream openExport() throws Exception {
+    String file = props.getIdentityIndexExportFile();
+    if (file != null && !file.isBlank()) {
+      InputStream in = Files.newInputStream(Path.of(file.trim()));
+      return file.trim().endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+    // export_as names are what LocalIdentityIndex reads back
+    Map<String, String> fields = new LinkedHashMap<>();
+    fields.put("user_id", "user_id");
+    fields.put("email", "email");
+    List<String> paths = Auth0Client.SSOID_PATHS;
+    for (int i = 0; i < paths.size(); i++) {
+      if (paths.get(i).contains(".")) fields.put(paths.get(i), "ssoid_" + i); // only metadata fields are exportable
+    }
+    return auth0.exportUsers(fields, Duration.ofMinutes(Math.max(1, props.getIdentityIndexExportTimeoutMinutes())));
+  }
+}
@@ -0,0 +1,35 @@
+package com.example.auth0cleanupsb.batch.resolve;
+
+import com.example.auth0cleanupsb.batch.model.UserDeleteRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Resolves every row against the local export index; no Auth0 calls except building the index once. */
+public class LocalIndexIdentityResolver implements IdentityResolver {
+  private final LocalIdentityIndexProvider provider;
+
+  public LocalIndexIdentityResolver(LocalIdentityIndexProvider provider) {
+    this.provider = provider;
+  }
+
+  @Override
+  public List<UserDeleteRecord> resolve(List<UserDeleteRecord> batch) throws Exception {
+    LocalIdentityIndex index = provider.get();
+    List<UserDeleteRecord> out = new ArrayList<>(batch.size());
+    for (UserDeleteRecord r : batch) {
+      String ssoid = nz(r.getSsoid());
+      String email = nz(r.getEmail());
+      if (!nz(r.getUserId()).isBlank() || r.isLookedUp() || (ssoid.isBlank() && email.isBlank())) {
+        out.add(r);
+        continue;
+      }
+      String uid = index.findBySsoid(ssoid);
+      if (uid == null) uid = index.findByEmail(email);
+      out.add(r.withLookup(uid));
+    }
+    return out;
+  }
+
+  private static String nz(String s) { return s == null ? "" : s.trim(); }
+}
@@ -0,0 +1,148 @@
+package com.example.auth0cleanupsb.batch.tasklet;
+
+import com.example.auth0cleanupsb.batch.io.CsvCompression;
+import com.example.auth0cleanupsb.batch.io.S3ShardedCsvResultWriter;
+import com.example.auth0cleanupsb.config.AppProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges a run's shards (in manifest order) into the legacy single result object at APP_S3_KEY, after
+ * whatever that object already holds, with one multipart upload. Bytes are copied server-side with
+ * UploadPartCopy (skipping each shard's own header via a copy range) wherever a part of at least 5 MiB can
+ * be cut; the rest is pulled into a buffer of at most 5 MiB. When the buffer is part-filled, a large source
+ * only tops it up to 5 MiB with a ranged GET and the remainder is copied, so every part but the last meets
+ * S3's minimum and memory stays at one part.
+ */
+public class ShardCompactionTasklet implements Tasklet {
+  private static final Logger log = LoggerFactory.getLogger(ShardCompactionTasklet.class);
+
+  private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+  private static final long MAX_COPY_PART = 5L * 1024 * 1024 * 1024;
+
+  private record Source(String key, long start, long length) {}
+
+  private final S3Client s3;
+  private final AppProperties props;
+  private final String runId;
+
+  public ShardCompactionTasklet(S3Client s3, AppProperties props, String runId) {
+    this.s3 = s3;
+    this.props = props;
+    this.runId = runId;
+  }
+
+  @Override
+  public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+    String bucket = props.getS3Bucket();
+    CsvCompression codec = CsvCompression.named(props.getOutputCompression());
+    String target = codec.applyTo(props.getOutputS3Key());
+    String manifestKey = S3ShardedCsvResultWriter.jobPrefix(props, runId) + ShardManifestTasklet.MANIFEST;
+    JsonNode manifest = new ObjectMapper().readTree(
+        s3.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(manifestKey).build()).asByteArray());
+
+    List<Source> sources = new ArrayList<>();
+    long existing = existingLength(bucket, target);
+    if (existing > 0) sources.add(new Source(target, 0, existing));
+    for (JsonNode p : manifest.path("parts")) {
+      long bytes = p.path("bytes").asLong();
+      long skip = sources.isEmpty() ? 0 : p.path("headerBytes").asLong();   // keep exactly one header
+      sources.add(new Source(p.path("key").asText(), skip, bytes - skip));
+    }
+    if (manifest.path("parts").isEmpty()) {
+      log.info("No shards for run {}; s3://{}/{} left as is", runId, bucket, target);
+      return RepeatStatus.FINISHED;
+    }
+
+    String uploadId = s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+        .bucket(bucket).key(target).contentType(codec.contentType()).build()).uploadId();
+    try {
+      List<CompletedPart> parts = new ArrayList<>();
+      ByteArrayOutputStream small = new ByteArrayOutputStream();
+      for (Source src : sources) {
+        long pos = src.start();
+        long end = src.start() + src.length();
+        while (pos < end) {
+          long remaining = end - pos;
+          if (small.size() > 0 || remaining < MIN_PART_SIZE) {
+            long take = Math.min(remaining, MIN_PART_SIZE - small.size());   // never more than one part
+            small.writeBytes(s3.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(src.key())
+                .range("bytes=" + pos + "-" + (pos + take - 1)).build()).asByteArray());
+            pos += take;
+            if (small.size() >= MIN_PART_SIZE) uploadBuffered(bucket, target, uploadId, parts, small);
+            continue;
+          }
+          long len = copyLength(remaining);
+          String etag = s3.uploadPartCopy(UploadPartCopyRequest.builder()
+              .sourceBucket(bucket).sourceKey(src.key()).copySourceRange("bytes=" + pos + "-" + (pos + len - 1))
+              .destinationBucket(bucket).destinationKey(target)
+              .uploadId(uploadId).partNumber(parts.size() + 1).build()).copyPartResult().eTag();
+          parts.add(CompletedPart.builder().partNumber(parts.size() + 1).eTag(etag).build());
+          pos += len;
+        }
+      }
+      if (small.size() > 0) uploadBuffered(bucket, target, uploadId, parts, small);   // last part may be small
+
+      s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+          .bucket(bucket).key(target).uploadId(uploadId)
+          .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build()).build());
+      log.info("Compacted {} shards of run {} into s3://{}/{} ({} parts)",
+          manifest.path("parts").size(), runId, bucket, target, parts.size());
+    } catch (Exception e) {
+      s3.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(bucket).key(target).uploadId(uploadId).build());
+      throw e;
+    }
+    return RepeatStatus.FINISHED;
+  }
+
+  /**
+   * Length of the next copy range out of at least MIN_PART_SIZE remaining bytes: at most MAX_COPY_PART, and
+   * never leaving a remainder under MIN_PART_SIZE that would have to become a part of its own.
+   */
+  private static long copyLength(long remaining) {
+    if (remaining <= MAX_COPY_PART) return remaining;
+    if (remaining - MAX_COPY_PART < MIN_PART_SIZE) return remaining - MIN_PART_SIZE;
+    return MAX_COPY_PART;
+  }
+
+  private void uploadBuffered(String bucket, String key, String uploadId, List<CompletedPart> parts,
+                              ByteArrayOutputStream buf) {
+    int n = parts.size() + 1;
+    String etag = s3.uploadPart(UploadPartRequest.builder().bucket(bucket).key(key).uploadId(uploadId)
+        .partNumber(n).contentLength((long) buf.size()).build(), RequestBody.fromBytes(buf.toByteArray())).eTag();
+    parts.add(CompletedPart.builder().partNumber(n).eTag(etag).build());
+    buf.reset();
+  }
+
+  private long existingLength(String bucket, String key) {
+    try {
+      Long len = s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build()).contentLength();
+      return len == null ? 0 : len;
+    } catch (S3Exception e) {
+      if (e.statusCode() == 404) return 0;
+      throw e;
+    }
+  }
+}
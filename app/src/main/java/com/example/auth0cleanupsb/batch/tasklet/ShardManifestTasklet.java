@@ -0,0 +1,101 @@
+package com.example.auth0cleanupsb.batch.tasklet;
+
+import com.example.auth0cleanupsb.batch.io.S3ShardedCsvResultWriter;
+import com.example.auth0cleanupsb.config.AppProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes {@code <prefix><runId>/manifest.json} with each of the run's shards: key, size, row count and header
+ * length (from the shard metadata), plus the total. Runs after all writers finished. The shards are the ones
+ * the writers recorded in their step contexts, taking the latest execution of each step across restarts;
+ * anything else under the prefix is not part of this run.
+ */
+public class ShardManifestTasklet implements Tasklet {
+  private static final Logger log = LoggerFactory.getLogger(ShardManifestTasklet.class);
+  public static final String MANIFEST = "manifest.json";
+
+  private final S3Client s3;
+  private final AppProperties props;
+  private final JobExplorer explorer;
+
+  public ShardManifestTasklet(S3Client s3, AppProperties props, JobExplorer explorer) {
+    this.s3 = s3;
+    this.props = props;
+    this.explorer = explorer;
+  }
+
+  @Override
+  public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+    String bucket = props.getS3Bucket();
+    JobExecution job = chunkContext.getStepContext().getStepExecution().getJobExecution();
+    String runId = S3ShardedCsvResultWriter.runId(job);
+    String prefix = S3ShardedCsvResultWriter.jobPrefix(props, runId);
+
+    List<String> keys = new ArrayList<>();
+    for (StepExecution se : latestStepExecutions(job).values()) {
+      keys.addAll(S3ShardedCsvResultWriter.shardKeys(se.getExecutionContext()));
+    }
+    keys.sort(null);   // part-<partition>-<seq>: input order
+
+    ObjectMapper om = new ObjectMapper();
+    ObjectNode manifest = om.createObjectNode();
+    manifest.put("jobId", job.getJobId());
+    manifest.put("runId", runId);
+    manifest.put("createdAt", OffsetDateTime.now().toString());
+    ArrayNode parts = manifest.putArray("parts");
+    long totalRows = 0;
+    for (String k : keys) {
+      HeadObjectResponse head = s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(k).build());
+      long rows = Long.parseLong(head.metadata().getOrDefault(S3ShardedCsvResultWriter.META_ROWS, "0"));
+      parts.addObject()
+          .put("key", k)
+          .put("bytes", head.contentLength())
+          .put("rows", rows)
+          .put("headerBytes", Long.parseLong(head.metadata().getOrDefault(S3ShardedCsvResultWriter.META_HEADER_BYTES, "0")));
+      totalRows += rows;
+    }
+    manifest.put("totalRows", totalRows);
+
+    s3.putObject(PutObjectRequest.builder().bucket(bucket).key(prefix + MANIFEST).contentType("application/json").build(),
+        RequestBody.fromString(om.writerWithDefaultPrettyPrinter().writeValueAsString(manifest), StandardCharsets.UTF_8));
+    log.info("Wrote manifest s3://{}/{}{} ({} parts, {} rows)", bucket, prefix, MANIFEST, keys.size(), totalRows);
+    return RepeatStatus.FINISHED;
+  }
+
+  /**
+   * Latest execution of every step of this job instance. A restart only re-runs the workers that did not
+   * complete, so the others' contexts are found on earlier job executions.
+   */
+  private Map<String, StepExecution> latestStepExecutions(JobExecution job) {
+    Map<String, StepExecution> latest = new HashMap<>();
+    for (JobExecution je : explorer.getJobExecutions(job.getJobInstance())) {
+      for (StepExecution se : je.getStepExecutions()) {
+        latest.merge(se.getStepName(), se, (a, b) -> a.getId() >= b.getId() ? a : b);
+      }
+    }
+    return latest;
+  }
+}
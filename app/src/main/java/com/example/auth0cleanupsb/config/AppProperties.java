@@ -3,6 +3,9 @@ package com.example.auth0cleanupsb.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Component
 public class AppProperties {
 
@@ -23,6 +26,81 @@ public class AppProperties {
   @Value("${APP_AUTH0_CLIENTSECRET:}")
   private String auth0ClientSecret;
 
+  // Token endpoint override (default https://<domain>/oauth/token), e.g. for a local Auth0 stub
+  @Value("${APP_AUTH0_TOKEN_URL:}")
+  private String auth0TokenUrl;
+
+  // Cached Management API token is dropped this many seconds before Auth0's expires_in
+  @Value("${APP_AUTH0_TOKEN_EXPIRY_SKEW_SECONDS:60}")
+  private long auth0TokenExpirySkewSeconds;
+
+  // Auth0 rate limiting: starting rate per endpoint (re-tuned from X-RateLimit-* headers),
+  // share of the tenant budget left untouched, and how often a 429 is retried after Retry-After
+  @Value("${APP_AUTH0_RATE_LIMIT_PER_SECOND:10}")
+  private double auth0RateLimitPerSecond;
+
+  @Value("${APP_AUTH0_RATE_LIMIT_RESERVE:0.1}")
+  private double auth0RateLimitReserve;
+
+  @Value("${APP_AUTH0_MAX_429_RETRIES:5}")
+  private int auth0Max429Retries;
+
+  // Multi-tenant runs: name of the APP_AUTH0_* tenant (also what a blank "tenant" cell means), and the
+  // other tenants, filled from SSM <APP_PARAM_PREFIX>tenants/<name>/AUTH0_* by ParameterStoreLoader
+  @Value("${APP_AUTH0_DEFAULT_TENANT:default}")
+  private String auth0DefaultTenant;
+
+  private Map<String, Auth0TenantConfig> auth0Tenants = new LinkedHashMap<>();
+
+  // Batched identity lookup in the batch job: rows per OR'ed search (0/1 = per-row lookups)
+  // and the longest Lucene query we send
+  @Value("${APP_AUTH0_LOOKUP_BATCH_SIZE:0}")
+  private int auth0LookupBatchSize;
+
+  @Value("${APP_AUTH0_LOOKUP_MAX_QUERY_CHARS:2000}")
+  private int auth0LookupMaxQueryChars;
+
+  // Query all SSOID paths in parallel for single-user (HTTP) deletes; the batch job stays sequential
+  @Value("${APP_AUTH0_SSOID_HEDGE_INTERACTIVE:true}")
+  private boolean auth0SsoidHedgeInteractive;
+
+  // POST /users/bulk-delete: entries in flight at once, shared by all bulk requests (a request may ask for fewer)
+  @Value("${APP_BULK_DELETE_CONCURRENCY:16}")
+  private int bulkDeleteConcurrency;
+
+  // Threads behind the HTTP/2 client; async calls are multiplexed and don't hold one while in flight
+  @Value("${APP_AUTH0_HTTP_THREADS:4}")
+  private int auth0HttpThreads;
+
+  // Batch job: pipeline each chunk's Auth0 calls on the async client instead of a thread per call, at most
+  // `concurrency` (job parameter) in flight per step
+  @Value("${APP_AUTH0_ASYNC_PIPELINE:false}")
+  private boolean auth0AsyncPipeline;
+
+  // In-process ssoid/email -> user_id cache, including NOT_FOUND answers (0 entries = disabled)
+  @Value("${APP_AUTH0_LOOKUP_CACHE_MAX_ENTRIES:100000}")
+  private int auth0LookupCacheMaxEntries;
+
+  @Value("${APP_AUTH0_LOOKUP_CACHE_TTL_SECONDS:600}")
+  private long auth0LookupCacheTtlSeconds;
+
+  @Value("${APP_AUTH0_LOOKUP_CACHE_NEGATIVE_TTL_SECONDS:120}")
+  private long auth0LookupCacheNegativeTtlSeconds;
+
+  // Identity resolution for the batch job: "api" (searches) or "export" (local index of a users export).
+  // An export file path skips the Auth0 export job, e.g. for a local fixture.
+  @Value("${APP_IDENTITY_RESOLUTION:api}")
+  private String identityResolution;
+
+  @Value("${APP_IDENTITY_INDEX_EXPORT_FILE:}")
+  private String identityIndexExportFile;
+
+  @Value("${APP_IDENTITY_INDEX_MAX_AGE_MINUTES:60}")
+  private long identityIndexMaxAgeMinutes;
+
+  @Value("${APP_IDENTITY_INDEX_EXPORT_TIMEOUT_MINUTES:60}")
+  private long identityIndexExportTimeoutMinutes;
+
   // S3 (output + input)
   @Value("${APP_S3_BUCKET:}")
   private String s3Bucket;
@@ -33,15 +111,135 @@ public class AppProperties {
   @Value("${APP_INPUT_S3_KEY:input/users_to_delete.csv}")
   private String inputS3Key;
 
+  // Batch input: "stream" (one GET) or "prefetch" (ranged blocks fetched and records parsed ahead on background threads)
+  @Value("${APP_INPUT_READ_MODE:stream}")
+  private String inputReadMode;
+
+  @Value("${APP_INPUT_BLOCK_SIZE_MB:8}")
+  private int inputBlockSizeMb;            // 1..1024
+
+  @Value("${APP_INPUT_PREFETCH_BLOCKS:4}")
+  private int inputPrefetchBlocks;         // queue depth: blocks buffered ahead of the parser
+
+  @Value("${APP_INPUT_BLOCK_RETRIES:3}")
+  private int inputBlockRetries;
+
+  // Report repeated input identities as DUPLICATE instead of looking them up and deleting again
+  @Value("${APP_INPUT_DEDUP:true}")
+  private boolean inputDedup;
+
+  // Items per deleteUsersStep chunk; each chunk boundary is one output write and one job-repository commit.
+  // With adaptive sizing this is the starting size, then it follows the measured item and commit cost
+  @Value("${APP_BATCH_CHUNK_SIZE:50}")
+  private int batchChunkSize;
+
+  @Value("${APP_BATCH_CHUNK_ADAPTIVE:true}")
+  private boolean batchChunkAdaptive;
+
+  @Value("${APP_BATCH_CHUNK_MIN_SIZE:10}")
+  private int batchChunkMinSize;
+
+  @Value("${APP_BATCH_CHUNK_MAX_SIZE:1000}")
+  private int batchChunkMaxSize;
+
+  // Chunk duration (items + output write + commit) the adaptive size aims for
+  @Value("${APP_BATCH_CHUNK_TARGET_MILLIS:2000}")
+  private long batchChunkTargetMillis;
+
+  // POST /batch/run admission: jobs running at once (they share the Auth0 budget and output keys), and how
+  // many more wait for a slot before further requests get 429
+  @Value("${APP_BATCH_MAX_CONCURRENT_JOBS:1}")
+  private int batchMaxConcurrentJobs;
+
+  @Value("${APP_BATCH_MAX_QUEUED_JOBS:4}")
+  private int batchMaxQueuedJobs;
+
+  // Batch result writer: "append" (rewrite the object per chunk), "multipart" (one streaming multipart upload)
+  // or "sharded" (immutable <prefix><jobId>-<ts>/part-*.csv objects plus a manifest)
+  @Value("${APP_OUTPUT_WRITER_MODE:append}")
+  private String outputWriterMode;
+
+  @Value("${APP_OUTPUT_PART_SIZE_MB:8}")
+  private int outputPartSizeMb;            // clamped to S3's 5 MiB minimum
+
+  @Value("${APP_OUTPUT_UPLOAD_THREADS:2}")
+  private int outputUploadThreads;
+
+  @Value("${APP_OUTPUT_SHARD_PREFIX:output/}")
+  private String outputShardPrefix;
+
+  // Sharded mode: merge the job's shards into the APP_S3_KEY object at the end (server-side copy)
+  @Value("${APP_OUTPUT_COMPACT:false}")
+  private boolean outputCompact;
+
+  // Batch output compression: none | gzip | zstd (adds .gz/.zst to the key). Input is detected automatically.
+  @Value("${APP_OUTPUT_COMPRESSION:none}")
+  private String outputCompression;
+
+  // Result journal for single-user deletes: segment prefix, group-commit size/window, compaction interval
+  @Value("${APP_JOURNAL_PREFIX:output/journal/}")
+  private String journalPrefix;
+
+  @Value("${APP_JOURNAL_MAX_ROWS:500}")
+  private int journalMaxRows;
+
+  @Value("${APP_JOURNAL_FLUSH_MILLIS:2000}")
+  private long journalFlushMillis;
+
+  @Value("${APP_JOURNAL_COMPACT_SECONDS:300}")
+  private long journalCompactSeconds;
+
   // --- getters ---
   public String getParamPrefix() { return paramPrefix; }
   public String getAuth0Domain() { return auth0Domain; }
   public String getAuth0Audience() { return auth0Audience; }
   public String getAuth0ClientId() { return auth0ClientId; }
   public String getAuth0ClientSecret() { return auth0ClientSecret; }
+  public String getAuth0TokenUrl() { return auth0TokenUrl; }
+  public long getAuth0TokenExpirySkewSeconds() { return auth0TokenExpirySkewSeconds; }
+  public double getAuth0RateLimitPerSecond() { return auth0RateLimitPerSecond; }
+  public double getAuth0RateLimitReserve() { return auth0RateLimitReserve; }
+  public int getAuth0Max429Retries() { return auth0Max429Retries; }
+  public String getAuth0DefaultTenant() { return auth0DefaultTenant; }
+  public Map<String, Auth0TenantConfig> getAuth0Tenants() { return auth0Tenants; }
+  public int getAuth0LookupBatchSize() { return auth0LookupBatchSize; }
+  public int getAuth0LookupMaxQueryChars() { return auth0LookupMaxQueryChars; }
+  public boolean isAuth0SsoidHedgeInteractive() { return auth0SsoidHedgeInteractive; }
+  public int getBulkDeleteConcurrency() { return bulkDeleteConcurrency; }
+  public int getAuth0HttpThreads() { return auth0HttpThreads; }
+  public boolean isAuth0AsyncPipeline() { return auth0AsyncPipeline; }
+  public int getAuth0LookupCacheMaxEntries() { return auth0LookupCacheMaxEntries; }
+  public long getAuth0LookupCacheTtlSeconds() { return auth0LookupCacheTtlSeconds; }
+  public long getAuth0LookupCacheNegativeTtlSeconds() { return auth0LookupCacheNegativeTtlSeconds; }
+  public String getIdentityResolution() { return identityResolution; }
+  public String getIdentityIndexExportFile() { return identityIndexExportFile; }
+  public long getIdentityIndexMaxAgeMinutes() { return identityIndexMaxAgeMinutes; }
+  public long getIdentityIndexExportTimeoutMinutes() { return identityIndexExportTimeoutMinutes; }
   public String getS3Bucket() { return s3Bucket; }
   public String getOutputS3Key() { return outputS3Key; }
   public String getInputS3Key() { return inputS3Key; }
+  public String getInputReadMode() { return inputReadMode; }
+  public int getInputBlockSizeMb() { return inputBlockSizeMb; }
+  public int getInputPrefetchBlocks() { return inputPrefetchBlocks; }
+  public int getInputBlockRetries() { return inputBlockRetries; }
+  public boolean isInputDedup() { return inputDedup; }
+  public int getBatchChunkSize() { return batchChunkSize; }
+  public boolean isBatchChunkAdaptive() { return batchChunkAdaptive; }
+  public int getBatchChunkMinSize() { return batchChunkMinSize; }
+  public int getBatchChunkMaxSize() { return batchChunkMaxSize; }
+  public long getBatchChunkTargetMillis() { return batchChunkTargetMillis; }
+  public int getBatchMaxConcurrentJobs() { return batchMaxConcurrentJobs; }
+  public int getBatchMaxQueuedJobs() { return batchMaxQueuedJobs; }
+  public String getOutputWriterMode() { return outputWriterMode; }
+  public int getOutputPartSizeMb() { return outputPartSizeMb; }
+  public int getOutputUploadThreads() { return outputUploadThreads; }
+  public String getOutputCompression() { return outputCompression; }
+  public String getOutputShardPrefix() { return outputShardPrefix; }
+  public boolean isOutputCompact() { return outputCompact; }
+  public String getJournalPrefix() { return journalPrefix; }
+  public int getJournalMaxRows() { return journalMaxRows; }
+  public long getJournalFlushMillis() { return journalFlushMillis; }
+  public long getJournalCompactSeconds() { return journalCompactSeconds; }
 
   // --- setters (allow SSM loader to populate after bean creation) ---
   public void setParamPrefix(String v) { this.paramPrefix = v; }
@@ -49,7 +247,49 @@ public class AppProperties {
   public void setAuth0Audience(String v) { this.auth0Audience = v; }
   public void setAuth0ClientId(String v) { this.auth0ClientId = v; }
   public void setAuth0ClientSecret(String v) { this.auth0ClientSecret = v; }
+  public void setAuth0TokenUrl(String v) { this.auth0TokenUrl = v; }
+  public void setAuth0TokenExpirySkewSeconds(long v) { this.auth0TokenExpirySkewSeconds = v; }
+  public void setAuth0RateLimitPerSecond(double v) { this.auth0RateLimitPerSecond = v; }
+  public void setAuth0RateLimitReserve(double v) { this.auth0RateLimitReserve = v; }
+  public void setAuth0Max429Retries(int v) { this.auth0Max429Retries = v; }
+  public void setAuth0DefaultTenant(String v) { this.auth0DefaultTenant = v; }
+  public void setAuth0Tenants(Map<String, Auth0TenantConfig> v) { this.auth0Tenants = v; }
+  public void setAuth0LookupBatchSize(int v) { this.auth0LookupBatchSize = v; }
+  public void setAuth0LookupMaxQueryChars(int v) { this.auth0LookupMaxQueryChars = v; }
+  public void setAuth0SsoidHedgeInteractive(boolean v) { this.auth0SsoidHedgeInteractive = v; }
+  public void setBulkDeleteConcurrency(int v) { this.bulkDeleteConcurrency = v; }
+  public void setAuth0HttpThreads(int v) { this.auth0HttpThreads = v; }
+  public void setAuth0AsyncPipeline(boolean v) { this.auth0AsyncPipeline = v; }
+  public void setAuth0LookupCacheMaxEntries(int v) { this.auth0LookupCacheMaxEntries = v; }
+  public void setAuth0LookupCacheTtlSeconds(long v) { this.auth0LookupCacheTtlSeconds = v; }
+  public void setAuth0LookupCacheNegativeTtlSeconds(long v) { this.auth0LookupCacheNegativeTtlSeconds = v; }
+  public void setIdentityResolution(String v) { this.identityResolution = v; }
+  public void setIdentityIndexExportFile(String v) { this.identityIndexExportFile = v; }
+  public void setIdentityIndexMaxAgeMinutes(long v) { this.identityIndexMaxAgeMinutes = v; }
+  public void setIdentityIndexExportTimeoutMinutes(long v) { this.identityIndexExportTimeoutMinutes = v; }
   public void setS3Bucket(String v) { this.s3Bucket = v; }
   public void setOutputS3Key(String v) { this.outputS3Key = v; }
   public void setInputS3Key(String v) { this.inputS3Key = v; }
+  public void setInputReadMode(String v) { this.inputReadMode = v; }
+  public void setInputBlockSizeMb(int v) { this.inputBlockSizeMb = v; }
+  public void setInputPrefetchBlocks(int v) { this.inputPrefetchBlocks = v; }
+  public void setInputBlockRetries(int v) { this.inputBlockRetries = v; }
+  public void setInputDedup(boolean v) { this.inputDedup = v; }
+  public void setBatchChunkSize(int v) { this.batchChunkSize = v; }
+  public void setBatchChunkAdaptive(boolean v) { this.batchChunkAdaptive = v; }
+  public void setBatchChunkMinSize(int v) { this.batchChunkMinSize = v; }
+  public void setBatchChunkMaxSize(int v) { this.batchChunkMaxSize = v; }
+  public void setBatchChunkTargetMillis(long v) { this.batchChunkTargetMillis = v; }
+  public void setBatchMaxConcurrentJobs(int v) { this.batchMaxConcurrentJobs = v; }
+  public void setBatchMaxQueuedJobs(int v) { this.batchMaxQueuedJobs = v; }
+  public void setOutputWriterMode(String v) { this.outputWriterMode = v; }
+  public void setOutputPartSizeMb(int v) { this.outputPartSizeMb = v; }
+  public void setOutputUploadThreads(int v) { this.outputUploadThreads = v; }
+  public void setOutputCompression(String v) { this.outputCompression = v; }
+  public void setOutputShardPrefix(String v) { this.outputShardPrefix = v; }
+  public void setOutputCompact(boolean v) { this.outputCompact = v; }
+  public void setJournalPrefix(String v) { this.journalPrefix = v; }
+  public void setJournalMaxRows(int v) { this.journalMaxRows = v; }
+  public void setJournalFlushMillis(long v) { this.journalFlushMillis = v; }
+  public void setJournalCompactSeconds(long v) { this.journalCompactSeconds = v; }
 }
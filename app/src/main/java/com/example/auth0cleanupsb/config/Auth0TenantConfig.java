@@ -0,0 +1,15 @@
+package com.example.auth0cleanupsb.config;
+
+/**
+ * One Auth0 tenant of a multi-tenant run, loaded from SSM under {@code <APP_PARAM_PREFIX>tenants/<name>/}.
+ * Audience and token URL default from the domain as for APP_AUTH0_*; rateLimitPerSecond <= 0 means
+ * APP_AUTH0_RATE_LIMIT_PER_SECOND. Credentials never fall back to the APP_AUTH0_* tenant's.
+ */
+public record Auth0TenantConfig(String name, String domain, String audience, String clientId, String clientSecret,
+                                String tokenUrl, double rateLimitPerSecond) {
+
+  @Override
+  public String toString() { // keeps the secret out of logs
+    return "Auth0TenantConfig[name=" + name + ", domain=" + domain + ", audience=" + audience + "]";
+  }
+}
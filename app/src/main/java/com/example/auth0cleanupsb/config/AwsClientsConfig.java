@@ -1,6 +1,7 @@
 // app/src/main/java/com/example/auth0cleanupsb/config/AwsClientsConfig.java
 package com.example.auth0cleanupsb.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
@@ -11,12 +12,13 @@ import software.amazon.awssdk.services.s3.S3Client;
 public class AwsClientsConfig {
 
   @Bean
-  public S3Client s3Client() {
+  public S3Client s3Client(MeterRegistry meters) {
     // Use env var if present; default to us-east-1
     String region = System.getenv().getOrDefault("AWS_REGION", "us-east-1");
     return S3Client.builder()
         .region(Region.of(region))
         .credentialsProvider(DefaultCredentialsProvider.create())
+        .overrideConfiguration(c -> c.addExecutionInterceptor(new S3RequestMetrics(meters)))
         .build();
   }
 }
@@ -30,7 +30,8 @@ public class ConfigDiagnostics {
     log.info("Effective config -> APP_PARAM_PREFIX='{}', AWS_REGION='{}'", prefix, region);
     log.info("Auth0 -> domain='{}', audience='{}', clientId='{}', clientSecret='{}'",
         domain, audience, clientIdMasked, clientSecretMasked);
-    log.info("S3 -> bucket='{}', inputKey='{}', outputKey='{}'", bucket, inputKey, outputKey);
+    log.info("S3 -> bucket='{}', inputKey='{}', outputKey='{}', readMode='{}', writerMode='{}'",
+        bucket, inputKey, outputKey, nvl(props.getInputReadMode()), nvl(props.getOutputWriterMode()));
   }
 
   private static String nvl(String s) { return (s == null || s.isBlank()) ? "<blank>" : s; }
@@ -13,10 +13,12 @@ import software.amazon.awssdk.services.ssm.model.Parameter;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 @Component
 public class ParameterStoreLoader {
   private static final Logger log = LoggerFactory.getLogger(ParameterStoreLoader.class);
+  private static final String TENANTS = "tenants/";
   private final AppProperties props;
 
   public ParameterStoreLoader(AppProperties props) {
@@ -73,6 +75,8 @@ public class ParameterStoreLoader {
       String outKey = firstNonBlank(kv.get("S3_KEY"), kv.get("OUTPUT_S3_KEY"));
       setIfBlank(() -> props.getOutputS3Key(),       props::setOutputS3Key,       outKey);
 
+      loadTenants(kv);
+
       log.info("SSM loaded from prefix '{}': domain='{}', audience='{}', clientId='{}', s3Bucket='{}', inputKey='{}', outputKey='{}'",
           prefix,
           nz(props.getAuth0Domain()),
@@ -88,6 +92,35 @@ public class ParameterStoreLoader {
     }
   }
 
+  /**
+   * tenants/<name>/AUTH0_DOMAIN, AUTH0_AUDIENCE, AUTH0_CLIENT_ID, AUTH0_CLIENT_SECRET, AUTH0_TOKEN_URL and
+   * AUTH0_RATE_LIMIT_PER_SECOND become one Auth0TenantConfig each; a tenant without a domain is ignored.
+   */
+  private void loadTenants(Map<String,String> kv) {
+    Map<String, Map<String,String>> byTenant = new TreeMap<>();
+    kv.forEach((name, value) -> {
+      if (!name.startsWith(TENANTS)) return;
+      int slash = name.indexOf('/', TENANTS.length());
+      if (slash < 0) return;
+      byTenant.computeIfAbsent(name.substring(TENANTS.length(), slash), t -> new HashMap<>())
+          .put(name.substring(slash + 1), value);
+    });
+    byTenant.forEach((tenant, t) -> {
+      String domain = t.get("AUTH0_DOMAIN");
+      if (domain == null || domain.isBlank()) {
+        log.warn("SSM tenant '{}' has no AUTH0_DOMAIN; ignored", tenant);
+        return;
+      }
+      String rate = t.get("AUTH0_RATE_LIMIT_PER_SECOND");
+      Auth0TenantConfig cfg = new Auth0TenantConfig(tenant, domain.trim(), t.get("AUTH0_AUDIENCE"),
+          firstNonBlank(t.get("AUTH0_CLIENT_ID"), t.get("AUTH0_CLIENTID")),
+          firstNonBlank(t.get("AUTH0_CLIENT_SECRET"), t.get("AUTH0_CLIENTSECRET")),
+          t.get("AUTH0_TOKEN_URL"), rate == null || rate.isBlank() ? 0 : Double.parseDouble(rate.trim()));
+      props.getAuth0Tenants().putIfAbsent(tenant, cfg);
+      log.info("SSM tenant '{}': domain='{}', clientId='{}'", tenant, cfg.domain(), tailMask(cfg.clientId()));
+    });
+  }
+
   private static String normalize(String pfx) {
     if (pfx == null || pfx.isBlank()) return null;
     String s = pfx.trim();
@@ -0,0 +1,77 @@
+package com.example.auth0cleanupsb.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.SdkHttpResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records every S3 call made through the client: s3.requests{operation,status} timers, and bytes sent
+ * (PutObject, UploadPart) and received (GetObject) as s3.bytes.written / s3.bytes.read{operation}.
+ * Hooked into the SDK instead of the readers and writers, so the journal, partitioner and tasklets are
+ * covered too. Streaming GETs are timed until the response is handed back, not until the body is consumed.
+ */
+public class S3RequestMetrics implements ExecutionInterceptor {
+  private static final ExecutionAttribute<Long> START_NANOS = new ExecutionAttribute<>("S3RequestMetrics.start");
+
+  private final MeterRegistry meters;
+  private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+  private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+  public S3RequestMetrics(MeterRegistry meters) {
+    this.meters = meters;
+  }
+
+  @Override
+  public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes attrs) {
+    attrs.putAttribute(START_NANOS, System.nanoTime());
+  }
+
+  @Override
+  public void afterExecution(Context.AfterExecution context, ExecutionAttributes attrs) {
+    String op = attrs.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+    SdkHttpResponse resp = context.httpResponse();
+    record(op, Integer.toString(resp.statusCode()), attrs);
+    long sent = context.requestBody().flatMap(RequestBody::optionalContentLength).orElse(0L);
+    if (sent > 0) counter("s3.bytes.written", op).increment(sent);
+    if ("GetObject".equals(op)) {
+      resp.firstMatchingHeader("Content-Length").map(Long::parseLong)
+          .ifPresent(n -> counter("s3.bytes.read", op).increment(n));
+    }
+  }
+
+  @Override
+  public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes attrs) {
+    String status = context.httpResponse().map(r -> Integer.toString(r.statusCode())).orElse("IO_ERROR");
+    record(attrs.getAttribute(SdkExecutionAttribute.OPERATION_NAME), status, attrs);
+  }
+
+  private void record(String op, String status, ExecutionAttributes attrs) {
+    Long start = attrs.getAttribute(START_NANOS);
+    if (start == null) return;
+    timers.computeIfAbsent(op + " " + status, k -> Timer.builder("s3.requests")
+            .description("S3 calls by operation and HTTP status")
+            .tag("operation", op).tag("status", status)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(1)).maximumExpectedValue(Duration.ofMinutes(1))
+            .register(meters))
+        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+
+  private Counter counter(String name, String op) {
+    return counters.computeIfAbsent(name + " " + op, k -> Counter.builder(name).baseUnit("bytes")
+        .description(name.endsWith("read") ? "Object bytes received from S3" : "Object bytes sent to S3")
+        .tag("operation", op).register(meters));
+  }
+}
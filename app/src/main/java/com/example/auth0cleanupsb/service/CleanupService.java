@@ -2,30 +2,61 @@ package com.example.auth0cleanupsb.service;
 
 import com.example.auth0cleanupsb.auth0.Auth0Client;
 import com.example.auth0cleanupsb.config.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Exception;
-
-import java.nio.charset.StandardCharsets;
+
 import java.time.OffsetDateTime;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @Service
 public class CleanupService {
   private final Auth0Client auth0;
-  private final S3Client s3;
+  private final ResultJournal journal;
   private final AppProperties props;
+  private final MeterRegistry meters;
+  private final Semaphore bulkSlots;    // bulk-delete entries in flight across all requests: APP_BULK_DELETE_CONCURRENCY
+  private final ExecutorService bulk;   // hands bulk results to the callers' responses, off the HTTP client's threads
+  private final Map<String, CompletableFuture<Map<String, Object>>> inFlight = new ConcurrentHashMap<>();
+  private final Counter coalesced;
+
+  /** One entry of a bulk delete: its 1-based position in the request, the user, or why it can't be read. */
+  public record BulkEntry(long line, String ssoid, String email, String error) {}
 
-  public CleanupService(Auth0Client auth0, S3Client s3, AppProperties props) {
+  public CleanupService(Auth0Client auth0, ResultJournal journal, AppProperties props, MeterRegistry meters) {
     this.auth0 = auth0;
-    this.s3 = s3;
+    this.journal = journal;
     this.props = props;
+    this.meters = meters;
+    this.coalesced = Counter.builder("cleanup.coalesced")
+        .description("Deletes that joined an identical one already in flight instead of calling Auth0").register(meters);
+    this.bulkSlots = new Semaphore(Math.max(1, props.getBulkDeleteConcurrency()));
+    AtomicInteger n = new AtomicInteger();
+    this.bulk = Executors.newFixedThreadPool(Math.max(1, props.getBulkDeleteConcurrency()), r -> {
+      Thread t = new Thread(r, "bulk-delete-" + n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  @PreDestroy
+  public void stop() {
+    bulk.shutdownNow();
   }
 
   /** Back-compat: controller that doesn't pass email can use this. */
@@ -35,34 +66,156 @@ public class CleanupService {
 
   /** Preferred: include email so it lands in the CSV output. */
   public Map<String, Object> deleteBySsoid(String ssoid, boolean dryRun, String email) throws Exception {
-    String ts = OffsetDateTime.now().toString();
-    String status;
-    String userId = null;
-    String err = null;
-
     try {
-      userId = auth0.findUserIdBySsoid(ssoid);
-      if (userId == null || userId.isBlank()) {
-        status = "NOT_FOUND";
-        appendCsv(ssoid, email, null, status, "N", ts, null);
-        return resp(ssoid, status, userId, null);
+      return coalesce(ssoid, dryRun, email, props.isAuth0SsoidHedgeInteractive()).get();
+    } catch (ExecutionException e) {
+      throw cause(e) instanceof Exception cause ? cause : e;
+    }
+  }
+
+  /**
+   * Deletes every entry, up to {@code concurrency} at a time (and all bulk requests together within
+   * APP_BULK_DELETE_CONCURRENCY and the client's rate limit), and hands each result to {@code sink} as soon
+   * as it is done, in completion order with its "line". Each entry is a chain of async Auth0 calls, so
+   * entries in flight don't hold a thread. Entries are pulled only as slots free up, so neither the input
+   * nor the results are held in memory. Lookups are not hedged: that would spend several searches per user
+   * of the shared budget. If the sink fails (the caller went away), no further entries are started. Returns
+   * the number of results by status.
+   */
+  public Map<String, Long> deleteAll(Iterator<BulkEntry> entries, boolean dryRun, int concurrency,
+                                     Consumer<Map<String, Object>> sink) throws InterruptedException {
+    int window = Math.max(1, Math.min(concurrency <= 0 ? Integer.MAX_VALUE : concurrency,
+        Math.max(1, props.getBulkDeleteConcurrency())));
+    Semaphore slots = new Semaphore(window);
+    Map<String, Long> counts = new ConcurrentHashMap<>();
+    AtomicReference<RuntimeException> sinkFailure = new AtomicReference<>();
+    Consumer<Map<String, Object>> emit = result -> {
+      counts.merge(String.valueOf(result.get("status")), 1L, Long::sum);
+      if (sinkFailure.get() != null) return;
+      try {
+        synchronized (sink) {
+          sink.accept(result);
+        }
+      } catch (RuntimeException e) {
+        sinkFailure.compareAndSet(null, e);
       }
-      if (dryRun) {
-        status = "DRY_RUN";
-      } else {
-        auth0.deleteUserById(userId);
-        status = "DELETED";
+    };
+    try {
+      while (sinkFailure.get() == null && entries.hasNext()) {
+        BulkEntry entry = entries.next();
+        if (entry.error() != null || nz(entry.ssoid()).isBlank()) {
+          String error = entry.error() != null ? entry.error() : "ssoid is required";
+          emit.accept(bulkResult(entry, resp(nz(entry.ssoid()), "ERROR", null, error)));
+          continue;
+        }
+        slots.acquire();
+        try {
+          bulkSlots.acquire();
+        } catch (InterruptedException e) {
+          slots.release();
+          throw e;
+        }
+        try {
+          String ssoid = entry.ssoid().trim();
+          coalesce(ssoid, dryRun, nz(entry.email()).trim(), false).whenCompleteAsync((result, e) -> {
+            try {
+              emit.accept(bulkResult(entry, e == null ? result
+                  : resp(ssoid, "ERROR", null, String.valueOf(cause(e).getMessage()))));
+            } finally {
+              bulkSlots.release();
+              slots.release();
+            }
+          }, bulk);
+        } catch (RuntimeException e) {
+          bulkSlots.release();
+          slots.release();
+          throw e;
+        }
       }
-      appendCsv(ssoid, email, userId, status, "Y", ts, null);
-      return resp(ssoid, status, userId, null);
+    } finally {
+      slots.acquire(window); // wait for what is still in flight, also when reading the input failed
+      slots.release(window);
+    }
+    if (sinkFailure.get() != null) throw sinkFailure.get();
+    return new TreeMap<>(counts);
+  }
+
+  /**
+   * Single flight per SSOID (and dryRun): a caller arriving while the same delete is running waits for it and
+   * gets its result, instead of searching again and failing on the already deleted user. Only the first
+   * caller's row is journaled; its email is the one recorded.
+   */
+  private CompletableFuture<Map<String, Object>> coalesce(String ssoid, boolean dryRun, String email, boolean hedge) {
+    String key = nz(ssoid).trim() + (dryRun ? "|dry" : "|live");
+    CompletableFuture<Map<String, Object>> mine = new CompletableFuture<>();
+    CompletableFuture<Map<String, Object>> running = inFlight.putIfAbsent(key, mine);
+    if (running != null) {
+      coalesced.increment();
+      return running.thenApply(LinkedHashMap::new);
+    }
+    CompletableFuture<Map<String, Object>> work;
+    try {
+      work = timedDelete(ssoid, dryRun, email, hedge);
+    } catch (RuntimeException | Error e) {
+      work = CompletableFuture.failedFuture(e);
+    }
+    return work.whenComplete((result, e) -> {
+      if (e == null) mine.complete(new LinkedHashMap<>(result));
+      else mine.completeExceptionally(cause(e));
+      inFlight.remove(key, mine);
+    });
+  }
+
+  private CompletableFuture<Map<String, Object>> timedDelete(String ssoid, boolean dryRun, String email, boolean hedge) {
+    Timer.Sample sample = Timer.start(meters);
+    return delete(ssoid, dryRun, email, hedge).whenComplete((result, e) ->
+        sample.stop(Timer.builder("cleanup.requests")
+            .description("Single-user deletes (lookup, delete and journal hand-off) by outcome")
+            .tag("status", e == null ? String.valueOf(result.get("status")) : "ERROR")
+            .publishPercentileHistogram().register(meters)));
+  }
+
+  private CompletableFuture<Map<String, Object>> delete(String ssoid, boolean dryRun, String email, boolean hedge) {
+    String ts = OffsetDateTime.now().toString();
+    AtomicReference<String> userId = new AtomicReference<>();
+
+    return lookup(ssoid, hedge)
+        .thenCompose(uid -> {
+          userId.set(uid);
+          if (uid == null || uid.isBlank()) {
+            appendCsv(ssoid, email, null, "NOT_FOUND", "N", ts, null);
+            return CompletableFuture.completedFuture(resp(ssoid, "NOT_FOUND", uid, null));
+          }
+          CompletableFuture<Void> deleted = dryRun ? CompletableFuture.completedFuture(null) : auth0.deleteUserByIdAsync(uid);
+          return deleted.thenApply(v -> {
+            String status = dryRun ? "DRY_RUN" : "DELETED";
+            appendCsv(ssoid, email, uid, status, "Y", ts, null);
+            return resp(ssoid, status, uid, null);
+          });
+        })
+        .whenComplete((result, e) -> {
+          if (e != null) appendCsv(ssoid, email, userId.get(), "ERROR", "N", ts, cause(e).getMessage());
+        });
+  }
+
+  /**
+   * user_id for an SSOID. An interactive caller hedges across SSOID paths for one round trip of lookup
+   * latency (blocking, it holds the request thread anyway); everyone else chains on the async client.
+   */
+  private CompletableFuture<String> lookup(String ssoid, boolean hedge) {
+    if (!hedge) return auth0.findUserIdBySsoidAsync(ssoid);
+    try {
+      return CompletableFuture.completedFuture(auth0.findUserIdBySsoid(ssoid, true));
     } catch (Exception e) {
-      err = e.getMessage();
-      status = "ERROR";
-      appendCsv(ssoid, email, userId, status, "N", ts, err);
-      throw e;
+      return CompletableFuture.failedFuture(e);
     }
   }
 
+  private static Throwable cause(Throwable e) {
+    while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) e = e.getCause();
+    return e;
+  }
+
   private Map<String, Object> resp(String ssoid, String status, String userId, String error) {
     Map<String, Object> m = new LinkedHashMap<>();
     m.put("ssoid", ssoid);
@@ -72,11 +225,18 @@ public class CleanupService {
     return m;
   }
 
+  private static Map<String, Object> bulkResult(BulkEntry entry, Map<String, Object> result) {
+    Map<String, Object> m = new LinkedHashMap<>();
+    m.put("line", entry.line());
+    m.putAll(result);
+    return m;
+  }
+
+  private static String nz(String s) { return s == null ? "" : s; }
+
+  /** Hand the row to the journal; it reaches S3 asynchronously in batches. */
   private void appendCsv(String ssoid, String email, String userId, String status,
                          String deactFlag, String ts, String error) {
-    String bucket = props.getS3Bucket();
-    String key = props.getOutputS3Key();
-
     StringBuilder sb = new StringBuilder();
     sb.append(csv(ssoid)).append(',')
       .append(csv(email)).append(',')
@@ -86,22 +246,7 @@ public class CleanupService {
       .append(csv(ts)).append(',')
       .append(csv(error)).append('\n');
 
-    byte[] newChunk = sb.toString().getBytes(StandardCharsets.UTF_8);
-    byte[] base = new byte[0];
-    try {
-      ResponseBytes<GetObjectResponse> existing =
-          s3.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(key).build());
-      base = existing.asByteArray();
-    } catch (S3Exception ignored) {
-      // object may not exist yet
-    }
-
-    byte[] merged = new byte[base.length + newChunk.length];
-    System.arraycopy(base, 0, merged, 0, base.length);
-    System.arraycopy(newChunk, 0, merged, base.length, newChunk.length);
-
-    s3.putObject(PutObjectRequest.builder().bucket(bucket).key(key).build(),
-        RequestBody.fromBytes(merged));
+    journal.append(sb.toString());
   }
 
   private static String csv(String v) {
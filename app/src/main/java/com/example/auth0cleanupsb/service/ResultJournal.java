@@ -0,0 +1,289 @@
+package com.example.auth0cleanupsb.service;
+
+import com.example.auth0cleanupsb.config.AppProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group-commit journal for single-user delete results.
+ *
+ * Request threads only enqueue a CSV line. A background thread writes each batch (by row count or time
+ * window) as a new immutable segment object under APP_JOURNAL_PREFIX, and periodically folds the segments
+ * into the consolidated output CSV (APP_S3_KEY) in key order, then deletes them.
+ *
+ * Every instance writes segments under the same prefix, so only the holder of a lease object there compacts,
+ * and the output is written with If-Match on the ETag it was read with.
+ */
+@Component
+public class ResultJournal {
+  private static final Logger log = LoggerFactory.getLogger(ResultJournal.class);
+  private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmssSSS");
+  private static final String LEASE_NAME = "compaction.lease";
+  private static final String FOLD_META = "journal-fold";   // output metadata: id of the fold that wrote it
+  private static final String WRITTEN = "written";          // lease fold state: output written, segments not deleted
+
+  private final S3Client s3;
+  private final AppProperties props;
+
+  private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingCount = new AtomicInteger();
+  private final AtomicLong segmentSeq = new AtomicLong();
+  private final String instanceId = UUID.randomUUID().toString().substring(0, 8); // keeps keys unique across tasks
+  private final List<String> unflushed = new ArrayList<>(); // batch whose PUT failed; retried first
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread t = new Thread(r, "result-journal");
+    t.setDaemon(true);
+    return t;
+  });
+
+  public ResultJournal(S3Client s3, AppProperties props) {
+    this.s3 = s3;
+    this.props = props;
+  }
+
+  @PostConstruct
+  public void start() {
+    long flushMs = Math.max(100, props.getJournalFlushMillis());
+    long compactSec = Math.max(1, props.getJournalCompactSeconds());
+    scheduler.scheduleWithFixedDelay(this::flushQuietly, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    scheduler.scheduleWithFixedDelay(this::compactQuietly, compactSec, compactSec, TimeUnit.SECONDS);
+  }
+
+  /** Queue one CSV line (including the trailing newline). Never blocks on S3. */
+  public void append(String csvLine) {
+    pending.add(csvLine);
+    if (pendingCount.incrementAndGet() == Math.max(1, props.getJournalMaxRows())) {
+      scheduler.execute(this::flushQuietly); // batch is full: don't wait for the timer
+    }
+  }
+
+  /** Write everything queued so far as one segment object. */
+  public synchronized void flush() {
+    List<String> batch = new ArrayList<>(unflushed);
+    unflushed.clear();
+    String line;
+    while ((line = pending.poll()) != null) {
+      pendingCount.decrementAndGet();
+      batch.add(line);
+    }
+    if (batch.isEmpty()) return;
+
+    StringBuilder sb = new StringBuilder(batch.size() * 128);
+    for (String l : batch) sb.append(l);
+    String key = segmentPrefix() + TS.format(ZonedDateTime.now(ZoneOffset.UTC))
+        + "-" + instanceId + "-" + String.format("%06d", segmentSeq.incrementAndGet()) + ".csv";
+    try {
+      s3.putObject(PutObjectRequest.builder().bucket(props.getS3Bucket()).key(key)
+              .contentType("text/csv; charset=utf-8").build(),
+          RequestBody.fromString(sb.toString(), StandardCharsets.UTF_8));
+      log.debug("Journal flushed {} rows to s3://{}/{}", batch.size(), props.getS3Bucket(), key);
+    } catch (RuntimeException e) {
+      unflushed.addAll(batch);
+      throw e;
+    }
+  }
+
+  /**
+   * Append all segments to the consolidated CSV, oldest first, then delete them.
+   *
+   * Before the output is written the lease records the folded segments and an id that the write stores as
+   * object metadata, so whoever compacts next knows whether segments still present are already in the
+   * output (delete them) or not (fold them again), even if this process stops in between.
+   */
+  public synchronized void compact() {
+    String bucket = props.getS3Bucket();
+    String target = props.getOutputS3Key();
+
+    Lease lease = readLease(bucket);
+    if (lease != null && !lease.owner().equals(instanceId) && lease.expiresAt() > System.currentTimeMillis()) {
+      return; // another instance is compacting
+    }
+    if (lease != null && lease.fold() != null) {
+      boolean landed = WRITTEN.equals(lease.fold()) || lease.fold().equals(outputFold(bucket, target));
+      List<String> left = landed ? deleteSegments(bucket, lease.folded()) : List.of();
+      lease = writeLease(bucket, lease, left.isEmpty() ? null : WRITTEN, left);
+      if (lease == null || !left.isEmpty()) return;
+    }
+
+    List<String> segments = new ArrayList<>();
+    for (var page : s3.listObjectsV2Paginator(ListObjectsV2Request.builder().bucket(bucket).prefix(segmentPrefix()).build())) {
+      for (S3Object o : page.contents()) {
+        if (!o.key().equals(leaseKey())) segments.add(o.key());
+      }
+    }
+    if (segments.isEmpty()) return;
+    segments.sort(null); // keys start with a UTC timestamp
+
+    ByteArrayOutputStream merged = new ByteArrayOutputStream();
+    String etag = null;
+    try {
+      ResponseBytes<GetObjectResponse> current = s3.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(target).build());
+      etag = current.response().eTag();
+      merged.writeBytes(current.asByteArray());
+    } catch (S3Exception e) {
+      if (e.statusCode() != 404) throw e; // object may not exist yet
+    }
+    for (String k : segments) {
+      merged.writeBytes(s3.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(k).build()).asByteArray());
+    }
+
+    String fold = UUID.randomUUID().toString();
+    lease = writeLease(bucket, lease, fold, segments);
+    if (lease == null) return;
+    try {
+      s3.putObject(conditional(PutObjectRequest.builder().bucket(bucket).key(target)
+              .contentType("text/csv; charset=utf-8").metadata(Map.of(FOLD_META, fold)), etag).build(),
+          RequestBody.fromBytes(merged.toByteArray()));
+    } catch (S3Exception e) {
+      if (!isConflict(e)) throw e; // outcome unknown: the lease keeps the fold for the next attempt to check
+      log.warn("s3://{}/{} changed while compacting the journal; retrying next time", bucket, target);
+      writeLease(bucket, lease, null, List.of());
+      return;
+    }
+
+    List<String> left;
+    try {
+      left = deleteSegments(bucket, segments);
+    } catch (RuntimeException e) {
+      left = segments;
+      log.warn("Journal segments compacted into s3://{}/{} but not deleted (will retry): {}", bucket, target, e.toString());
+    }
+    writeLease(bucket, lease, left.isEmpty() ? null : WRITTEN, left);
+    log.info("Journal compacted {} segments into s3://{}/{}", segments.size(), bucket, target);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdown();
+    flushQuietly();
+    compactQuietly();
+  }
+
+  /** Lease state: owner and expiry, plus the segments of a fold that is not finished yet. */
+  private record Lease(String etag, String owner, long expiresAt, String fold, List<String> folded) {}
+
+  private Lease readLease(String bucket) {
+    ResponseBytes<GetObjectResponse> obj;
+    try {
+      obj = s3.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(leaseKey()).build());
+    } catch (S3Exception e) {
+      if (e.statusCode() == 404) return null;
+      throw e;
+    }
+    String owner = "";
+    long expiresAt = 0;
+    String fold = null;
+    List<String> folded = new ArrayList<>();
+    for (String line : obj.asString(StandardCharsets.UTF_8).split("\n")) {
+      if (line.startsWith("owner=")) owner = line.substring(6);
+      else if (line.startsWith("expires=")) expiresAt = Long.parseLong(line.substring(8));
+      else if (line.startsWith("fold=")) fold = line.substring(5);
+      else if (!line.isBlank()) folded.add(line);
+    }
+    return new Lease(obj.response().eTag(), owner, expiresAt, fold, folded);
+  }
+
+  /** Take or renew the lease with the given fold state; null when another instance changed it first. */
+  private Lease writeLease(String bucket, Lease current, String fold, List<String> folded) {
+    long expiresAt = System.currentTimeMillis() + Math.max(60, 3 * props.getJournalCompactSeconds()) * 1000L;
+    StringBuilder body = new StringBuilder("owner=").append(instanceId).append("\nexpires=").append(expiresAt).append('\n');
+    if (fold != null) body.append("fold=").append(fold).append('\n');
+    for (String k : folded) body.append(k).append('\n');
+    try {
+      String etag = s3.putObject(conditional(PutObjectRequest.builder().bucket(bucket).key(leaseKey())
+              .contentType("text/plain; charset=utf-8"), current == null ? null : current.etag()).build(),
+          RequestBody.fromString(body.toString(), StandardCharsets.UTF_8)).eTag();
+      return new Lease(etag, instanceId, expiresAt, fold, folded);
+    } catch (S3Exception e) {
+      if (isConflict(e)) return null;
+      throw e;
+    }
+  }
+
+  /** If-Match on the ETag that was read, or If-None-Match: * when the object did not exist. */
+  private static PutObjectRequest.Builder conditional(PutObjectRequest.Builder b, String etag) {
+    return b.overrideConfiguration(o -> {
+      if (etag == null) o.putHeader("If-None-Match", "*");
+      else o.putHeader("If-Match", etag);
+    });
+  }
+
+  private static boolean isConflict(S3Exception e) {
+    return e.statusCode() == 412 || e.statusCode() == 409;
+  }
+
+  private String outputFold(String bucket, String target) {
+    try {
+      return s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(target).build()).metadata().get(FOLD_META);
+    } catch (S3Exception e) {
+      if (e.statusCode() == 404) return null;
+      throw e;
+    }
+  }
+
+  /** Delete folded segments; returns the keys S3 could not delete. */
+  private List<String> deleteSegments(String bucket, List<String> keys) {
+    List<String> failed = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i += 1000) { // DeleteObjects takes at most 1000 keys
+      List<ObjectIdentifier> ids = new ArrayList<>();
+      for (String k : keys.subList(i, Math.min(keys.size(), i + 1000))) {
+        ids.add(ObjectIdentifier.builder().key(k).build());
+      }
+      DeleteObjectsResponse r = s3.deleteObjects(DeleteObjectsRequest.builder().bucket(bucket)
+          .delete(Delete.builder().objects(ids).quiet(true).build()).build());
+      for (S3Error err : r.errors()) failed.add(err.key());
+    }
+    return failed;
+  }
+
+  private String leaseKey() {
+    return segmentPrefix() + LEASE_NAME;
+  }
+
+  private String segmentPrefix() {
+    String p = props.getJournalPrefix() == null ? "" : props.getJournalPrefix().trim();
+    return p.isEmpty() || p.endsWith("/") ? p : p + "/";
+  }
+
+  private void flushQuietly() {
+    try { flush(); } catch (Exception e) { log.warn("Journal flush failed (will retry): {}", e.toString()); }
+  }
+
+  private void compactQuietly() {
+    try { compact(); } catch (Exception e) { log.warn("Journal compaction failed (will retry): {}", e.toString()); }
+  }
+}
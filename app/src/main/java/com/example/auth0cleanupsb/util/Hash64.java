@@ -0,0 +1,19 @@
+package com.example.auth0cleanupsb.util;
+
+/** Fast non-cryptographic 64-bit string hash (FNV-1a with a final avalanche), shared by the compact lookup structures. */
+public final class Hash64 {
+  private Hash64() {}
+
+  /** Never returns 0, so 0 can mark an empty slot in open-addressing tables. */
+  public static long of(String s) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < s.length(); i++) {
+      h ^= s.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= (h >>> 33);
+    h *= 0xff51afd7ed558ccdL;
+    h ^= (h >>> 33);
+    return h == 0 ? 1 : h;
+  }
+}
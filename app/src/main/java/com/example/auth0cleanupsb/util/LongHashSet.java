@@ -0,0 +1,61 @@
+package com.example.auth0cleanupsb.util;
+
+/**
+ * Open-addressing set of non-zero longs in one primitive array (linear probing, load factor <= 0.7).
+ * 8 bytes per slot instead of ~100 for a boxed HashSet entry; meant for 64-bit hashes from {@link Hash64}.
+ * Not thread-safe.
+ */
+public final class LongHashSet {
+  private long[] slots;
+  private int size;
+  private int resizeAt;
+
+  public LongHashSet(int expected) {
+    int cap = Integer.highestOneBit(Math.max(16, (int) Math.min(1 << 30, expected / 0.7 + 1)) - 1) << 1;
+    slots = new long[cap];
+    resizeAt = (int) (cap * 0.7);
+  }
+
+  /** Adds v (must not be 0); true if it was not present. */
+  public boolean add(long v) {
+    if (v == 0) throw new IllegalArgumentException("0 is reserved for empty slots");
+    if (size >= resizeAt) grow();
+    return insert(slots, v);
+  }
+
+  public boolean contains(long v) {
+    int mask = slots.length - 1;
+    for (int i = mix(v) & mask; ; i = (i + 1) & mask) {
+      long s = slots[i];
+      if (s == 0) return false;
+      if (s == v) return true;
+    }
+  }
+
+  public int size() { return size; }
+
+  private boolean insert(long[] table, long v) {
+    int mask = table.length - 1;
+    for (int i = mix(v) & mask; ; i = (i + 1) & mask) {
+      long s = table[i];
+      if (s == v) return false;
+      if (s == 0) {
+        table[i] = v;
+        size++;
+        return true;
+      }
+    }
+  }
+
+  private void grow() {
+    long[] old = slots;
+    slots = new long[old.length << 1];
+    resizeAt = (int) (slots.length * 0.7);
+    size = 0;
+    for (long v : old) if (v != 0) insert(slots, v);
+  }
+
+  private static int mix(long v) {
+    return (int) (v ^ (v >>> 32));
+  }
+}
@@ -1,31 +1,137 @@
 package com.example.auth0cleanupsb.web;
 
+import com.example.auth0cleanupsb.config.AppProperties;
 import org.springframework.batch.core.*;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 
+/**
+ * Starts deleteUsersJob in the background and reports on it. A run is accepted while fewer than
+ * APP_BATCH_MAX_CONCURRENT_JOBS + APP_BATCH_MAX_QUEUED_JOBS are running or waiting (those beyond the first
+ * group wait in STARTING); anything more gets 429 instead of a job competing for the same Auth0 budget.
+ */
 @RestController
 @RequestMapping("/batch")
 public class BatchController {
+  private static final String DELETE_STEP = "deleteUsersStep";
+
   private final JobLauncher launcher;
+  private final JobExplorer explorer;
   private final Job deleteUsersJob;
+  private final Semaphore slots;
 
-  public BatchController(JobLauncher launcher, Job deleteUsersJob) {
-    this.launcher = launcher;
+  public BatchController(JobRepository repository, JobExplorer explorer, Job deleteUsersJob,
+                         ThreadPoolTaskExecutor batchJobExecutor, AppProperties props) throws Exception {
+    this.explorer = explorer;
     this.deleteUsersJob = deleteUsersJob;
+    this.slots = new Semaphore(Math.max(1, props.getBatchMaxConcurrentJobs()) + Math.max(0, props.getBatchMaxQueuedJobs()));
+    TaskExecutorJobLauncher async = new TaskExecutorJobLauncher();
+    async.setJobRepository(repository);
+    async.setTaskExecutor(task -> {
+      try {
+        batchJobExecutor.execute(() -> {
+          try {
+            task.run();
+          } finally {
+            slots.release();
+          }
+        });
+      } catch (RuntimeException e) { // shutting down; the launcher marks the execution FAILED
+        slots.release();
+        throw e;
+      }
+    });
+    async.afterPropertiesSet();
+    this.launcher = async;
   }
 
   @PostMapping("/run")
-  public Map<String, Object> run(@RequestParam(defaultValue = "false") boolean dryRun,
-                                 @RequestParam(required = false) String inputKey) throws Exception {
+  public ResponseEntity<Map<String, Object>> run(@RequestParam(defaultValue = "false") boolean dryRun,
+                                                 @RequestParam(required = false) String inputKey,
+                                                 @RequestParam(defaultValue = "1") long concurrency,
+                                                 @RequestParam(defaultValue = "1") long partitions,
+                                                 @RequestParam(defaultValue = "false") boolean multiTenant) throws Exception {
     JobParameters params = new JobParametersBuilder()
         .addLong("ts", System.currentTimeMillis()) // uniqueness
         .addString("dryRun", Boolean.toString(dryRun))
         .addString("inputKey", inputKey == null ? "" : inputKey)
+        .addLong("concurrency", Math.max(1, concurrency)) // max in-flight Auth0 calls
+        .addLong("partitions", Math.max(1, partitions))   // >1 splits the input into parallel byte ranges
+        .addString("multiTenant", Boolean.toString(multiTenant)) // one parallel worker per Auth0 tenant instead
         .toJobParameters();
-    JobExecution exec = launcher.run(deleteUsersJob, params);
-    return Map.of("jobId", exec.getJobId(), "status", exec.getStatus().toString());
+    if (!slots.tryAcquire()) {
+      throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many batch jobs running or queued");
+    }
+    JobExecution exec;
+    try {
+      exec = launcher.run(deleteUsersJob, params); // returns once the execution is created, the job runs on batch-job-*
+    } catch (Exception | Error e) {
+      slots.release();
+      throw e;
+    }
+    return ResponseEntity.accepted()
+        .location(URI.create("/batch/" + exec.getId()))
+        .body(Map.of("executionId", exec.getId(), "jobId", exec.getJobId(), "status", exec.getStatus().toString()));
+  }
+
+  @GetMapping("/{executionId}")
+  public Map<String, Object> status(@PathVariable long executionId) {
+    JobExecution exec = explorer.getJobExecution(executionId);
+    if (exec == null || !deleteUsersJob.getName().equals(exec.getJobInstance().getJobName())) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No batch execution " + executionId);
+    }
+    Map<String, Object> out = new LinkedHashMap<>();
+    out.put("executionId", exec.getId());
+    out.put("jobId", exec.getJobId());
+    out.put("status", exec.getStatus().toString());
+    out.put("exitCode", exec.getExitStatus().getExitCode());
+    out.put("exitDescription", exec.getExitStatus().getExitDescription());
+    out.put("createTime", exec.getCreateTime());
+    out.put("startTime", exec.getStartTime());
+    out.put("endTime", exec.getEndTime());
+    out.put("dryRun", exec.getJobParameters().getString("dryRun"));
+    out.put("inputKey", exec.getJobParameters().getString("inputKey"));
+    out.put("multiTenant", exec.getJobParameters().getString("multiTenant"));
+
+    // totals over deleteUsersStep or its partition/tenant workers; the managers only repeat their sum
+    long read = 0, written = 0, filtered = 0, skipped = 0;
+    List<Map<String, Object>> steps = new ArrayList<>();
+    for (StepExecution step : exec.getStepExecutions()) {
+      String name = step.getStepName();
+      if (name.equals(DELETE_STEP) || name.startsWith(DELETE_STEP + ":")) {
+        read += step.getReadCount();
+        written += step.getWriteCount();
+        filtered += step.getFilterCount();
+        skipped += step.getSkipCount();
+      }
+      Map<String, Object> s = new LinkedHashMap<>();
+      s.put("name", name);
+      s.put("status", step.getStatus().toString());
+      s.put("readCount", step.getReadCount());
+      s.put("writeCount", step.getWriteCount());
+      s.put("filterCount", step.getFilterCount());
+      s.put("commitCount", step.getCommitCount());
+      steps.add(s);
+    }
+    out.put("readCount", read);
+    out.put("writeCount", written);
+    out.put("filterCount", filtered);
+    out.put("skipCount", skipped);
+    out.put("steps", steps);
+    return out;
   }
 }
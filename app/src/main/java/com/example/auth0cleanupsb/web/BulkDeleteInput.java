@@ -0,0 +1,108 @@
+package com.example.auth0cleanupsb.web;
+
+import com.example.auth0cleanupsb.service.CleanupService.BulkEntry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Entries of a bulk-delete body, read one line at a time as they are needed.
+ *
+ * NDJSON: one {"ssoid": ..., "email": ...} object per line. CSV: ssoid,email columns, or any column order
+ * when the first line is a header naming "ssoid". Blank lines are skipped; a line that can't be read
+ * becomes an entry with an error, so it is reported instead of ending the request.
+ */
+final class BulkDeleteInput implements Iterator<BulkEntry> {
+  private final BufferedReader in;
+  private final boolean csv;
+  private final ObjectMapper om;
+
+  private int ssoidColumn = 0;
+  private int emailColumn = 1;
+  private boolean firstLine = true;
+  private long line;
+  private BulkEntry next;
+
+  BulkDeleteInput(BufferedReader in, boolean csv, ObjectMapper om) {
+    this.in = in;
+    this.csv = csv;
+    this.om = om;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (next == null) {
+      String text;
+      try {
+        text = in.readLine();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to read bulk-delete body", e);
+      }
+      if (text == null) return false;
+      if (text.isBlank()) continue;
+      next = csv ? csvEntry(text) : jsonEntry(text);   // null for a CSV header
+    }
+    return true;
+  }
+
+  @Override
+  public BulkEntry next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    BulkEntry e = next;
+    next = null;
+    return e;
+  }
+
+  private BulkEntry jsonEntry(String text) {
+    long n = ++line;
+    try {
+      JsonNode node = om.readTree(text);
+      if (!node.isObject()) return new BulkEntry(n, null, null, "Expected a JSON object");
+      return new BulkEntry(n, node.path("ssoid").asText(""), node.path("email").asText(""), null);
+    } catch (JsonProcessingException e) {
+      return new BulkEntry(n, null, null, "Unreadable JSON: " + e.getOriginalMessage());
+    }
+  }
+
+  private BulkEntry csvEntry(String text) {
+    List<String> cells;
+    try (CSVParser p = CSVParser.parse(text, CSVFormat.DEFAULT)) {
+      List<CSVRecord> records = p.getRecords();
+      cells = records.isEmpty() ? List.of() : records.get(0).toList();
+    } catch (IOException | UncheckedIOException e) {
+      return new BulkEntry(++line, null, null, "Unreadable CSV line");
+    }
+    if (firstLine) {
+      firstLine = false;
+      int ssoid = indexOf(cells, "ssoid");
+      if (ssoid >= 0) {
+        ssoidColumn = ssoid;
+        emailColumn = indexOf(cells, "email");
+        return null;
+      }
+    }
+    return new BulkEntry(++line, cell(cells, ssoidColumn), cell(cells, emailColumn), null);
+  }
+
+  private static int indexOf(List<String> cells, String name) {
+    for (int i = 0; i < cells.size(); i++) {
+      if (cells.get(i).trim().toLowerCase(Locale.ROOT).equals(name)) return i;
+    }
+    return -1;
+  }
+
+  private static String cell(List<String> cells, int i) {
+    return i >= 0 && i < cells.size() ? cells.get(i).trim() : "";
+  }
+}
@@ -1,16 +1,36 @@
 package com.example.auth0cleanupsb.web;
 
 import com.example.auth0cleanupsb.service.CleanupService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
+  private static final String NDJSON = "application/x-ndjson";
+
   private final CleanupService service;
-  public UserController(CleanupService service){ this.service = service; }
+  private final ObjectMapper om;
+
+  public UserController(CleanupService service, ObjectMapper om){
+    this.service = service;
+    this.om = om;
+  }
 
   @DeleteMapping("/by-ssoid/{ssoid}")
   public ResponseEntity<Map<String,Object>> deleteBySsoid(
@@ -21,4 +41,54 @@ public class UserController {
     var result = service.deleteBySsoid(ssoid, dryRun, deletedBy);
     return ResponseEntity.ok(result);
   }
+
+  /**
+   * Deletes the users of an NDJSON or CSV body (see {@link BulkDeleteInput}) and streams one NDJSON result per
+   * user back while it works, in completion order with the entry's "line", then a final {"summary": ...}.
+   * Body and results are streamed: nothing but the entries in flight is held in memory, so clients should read
+   * the response while still sending (curl does).
+   */
+  @PostMapping(value = "/bulk-delete", consumes = {NDJSON, "application/json", "text/csv", "text/plain"})
+  public void bulkDelete(@RequestParam(defaultValue = "false") boolean dryRun,
+                         @RequestParam(defaultValue = "0") int concurrency,   // 0 = APP_BULK_DELETE_CONCURRENCY
+                         @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                         HttpServletRequest request, HttpServletResponse response) throws Exception {
+    boolean csv = contentType.toLowerCase(Locale.ROOT).startsWith("text/csv");
+    BufferedReader body = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+    response.setContentType(NDJSON);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    OutputStream out = response.getOutputStream();
+
+    Map<String, Object> summary = new LinkedHashMap<>();
+    AtomicBoolean clientGone = new AtomicBoolean();
+    try {
+      Map<String, Long> counts = service.deleteAll(new BulkDeleteInput(body, csv, om), dryRun, concurrency,
+          result -> {
+            try {
+              writeLine(out, result);
+            } catch (UncheckedIOException e) {
+              clientGone.set(true);
+              throw e;
+            }
+          });
+      summary.put("total", counts.values().stream().mapToLong(Long::longValue).sum());
+      summary.put("byStatus", counts);
+    } catch (UncheckedIOException e) {
+      if (clientGone.get()) return;   // no one left to tell; entries already started were still journaled
+      // the status line is long gone; report the broken body as the last line instead
+      summary.put("error", e.getMessage());
+    }
+    writeLine(out, Map.of("summary", summary));
+  }
+
+  /** One result per line, flushed so the client sees it now (chunked transfer, no Content-Length). */
+  private void writeLine(OutputStream out, Object value) {
+    try {
+      out.write(om.writeValueAsBytes(value));
+      out.write('\n');
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Bulk-delete client went away", e);
+    }
+  }
 }
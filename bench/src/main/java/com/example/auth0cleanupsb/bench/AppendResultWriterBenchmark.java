@@ -0,0 +1,70 @@
+package com.example.auth0cleanupsb.bench;
+
+import com.example.auth0cleanupsb.batch.io.S3CsvResultWriter;
+import com.example.auth0cleanupsb.batch.model.DeleteResult;
+import com.example.auth0cleanupsb.bench.stub.InMemoryS3Client;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One 50-row chunk through the default append writer, on top of an output object that already holds
+ * existingRows rows. The writer re-reads and re-uploads the whole object per chunk, so this grows with
+ * the output size; compare with {@link ResultWriterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AppendResultWriterBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  public int existingRows;
+
+  private final InMemoryS3Client s3 = new InMemoryS3Client();
+  private byte[] existing;
+  private Chunk<DeleteResult> chunk;
+  private S3CsvResultWriter writer;
+
+  @Setup
+  public void setup() {
+    var props = Fixtures.appProperties();
+    StringBuilder sb = new StringBuilder(existingRows * 120)
+        .append("ssoid,email,auth0_user_id,status,deactivation_flag,last_update_timestamp,error\n");
+    for (DeleteResult r : Fixtures.results(existingRows)) {
+      sb.append(r.getSsoid()).append(',').append(r.getEmail()).append(',').append(r.getAuth0UserId())
+          .append(",DELETED,Y,").append(r.getLastUpdateTimestamp()).append(",\"\"\n");
+    }
+    existing = sb.toString().getBytes(StandardCharsets.UTF_8);
+    chunk = new Chunk<>(Fixtures.results(ResultWriterBenchmark.CHUNK));
+    writer = new S3CsvResultWriter(s3, props);
+  }
+
+  /** Keep the object at existingRows so every invocation measures the same size. */
+  @Setup(Level.Invocation)
+  public void resetOutput() {
+    s3.put(Fixtures.BUCKET, Fixtures.OUTPUT_KEY, existing);
+    writer.open(new ExecutionContext());
+  }
+
+  @Benchmark
+  public void appendChunk() throws Exception {
+    writer.write(chunk);
+  }
+}
@@ -0,0 +1,91 @@
+package com.example.auth0cleanupsb.bench;
+
+import com.example.auth0cleanupsb.auth0.Auth0Client;
+import com.example.auth0cleanupsb.bench.stub.StubAuth0Server;
+import com.example.auth0cleanupsb.config.AppProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Auth0Client calls against {@link StubAuth0Server} on localhost: request building, rate limiter,
+ * HTTP round trip and response parsing, with no tenant latency. lookupCache=on shows the cost of a
+ * cache hit instead (the value set is small enough to stay cached).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Auth0ClientBenchmark {
+  private static final int DISTINCT = 1000;
+
+  @Param({"off", "on"})
+  public String lookupCache;
+
+  private StubAuth0Server server;
+  private Auth0Client auth0;
+  private String[] ssoids;
+  private String[] emails;
+  private int next;
+
+  @Setup
+  public void setup() throws Exception {
+    server = new StubAuth0Server(2048);
+    auth0 = new Auth0Client(stubProperties(server, "on".equals(lookupCache)), new SimpleMeterRegistry());
+    ssoids = new String[DISTINCT];
+    emails = new String[DISTINCT];
+    for (int i = 0; i < DISTINCT; i++) {
+      ssoids[i] = Fixtures.ssoid(i);
+      emails[i] = Fixtures.email(i);
+    }
+    auth0.getMgmtToken(); // token fetch is not part of the measurement
+  }
+
+  @TearDown
+  public void tearDown() {
+    server.close();
+  }
+
+  /** Properties pointing Auth0Client at the stub; shared with the other Auth0 benchmarks. */
+  static AppProperties stubProperties(StubAuth0Server server, boolean lookupCache) {
+    AppProperties props = Fixtures.appProperties();
+    props.setAuth0TokenUrl(server.baseUrl() + "/oauth/token");
+    props.setAuth0Audience(server.baseUrl() + "/api/v2/");
+    props.setAuth0LookupCacheMaxEntries(lookupCache ? 100_000 : 0);
+    return props;
+  }
+
+  @Benchmark
+  public String findUserIdBySsoid() throws Exception {
+    return auth0.findUserIdBySsoid(ssoids[next++ % DISTINCT]);
+  }
+
+  @Benchmark
+  public String findUserIdBySsoidAsync() {
+    return auth0.findUserIdBySsoidAsync(ssoids[next++ % DISTINCT]).join();
+  }
+
+  @Benchmark
+  public String findUserIdByEmail() throws Exception {
+    return auth0.findUserIdByEmail(emails[next++ % DISTINCT]);
+  }
+
+  @Benchmark
+  public void deleteUserById() throws Exception {
+    auth0.deleteUserById(Fixtures.userId(next++ % DISTINCT));
+  }
+}
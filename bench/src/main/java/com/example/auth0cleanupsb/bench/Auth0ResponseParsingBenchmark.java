@@ -0,0 +1,70 @@
+package com.example.auth0cleanupsb.bench;
+
+import com.example.auth0cleanupsb.auth0.Auth0Json;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First-user_id extraction from a /users search response.
+ *
+ * treeOfString is the old handling (body as String, full JsonNode tree, fields=user_id,email,app_metadata,
+ * user_metadata); streamMinimal is the current one (body bytes through {@link Auth0Json}, fields=user_id,
+ * per_page=1). streamFullFields isolates the parser change from the smaller response.
+ * Run with -prof gc to compare gc.alloc.rate.norm (bytes per lookup).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Auth0ResponseParsingBenchmark {
+
+  /** Users in the full response: an SSOID/email hit is usually 1, a loose search returns a page. */
+  @Param({"1", "50"})
+  public int users;
+
+  /** Approximate size of each user's metadata objects, in bytes. */
+  @Param({"512", "4096"})
+  public int metadataBytes;
+
+  private final ObjectMapper om = new ObjectMapper();
+  private byte[] fullResponse;
+  private byte[] minimalResponse;
+
+  @Setup
+  public void setup() {
+    fullResponse = Fixtures.searchResponse(users, metadataBytes).getBytes(StandardCharsets.UTF_8);
+    minimalResponse = "[{\"user_id\":\"auth0|5f7c8ec7c33c6c004bbafe82\"}]".getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public String treeOfString() throws Exception {
+    JsonNode arr = om.readTree(new String(fullResponse, StandardCharsets.UTF_8));
+    return arr.isArray() && arr.size() > 0 ? arr.get(0).path("user_id").asText(null) : null;
+  }
+
+  @Benchmark
+  public String streamFullFields() throws Exception {
+    return Auth0Json.firstUserId(fullResponse);
+  }
+
+  @Benchmark
+  public String streamMinimal() throws Exception {
+    return Auth0Json.firstUserId(minimalResponse);
+  }
+}
@@ -0,0 +1,69 @@
+package com.example.auth0cleanupsb.bench;
+
+import com.example.auth0cleanupsb.batch.io.CsvCompression;
+import com.example.auth0cleanupsb.batch.io.S3CsvUserReader;
+import com.example.auth0cleanupsb.batch.model.UserDeleteRecord;
+import com.example.auth0cleanupsb.bench.stub.InMemoryS3Client;
+import com.example.auth0cleanupsb.config.AppProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the whole input CSV through {@link S3CsvUserReader} from an in-memory S3: record framing,
+ * CSV parsing and (for gzip/zstd) decompression. Time per file; rows/s = rows / score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CsvReaderBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  public int rows;
+
+  @Param({"none", "gzip", "zstd"})
+  public String compression;
+
+  private final InMemoryS3Client s3 = new InMemoryS3Client();
+  private AppProperties props;
+
+  @Setup
+  public void setup() throws Exception {
+    CsvCompression codec = CsvCompression.named(compression);
+    props = Fixtures.appProperties();
+    props.setInputS3Key(codec.applyTo(Fixtures.INPUT_KEY));
+    s3.put(Fixtures.BUCKET, props.getInputS3Key(), codec.compress(Fixtures.inputCsv(rows)));
+  }
+
+  @Benchmark
+  public long readAll(Blackhole bh) throws Exception {
+    S3CsvUserReader reader = new S3CsvUserReader(s3, props, true);
+    reader.open(new ExecutionContext());
+    long n = 0;
+    try {
+      UserDeleteRecord r;
+      while ((r = reader.read()) != null) {
+        bh.consume(r);
+        n++;
+      }
+    } finally {
+      reader.close();
+    }
+    return n;
+  }
+}
@@ -0,0 +1,69 @@
+package com.example.auth0cleanupsb.bench;
+
+import com.example.auth0cleanupsb.auth0.Auth0Client;
+import com.example.auth0cleanupsb.batch.model.DeleteResult;
+import com.example.auth0cleanupsb.batch.model.UserDeleteRecord;
+import com.example.auth0cleanupsb.batch.processor.Auth0DeleteProcessor;
+import com.example.auth0cleanupsb.bench.stub.StubAuth0Server;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-item cost of {@link Auth0DeleteProcessor} for each kind of input row, against {@link StubAuth0Server}:
+ * userId = one DELETE, ssoid = search + DELETE, dryRun = search only, duplicate = no call at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeleteProcessorBenchmark {
+  private static final int DISTINCT = 1000;
+
+  @Param({"userId", "ssoid", "dryRun", "duplicate"})
+  public String kind;
+
+  private StubAuth0Server server;
+  private Auth0DeleteProcessor processor;
+  private UserDeleteRecord[] items;
+  private int next;
+
+  @Setup
+  public void setup() throws Exception {
+    server = new StubAuth0Server(2048);
+    Auth0Client auth0 = new Auth0Client(Auth0ClientBenchmark.stubProperties(server, false), new SimpleMeterRegistry());
+    auth0.getMgmtToken();
+    processor = new Auth0DeleteProcessor(auth0, Boolean.toString("dryRun".equals(kind)));
+    items = new UserDeleteRecord[DISTINCT];
+    for (int i = 0; i < DISTINCT; i++) {
+      UserDeleteRecord r = "userId".equals(kind)
+          ? new UserDeleteRecord(Fixtures.userId(i), Fixtures.ssoid(i), Fixtures.email(i))
+          : new UserDeleteRecord("", Fixtures.ssoid(i), Fixtures.email(i));
+      items[i] = "duplicate".equals(kind) ? r.asDuplicate() : r;
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    server.close();
+  }
+
+  @Benchmark
+  public DeleteResult process() throws Exception {
+    return processor.process(items[next++ % DISTINCT]);
+  }
+}
@@ -0,0 +1,114 @@
+package com.example.auth0cleanupsb.bench;
+
+import com.example.auth0cleanupsb.batch.model.DeleteResult;
+import com.example.auth0cleanupsb.config.AppProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/** Deterministic synthetic payloads shaped like the real inputs and Auth0 responses. */
+public final class Fixtures {
+  private Fixtures() {}
+
+  public static final String BUCKET = "bench-bucket";
+  public static final String INPUT_KEY = "input/users_to_delete.csv";
+  static final String OUTPUT_KEY = "output/deleted_users.csv";
+
+  /**
+   * AppProperties with the same defaults as the @Value annotations (nothing is injected outside Spring),
+   * pointed at the bench bucket. The Auth0 rate limit is lifted so stubs measure client overhead only.
+   */
+  static AppProperties appProperties() {
+    AppProperties p = new AppProperties();
+    p.setAuth0Domain("stub.invalid");
+    p.setAuth0ClientId("bench");
+    p.setAuth0ClientSecret("bench");
+    p.setAuth0TokenExpirySkewSeconds(60);
+    p.setAuth0RateLimitPerSecond(1_000_000);
+    p.setAuth0RateLimitReserve(0);
+    p.setAuth0Max429Retries(5);
+    p.setAuth0LookupMaxQueryChars(2000);
+    p.setAuth0HttpThreads(4);
+    p.setAuth0LookupCacheMaxEntries(0);
+    p.setAuth0LookupCacheTtlSeconds(600);
+    p.setAuth0LookupCacheNegativeTtlSeconds(120);
+    p.setIdentityResolution("api");
+    p.setS3Bucket(BUCKET);
+    p.setInputS3Key(INPUT_KEY);
+    p.setOutputS3Key(OUTPUT_KEY);
+    p.setInputReadMode("stream");
+    p.setInputBlockSizeMb(8);
+    p.setInputPrefetchBlocks(4);
+    p.setInputBlockRetries(3);
+    p.setBatchChunkSize(50);
+    p.setOutputWriterMode("append");
+    p.setOutputPartSizeMb(8);
+    p.setOutputUploadThreads(2);
+    p.setOutputCompression("none");
+    p.setOutputShardPrefix("output/");
+    return p;
+  }
+
+  /** Input CSV: a third of the rows carry a user_id, the rest only ssoid and email (the lookup path). */
+  public static byte[] inputCsv(int rows) {
+    StringBuilder sb = new StringBuilder(rows * 64).append("user_id,email,ssoid\n");
+    for (int i = 0; i < rows; i++) {
+      sb.append(i % 3 == 0 ? userId(i) : "").append(',').append(email(i)).append(',').append(ssoid(i)).append('\n');
+    }
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** Result rows as the processor produces them, with an occasional quoted error message. */
+  static List<DeleteResult> results(int rows) {
+    List<DeleteResult> out = new ArrayList<>(rows);
+    String ts = "2024-05-01T12:00:00.000000Z";
+    for (int i = 0; i < rows; i++) {
+      if (i % 50 == 49) {
+        out.add(new DeleteResult(ssoid(i), email(i), userId(i), "ERROR", "N", ts,
+            "Auth0 delete HTTP 500: {\"error\":\"Internal Server Error\"}"));
+      } else {
+        out.add(new DeleteResult(ssoid(i), email(i), userId(i), "DELETED", "Y", ts, null));
+      }
+    }
+    return out;
+  }
+
+  static String userId(int i) {
+    return String.format(Locale.ROOT, "auth0|%024x", 0x5f7c8ec7L * 31 + i);
+  }
+
+  static String email(int i) {
+    return "user" + i + "@example.com";
+  }
+
+  static String ssoid(int i) {
+    return String.format(Locale.ROOT, "SSO%09d", i);
+  }
+
+  /**
+   * A /users search response with fields=user_id,email,app_metadata,user_metadata. Auth0 puts user_id after
+   * the metadata objects, so a reader looking for it has to get past them.
+   */
+  static String searchResponse(int users, int metadataBytes) {
+    StringBuilder sb = new StringBuilder(users * (metadataBytes * 2 + 200)).append('[');
+    for (int i = 0; i < users; i++) {
+      if (i > 0) sb.append(',');
+      sb.append("{\"email\":\"").append(email(i)).append('"')
+          .append(",\"app_metadata\":").append(metadata(i, "ssoid", metadataBytes))
+          .append(",\"user_metadata\":").append(metadata(i, "locale", metadataBytes))
+          .append(",\"user_id\":\"").append(userId(i)).append("\"}");
+    }
+    return sb.append(']').toString();
+  }
+
+  private static String metadata(int i, String first, int bytes) {
+    StringBuilder sb = new StringBuilder(bytes + 64).append("{\"").append(first).append("\":\"").append(ssoid(i)).append('"');
+    for (int k = 0; sb.length() < bytes; k++) {
+      sb.append(",\"attr").append(k).append("\":{\"value\":\"v").append(k * 7919 % 100000)
+          .append("\",\"tags\":[\"a\",\"b\",\"c\"],\"n\":").append(k).append('}');
+    }
+    return sb.append('}').toString();
+  }
+}
@@ -0,0 +1,88 @@
+package com.example.auth0cleanupsb.bench;
+
+import com.example.auth0cleanupsb.batch.io.S3MultipartCsvResultWriter;
+import com.example.auth0cleanupsb.batch.io.S3ShardedCsvResultWriter;
+import com.example.auth0cleanupsb.batch.model.DeleteResult;
+import com.example.auth0cleanupsb.bench.stub.InMemoryS3Client;
+import com.example.auth0cleanupsb.config.AppProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a whole job's results in 50-row chunks, with update() after each chunk as the step does:
+ * row serialization, optional compression, spooling and part/shard uploads to an in-memory S3.
+ * The append writer is per chunk and lives in {@link AppendResultWriterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ResultWriterBenchmark {
+  static final int CHUNK = 50;
+
+  @Param({"1000", "100000", "1000000"})
+  public int rows;
+
+  @Param({"multipart", "sharded"})
+  public String mode;
+
+  @Param({"none", "gzip"})
+  public String compression;
+
+  private final InMemoryS3Client s3 = new InMemoryS3Client();
+  private AppProperties props;
+  private List<Chunk<DeleteResult>> chunks;
+
+  @Setup
+  public void setup() {
+    props = Fixtures.appProperties();
+    props.setOutputWriterMode(mode);
+    props.setOutputCompression(compression);
+    chunks = chunks(Fixtures.results(rows));
+  }
+
+  @Benchmark
+  public int writeAll() throws Exception {
+    s3.clear();
+    ItemStreamWriter<DeleteResult> writer = "sharded".equals(mode)
+        ? new S3ShardedCsvResultWriter(s3, props, "1", 0)
+        : new S3MultipartCsvResultWriter(s3, props, Fixtures.OUTPUT_KEY);
+    ExecutionContext ctx = new ExecutionContext();
+    writer.open(ctx);
+    try {
+      for (Chunk<DeleteResult> c : chunks) {
+        writer.write(c);
+        writer.update(ctx);
+      }
+    } finally {
+      writer.close();
+    }
+    return chunks.size();
+  }
+
+  static List<Chunk<DeleteResult>> chunks(List<DeleteResult> results) {
+    List<Chunk<DeleteResult>> out = new ArrayList<>();
+    for (int i = 0; i < results.size(); i += CHUNK) {
+      out.add(new Chunk<>(results.subList(i, Math.min(results.size(), i + CHUNK))));
+    }
+    return out;
+  }
+}
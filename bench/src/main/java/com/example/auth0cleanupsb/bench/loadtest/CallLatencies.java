@@ -0,0 +1,55 @@
+package com.example.auth0cleanupsb.bench.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Per-call latency samples by call name, kept in full so percentiles are exact. */
+final class CallLatencies {
+
+  /** Percentiles of one call name, in milliseconds. */
+  record Summary(long calls, long failures, double p50Ms, double p99Ms, double maxMs) {}
+
+  private static final class Samples {
+    private long[] nanos = new long[1024];
+    private int size;
+    private long failures;
+
+    synchronized void add(long n, boolean failed) {
+      if (size == nanos.length) nanos = Arrays.copyOf(nanos, size * 2);
+      nanos[size++] = n;
+      if (failed) failures++;
+    }
+
+    synchronized Summary summary() {
+      long[] sorted = Arrays.copyOf(nanos, size);
+      Arrays.sort(sorted);
+      return new Summary(size, failures, percentile(sorted, 0.50), percentile(sorted, 0.99),
+          size == 0 ? 0 : sorted[size - 1] / 1e6);
+    }
+  }
+
+  private final Map<String, Samples> byName = new ConcurrentHashMap<>();
+
+  void record(String name, long nanos, boolean failed) {
+    byName.computeIfAbsent(name, k -> new Samples()).add(nanos, failed);
+  }
+
+  Map<String, Summary> summaries() {
+    Map<String, Summary> out = new TreeMap<>();
+    byName.forEach((name, s) -> out.put(name, s.summary()));
+    return out;
+  }
+
+  void clear() {
+    byName.clear();
+  }
+
+  /** Nearest-rank percentile in milliseconds. */
+  private static double percentile(long[] sorted, double q) {
+    if (sorted.length == 0) return 0;
+    int rank = (int) Math.ceil(q * sorted.length);
+    return sorted[Math.min(sorted.length, Math.max(1, rank)) - 1] / 1e6;
+  }
+}
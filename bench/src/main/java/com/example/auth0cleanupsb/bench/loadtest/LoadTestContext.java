@@ -0,0 +1,153 @@
+package com.example.auth0cleanupsb.bench.loadtest;
+
+import com.example.auth0cleanupsb.Auth0CleanupSbApplication;
+import com.example.auth0cleanupsb.auth0.Auth0Client;
+import com.example.auth0cleanupsb.batch.model.DeleteResult;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The real application (all of its beans, H2 job repository, deleteUsersJob) started without a web server
+ * for one harness configuration. The S3Client bean is replaced by the stub; Auth0Client calls are timed and
+ * the job's results are counted by status on their way to the real writer.
+ */
+final class LoadTestContext implements AutoCloseable {
+
+  /** One job execution: rows written, wall time and what the calls looked like. */
+  record RunResult(BatchStatus status, String exitDescription, long rows, double seconds,
+                   Map<String, Long> statuses, Map<String, CallLatencies.Summary> calls) {
+    double rowsPerSecond() {
+      return seconds > 0 ? rows / seconds : 0;
+    }
+  }
+
+  private final ConfigurableApplicationContext ctx;
+  private final CallLatencies latencies = new CallLatencies();
+  private final Map<String, LongAdder> statuses = StatusCountingWriter.newCounts();
+
+  LoadTestContext(String name, Map<String, Object> properties, S3Client s3) {
+    Map<String, Object> props = new HashMap<>();
+    props.put("spring.datasource.url", "jdbc:h2:mem:" + name + ";MODE=PostgreSQL");
+    props.put("spring.datasource.driver-class-name", "org.h2.Driver");
+    props.put("spring.datasource.username", "sa");
+    props.put("spring.datasource.password", "");
+    props.put("spring.batch.job.enabled", "false");
+    props.put("spring.batch.jdbc.initialize-schema", "always");
+    props.putAll(properties);
+
+    this.ctx = new SpringApplicationBuilder(Auth0CleanupSbApplication.class)
+        .web(WebApplicationType.NONE)
+        .bannerMode(Banner.Mode.OFF)
+        .logStartupInfo(false)
+        // first in line, so APP_* variables in the shell can't point the run at a real tenant or bucket
+        .initializers(c -> c.getEnvironment().getPropertySources().addFirst(new MapPropertySource("loadtest", props)))
+        .initializers(c -> c.addBeanFactoryPostProcessor(stubWiring(s3)))
+        .run();
+  }
+
+  /** Runs deleteUsersJob once with the same parameters BatchController would pass. */
+  RunResult run(long concurrency, long partitions) throws Exception {
+    latencies.clear();
+    statuses.clear();
+    JobParameters params = new JobParametersBuilder()
+        .addLong("ts", System.currentTimeMillis())
+        .addString("dryRun", "false")
+        .addString("inputKey", "")
+        .addLong("concurrency", Math.max(1, concurrency))
+        .addLong("partitions", Math.max(1, partitions))
+        .toJobParameters();
+
+    long start = System.nanoTime();
+    JobExecution exec = ctx.getBean(JobLauncher.class).run(ctx.getBean("deleteUsersJob", Job.class), params);
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    Map<String, Long> byStatus = new TreeMap<>();
+    statuses.forEach((s, n) -> byStatus.put(s, n.sum()));
+    long rows = byStatus.values().stream().mapToLong(Long::longValue).sum();
+    return new RunResult(exec.getStatus(), exec.getExitStatus().getExitDescription(), rows, seconds, byStatus,
+        latencies.summaries());
+  }
+
+  @Override
+  public void close() {
+    ctx.close();
+  }
+
+  /**
+   * Runs after the configuration classes are parsed: swaps AwsClientsConfig's S3Client for the stub and
+   * installs the instrumentation below.
+   */
+  private BeanFactoryPostProcessor stubWiring(S3Client s3) {
+    return bf -> {
+      ((BeanDefinitionRegistry) bf).removeBeanDefinition("s3Client");
+      bf.registerSingleton("s3Client", s3);
+      bf.addBeanPostProcessor(instrumentation());
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private BeanPostProcessor instrumentation() {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof Auth0Client && !AopUtils.isAopProxy(bean)) {
+          ProxyFactory pf = new ProxyFactory(bean);
+          pf.setProxyTargetClass(true);
+          pf.addAdvice(timer());
+          return pf.getProxy(bean.getClass().getClassLoader());
+        }
+        // the step-scoped s3Writer instance itself, not the scope proxy in front of it
+        if (beanName.startsWith("scopedTarget.") && bean instanceof ItemStreamWriter<?> writer) {
+          return new StatusCountingWriter((ItemStreamWriter<DeleteResult>) writer, statuses);
+        }
+        return bean;
+      }
+    };
+  }
+
+  /** Times Auth0Client's lookup and delete calls as the job sees them: limiter waits and 429 retries included. */
+  private MethodInterceptor timer() {
+    return inv -> {
+      String name = inv.getMethod().getName();
+      String call = name.startsWith("findUserIdsBy") ? "batch-lookup" : name.startsWith("find") ? "lookup"
+          : name.startsWith("delete") ? "delete" : name.startsWith("export") ? "export" : null;
+      if (call == null) return inv.proceed();
+      long start = System.nanoTime();
+      Object result;
+      try {
+        result = inv.proceed();
+      } catch (Throwable t) {
+        latencies.record(call, System.nanoTime() - start, true);
+        throw t;
+      }
+      if (result instanceof CompletableFuture<?> f) {
+        return f.whenComplete((v, t) -> latencies.record(call, System.nanoTime() - start, t != null));
+      }
+      latencies.record(call, System.nanoTime() - start, false);
+      return result;
+    };
+  }
+}
@@ -0,0 +1,195 @@
+package com.example.auth0cleanupsb.bench.loadtest;
+
+import com.example.auth0cleanupsb.bench.Fixtures;
+import com.example.auth0cleanupsb.bench.stub.FileSystemS3Client;
+import com.example.auth0cleanupsb.bench.stub.Latency;
+import com.example.auth0cleanupsb.bench.stub.StubAuth0Server;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs deleteUsersJob end to end against {@link StubAuth0Server} and a {@link FileSystemS3Client}, once per
+ * combination of chunk size, concurrency and lookup cache, and prints rows/sec, p50/p99 per Auth0 call and
+ * error counts for each.
+ *
+ * <pre>
+ *   java -cp target/benchmarks.jar com.example.auth0cleanupsb.bench.loadtest.LoadTestHarness \
+ *       rows=5000 chunk=20,50,200 concurrency=1,8,32 cache=off,on \
+ *       latency=lognormal:20:250 rateLimit=50 burst=100 inject429=0.005
+ * </pre>
+ *
+ * Arguments (key=value):
+ * <ul>
+ *   <li>rows (2000), chunk (50), concurrency (1,8), cache (off,on), partitions (1), runs per configuration (1;
+ *       with cache=on the second run shows a warm cache)</li>
+ *   <li>latency for every Auth0 endpoint (lognormal:10:80), or latency.token / latency.search /
+ *       latency.users-by-email / latency.delete; see {@link Latency#parse}</li>
+ *   <li>rateLimit per endpoint per second (0 = none), burst (= rateLimit), inject429 (share of requests, 0)</li>
+ *   <li>metadataBytes per user in full search responses (512)</li>
+ *   <li>dir for the S3 stand-in and summary.csv (target/loadtest)</li>
+ *   <li>any APP_* setting is passed to the application, e.g. APP_AUTH0_ASYNC_PIPELINE=true
+ *       APP_OUTPUT_WRITER_MODE=sharded APP_AUTH0_LOOKUP_BATCH_SIZE=100; chunk sizes are fixed unless
+ *       APP_BATCH_CHUNK_ADAPTIVE=true is given</li>
+ * </ul>
+ */
+public final class LoadTestHarness {
+  private LoadTestHarness() {}
+
+  public static void main(String[] argv) throws Exception {
+    Map<String, String> args = parse(argv);
+    int rows = Integer.parseInt(args.getOrDefault("rows", "2000"));
+    List<Integer> chunks = ints(args.getOrDefault("chunk", "50"));
+    List<Integer> concurrencies = ints(args.getOrDefault("concurrency", "1,8"));
+    List<String> caches = List.of(args.getOrDefault("cache", "off,on").split(","));
+    int partitions = Integer.parseInt(args.getOrDefault("partitions", "1"));
+    int runs = Integer.parseInt(args.getOrDefault("runs", "1"));
+    double rateLimit = Double.parseDouble(args.getOrDefault("rateLimit", "0"));
+    Path dir = Path.of(args.getOrDefault("dir", "target/loadtest"));
+
+    StubAuth0Server.Options sim = new StubAuth0Server.Options()
+        .metadataBytes(Integer.parseInt(args.getOrDefault("metadataBytes", "512")))
+        .latency(Latency.parse(args.getOrDefault("latency", "lognormal:10:80")))
+        .rateLimit(rateLimit, Integer.parseInt(args.getOrDefault("burst", "0")))
+        .inject429(Double.parseDouble(args.getOrDefault("inject429", "0")));
+    for (String endpoint : StubAuth0Server.ENDPOINTS) {
+      String spec = args.get("latency." + endpoint);
+      if (spec != null) sim.latency(endpoint, Latency.parse(spec));
+    }
+
+    FileSystemS3Client s3 = new FileSystemS3Client(dir.resolve("s3"));
+    s3.clear();
+    s3.put(Fixtures.BUCKET, Fixtures.INPUT_KEY, Fixtures.inputCsv(rows));
+
+    List<String[]> summary = new ArrayList<>();
+    summary.add(new String[] {"chunk", "concurrency", "cache", "run", "status", "rows", "seconds", "rows_per_sec",
+        "lookup_calls", "lookup_p50_ms", "lookup_p99_ms", "delete_calls", "delete_p50_ms", "delete_p99_ms",
+        "errors", "throttled_429", "injected_429", "statuses"});
+    System.out.printf(Locale.ROOT, "%-30s %-10s %7s %9s %8s %17s %8s %17s %7s %10s%n", "configuration", "status",
+        "rows", "rows/s", "lookups", "lookup p50/p99 ms", "deletes", "delete p50/p99 ms", "errors", "429 thr/inj");
+
+    try (StubAuth0Server auth0 = new StubAuth0Server(sim)) {
+      int n = 0;
+      for (int chunk : chunks) {
+        for (int concurrency : concurrencies) {
+          for (String cache : caches) {
+            String label = String.format(Locale.ROOT, "chunk=%d conc=%d cache=%s", chunk, concurrency, cache);
+            Map<String, Object> props = appProperties(args, auth0, rateLimit, chunk, "on".equals(cache),
+                "output/c" + chunk + "-n" + concurrency + "-" + cache + "/");
+            try (LoadTestContext ctx = new LoadTestContext("loadtest-" + n++, props, s3)) {
+              for (int run = 1; run <= runs; run++) {
+                auth0.resetStats();
+                LoadTestContext.RunResult r = ctx.run(concurrency, partitions);
+                String row = runs > 1 ? label + " #" + run : label;
+                print(row, r, auth0.stats());
+                summary.add(csvRow(chunk, concurrency, cache, run, r, auth0.stats()));
+              }
+            }
+          }
+        }
+      }
+    }
+
+    Path csv = dir.resolve("summary.csv");
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csv, StandardCharsets.UTF_8))) {
+      for (String[] line : summary) out.println(String.join(",", line));
+    }
+    System.out.println("Summary: " + csv.toAbsolutePath() + "; job output under " + s3.root().resolve(Fixtures.BUCKET));
+  }
+
+  /** Harness defaults first, then any APP_* argument, then the per-configuration settings. */
+  private static Map<String, Object> appProperties(Map<String, String> args, StubAuth0Server auth0, double rateLimit,
+                                                   int chunk, boolean cache, String outputPrefix) {
+    Map<String, Object> p = new LinkedHashMap<>();
+    p.put("APP_PARAM_PREFIX", "");
+    p.put("APP_AUTH0_DOMAIN", "stub.invalid");
+    p.put("APP_AUTH0_CLIENTID", "loadtest");
+    p.put("APP_AUTH0_CLIENTSECRET", "loadtest");
+    p.put("APP_AUTH0_TOKEN_URL", auth0.baseUrl() + "/oauth/token");
+    p.put("APP_AUTH0_AUDIENCE", auth0.baseUrl() + "/api/v2/");
+    // start at the simulated budget (X-RateLimit headers tune it from there); unthrottled if there is none
+    p.put("APP_AUTH0_RATE_LIMIT_PER_SECOND", rateLimit > 0 ? Double.toString(rateLimit) : "100000");
+    p.put("APP_S3_BUCKET", Fixtures.BUCKET);
+    p.put("APP_INPUT_S3_KEY", Fixtures.INPUT_KEY);
+    p.put("APP_S3_KEY", outputPrefix + "deleted_users.csv");
+    p.put("APP_OUTPUT_SHARD_PREFIX", outputPrefix);
+    p.put("APP_JOURNAL_PREFIX", outputPrefix + "journal/");
+    // chunk= is the size measured; APP_BATCH_CHUNK_ADAPTIVE=true makes it the starting size instead
+    p.put("APP_BATCH_CHUNK_ADAPTIVE", "false");
+    args.forEach((k, v) -> {
+      if (k.startsWith("APP_")) p.put(k, v);
+    });
+    p.put("APP_BATCH_CHUNK_SIZE", Integer.toString(chunk));
+    p.put("APP_AUTH0_LOOKUP_CACHE_MAX_ENTRIES", cache ? "100000" : "0");
+    return p;
+  }
+
+  private static void print(String label, LoadTestContext.RunResult r, Map<String, StubAuth0Server.EndpointStats> server) {
+    CallLatencies.Summary lookup = r.calls().getOrDefault("lookup", r.calls().get("batch-lookup"));
+    CallLatencies.Summary delete = r.calls().get("delete");
+    System.out.printf(Locale.ROOT, "%-30s %-10s %7d %9.1f %8s %17s %8s %17s %7d %10s%n", label, r.status(), r.rows(),
+        r.rowsPerSecond(), calls(lookup), percentiles(lookup), calls(delete), percentiles(delete), errors(r),
+        throttled(server) + "/" + injected(server));
+    if (r.exitDescription() != null && !r.exitDescription().isBlank() && !"COMPLETED".equals(r.status().name())) {
+      System.out.println("    " + r.exitDescription().lines().findFirst().orElse(""));
+    }
+  }
+
+  private static String[] csvRow(int chunk, int concurrency, String cache, int run, LoadTestContext.RunResult r,
+                                  Map<String, StubAuth0Server.EndpointStats> server) {
+    CallLatencies.Summary lookup = r.calls().getOrDefault("lookup", r.calls().get("batch-lookup"));
+    CallLatencies.Summary delete = r.calls().get("delete");
+    return new String[] {Integer.toString(chunk), Integer.toString(concurrency), cache, Integer.toString(run),
+        r.status().name(), Long.toString(r.rows()), fmt(r.seconds()), fmt(r.rowsPerSecond()),
+        calls(lookup), lookup == null ? "" : fmt(lookup.p50Ms()), lookup == null ? "" : fmt(lookup.p99Ms()),
+        calls(delete), delete == null ? "" : fmt(delete.p50Ms()), delete == null ? "" : fmt(delete.p99Ms()),
+        Long.toString(errors(r)), Long.toString(throttled(server)), Long.toString(injected(server)),
+        r.statuses().toString().replace(',', ';')};
+  }
+
+  private static long errors(LoadTestContext.RunResult r) {
+    return r.statuses().getOrDefault("ERROR", 0L);
+  }
+
+  private static long throttled(Map<String, StubAuth0Server.EndpointStats> server) {
+    return server.values().stream().mapToLong(StubAuth0Server.EndpointStats::throttled).sum();
+  }
+
+  private static long injected(Map<String, StubAuth0Server.EndpointStats> server) {
+    return server.values().stream().mapToLong(StubAuth0Server.EndpointStats::injected429).sum();
+  }
+
+  private static String calls(CallLatencies.Summary s) {
+    return s == null ? "-" : Long.toString(s.calls());
+  }
+
+  private static String percentiles(CallLatencies.Summary s) {
+    return s == null ? "-" : String.format(Locale.ROOT, "%.1f/%.1f", s.p50Ms(), s.p99Ms());
+  }
+
+  private static String fmt(double v) {
+    return String.format(Locale.ROOT, "%.2f", v);
+  }
+
+  private static List<Integer> ints(String csv) {
+    return Arrays.stream(csv.split(",")).map(String::trim).map(Integer::parseInt).toList();
+  }
+
+  private static Map<String, String> parse(String[] argv) {
+    Map<String, String> out = new LinkedHashMap<>();
+    for (String a : argv) {
+      int eq = a.indexOf('=');
+      if (eq <= 0) throw new IllegalArgumentException("Expected key=value, got '" + a + "'");
+      out.put(a.substring(0, eq), a.substring(eq + 1));
+    }
+    return out;
+  }
+}
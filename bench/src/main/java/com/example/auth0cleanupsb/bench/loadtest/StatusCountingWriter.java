@@ -0,0 +1,36 @@
+package com.example.auth0cleanupsb.bench.loadtest;
+
+import com.example.auth0cleanupsb.batch.model.DeleteResult;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Passes results to the job's real writer and counts them by status once the delegate has written them. */
+final class StatusCountingWriter implements ItemStreamWriter<DeleteResult> {
+  private final ItemStreamWriter<DeleteResult> delegate;
+  private final Map<String, LongAdder> counts;
+
+  StatusCountingWriter(ItemStreamWriter<DeleteResult> delegate, Map<String, LongAdder> counts) {
+    this.delegate = delegate;
+    this.counts = counts;
+  }
+
+  static Map<String, LongAdder> newCounts() {
+    return new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public void write(Chunk<? extends DeleteResult> items) throws Exception {
+    delegate.write(items);
+    for (DeleteResult r : items) counts.computeIfAbsent(r.getStatus(), k -> new LongAdder()).increment();
+  }
+
+  @Override public void open(ExecutionContext ctx) throws ItemStreamException { delegate.open(ctx); }
+  @Override public void update(ExecutionContext ctx) throws ItemStreamException { delegate.update(ctx); }
+  @Override public void close() throws ItemStreamException { delegate.close(); }
+}
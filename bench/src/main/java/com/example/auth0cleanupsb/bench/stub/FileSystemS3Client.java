@@ -0,0 +1,147 @@
+package com.example.auth0cleanupsb.bench.stub;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * {@link InMemoryS3Client} that keeps objects under a local directory, so a load-test run can be inspected
+ * afterwards and its input doesn't have to fit in the heap twice: {@code <root>/<bucket>/<key>}.
+ * Content type, encoding and user metadata go to {@code <root>/.s3meta/<bucket>/<key>.properties}.
+ * In-progress multipart uploads stay in memory until they are completed.
+ */
+public class FileSystemS3Client extends InMemoryS3Client {
+  private static final String META_DIR = ".s3meta";
+
+  private final Path root;
+
+  public FileSystemS3Client(Path root) {
+    this.root = root.toAbsolutePath().normalize();
+  }
+
+  public Path root() {
+    return root;
+  }
+
+  @Override
+  public void clear() {
+    super.clear();
+    try (Stream<Path> files = Files.walk(root)) {
+      files.sorted((a, b) -> b.getNameCount() - a.getNameCount()).filter(p -> !p.equals(root)).forEach(p -> {
+        try {
+          Files.delete(p);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (IOException e) {
+      if (Files.exists(root)) throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  protected void store(String bucket, String key, StoredObject o) {
+    Path data = path(bucket, key);
+    try {
+      Files.createDirectories(data.getParent());
+      // write-then-rename, so a reader never sees half an object (S3 PUTs are atomic too)
+      Path tmp = Files.createTempFile(data.getParent(), ".put-", ".tmp");
+      Files.write(tmp, o.data());
+      Files.move(tmp, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+      Path meta = metaPath(bucket, key);
+      if (o.contentType() == null && o.contentEncoding() == null && o.metadata().isEmpty()) {
+        Files.deleteIfExists(meta);
+        return;
+      }
+      Properties p = new Properties();
+      if (o.contentType() != null) p.setProperty("Content-Type", o.contentType());
+      if (o.contentEncoding() != null) p.setProperty("Content-Encoding", o.contentEncoding());
+      o.metadata().forEach((k, v) -> p.setProperty("x-amz-meta-" + k, v));
+      Files.createDirectories(meta.getParent());
+      try (OutputStream out = Files.newOutputStream(meta)) {
+        p.store(out, null);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to store " + bucket + "/" + key, e);
+    }
+  }
+
+  @Override
+  protected StoredObject load(String bucket, String key) {
+    Path data = path(bucket, key);
+    if (!Files.isRegularFile(data)) return null;
+    try {
+      byte[] bytes = Files.readAllBytes(data);
+      Path meta = metaPath(bucket, key);
+      if (!Files.exists(meta)) return new StoredObject(bytes, null, null, Map.of());
+      Properties p = new Properties();
+      try (InputStream in = Files.newInputStream(meta)) {
+        p.load(in);
+      }
+      Map<String, String> userMeta = new HashMap<>();
+      for (String name : p.stringPropertyNames()) {
+        if (name.startsWith("x-amz-meta-")) userMeta.put(name.substring("x-amz-meta-".length()), p.getProperty(name));
+      }
+      return new StoredObject(bytes, p.getProperty("Content-Type"), p.getProperty("Content-Encoding"), userMeta);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to load " + bucket + "/" + key, e);
+    }
+  }
+
+  @Override
+  protected void remove(String bucket, String key) {
+    try {
+      Files.deleteIfExists(path(bucket, key));
+      Files.deleteIfExists(metaPath(bucket, key));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to delete " + bucket + "/" + key, e);
+    }
+  }
+
+  @Override
+  protected List<String> keys(String bucket, String prefix) {
+    Path dir = root.resolve(bucket);
+    if (!Files.isDirectory(dir)) return List.of();
+    String p = prefix == null ? "" : prefix;
+    try (Stream<Path> files = Files.walk(dir)) {
+      // S3 lists keys in UTF-8 binary order, which String order matches for the keys we generate
+      return files.filter(Files::isRegularFile)
+          .map(f -> dir.relativize(f).toString().replace('\\', '/'))
+          .filter(k -> k.startsWith(p) && !isTempFile(k))
+          .sorted()
+          .toList();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to list " + bucket + "/" + p, e);
+    }
+  }
+
+  private Path path(String bucket, String key) {
+    return resolve(root.resolve(bucket), key);
+  }
+
+  private Path metaPath(String bucket, String key) {
+    return resolve(root.resolve(META_DIR).resolve(bucket), key + ".properties");
+  }
+
+  /** Keys are relative paths; refuse anything that would land outside the bucket directory. */
+  private static Path resolve(Path dir, String key) {
+    Path p = dir.resolve(key).normalize();
+    if (!p.startsWith(dir)) throw new IllegalArgumentException("Key escapes the bucket directory: " + key);
+    return p;
+  }
+
+  private static boolean isTempFile(String key) {
+    String name = key.substring(key.lastIndexOf('/') + 1);
+    return name.startsWith(".put-") && name.endsWith(".tmp");
+  }
+}
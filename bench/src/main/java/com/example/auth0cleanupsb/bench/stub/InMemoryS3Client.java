@@ -0,0 +1,239 @@
+package com.example.auth0cleanupsb.bench.stub;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyPartResult;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * S3Client over a map, implementing the calls the app makes: HEAD, (ranged) GET, PUT, multipart upload
+ * including UploadPartCopy, ListObjectsV2 and DeleteObjects. Objects are keyed by bucket + "/" + key;
+ * a missing key fails with a 404 like S3. Everything else throws UnsupportedOperationException.
+ */
+public class InMemoryS3Client implements S3Client {
+
+  protected record StoredObject(byte[] data, String contentType, String contentEncoding, Map<String, String> metadata) {}
+
+  private final Map<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+  private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+  /** Seed an object, e.g. the input CSV. */
+  public void put(String bucket, String key, byte[] data) {
+    store(bucket, key, new StoredObject(data, null, null, Map.of()));
+  }
+
+  /** Object bytes, or null if there is no such key. */
+  public byte[] bytes(String bucket, String key) {
+    StoredObject o = load(bucket, key);
+    return o == null ? null : o.data();
+  }
+
+  public void clear() {
+    objects.clear();
+    uploads.clear();
+  }
+
+  /* ---------- storage; override to keep objects elsewhere ---------- */
+
+  protected void store(String bucket, String key, StoredObject o) {
+    objects.put(bucket + "/" + key, o);
+  }
+
+  protected StoredObject load(String bucket, String key) {
+    return objects.get(bucket + "/" + key);
+  }
+
+  protected void remove(String bucket, String key) {
+    objects.remove(bucket + "/" + key);
+  }
+
+  protected List<String> keys(String bucket, String prefix) {
+    String p = bucket + "/" + (prefix == null ? "" : prefix);
+    List<String> out = new ArrayList<>();
+    for (String k : objects.keySet()) {
+      if (k.startsWith(p)) out.add(k.substring(bucket.length() + 1));
+    }
+    return out;
+  }
+
+  /* ---------- S3Client ---------- */
+
+  @Override
+  public HeadObjectResponse headObject(HeadObjectRequest req) {
+    StoredObject o = require(req.bucket(), req.key());
+    return HeadObjectResponse.builder().contentLength((long) o.data().length).contentType(o.contentType())
+        .contentEncoding(o.contentEncoding()).metadata(o.metadata()).build();
+  }
+
+  @Override
+  public <T> T getObject(GetObjectRequest req, ResponseTransformer<GetObjectResponse, T> transformer) {
+    StoredObject o = require(req.bucket(), req.key());
+    byte[] data = slice(o.data(), req.range());
+    GetObjectResponse resp = GetObjectResponse.builder().contentLength((long) data.length)
+        .contentType(o.contentType()).contentEncoding(o.contentEncoding()).metadata(o.metadata()).build();
+    try {
+      return transformer.transform(resp, AbortableInputStream.create(new ByteArrayInputStream(data)));
+    } catch (Exception e) {
+      throw SdkClientException.create("Transform of in-memory object failed", e);
+    }
+  }
+
+  @Override
+  public ResponseBytes<GetObjectResponse> getObjectAsBytes(GetObjectRequest req) {
+    return getObject(req, ResponseTransformer.toBytes());
+  }
+
+  @Override
+  public PutObjectResponse putObject(PutObjectRequest req, RequestBody body) {
+    store(req.bucket(), req.key(), new StoredObject(read(body), req.contentType(), req.contentEncoding(),
+        req.metadata() == null ? Map.of() : Map.copyOf(req.metadata())));
+    return PutObjectResponse.builder().eTag(UUID.randomUUID().toString()).build();
+  }
+
+  @Override
+  public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest req) {
+    String id = UUID.randomUUID().toString();
+    uploads.put(id, new ConcurrentSkipListMap<>());
+    return CreateMultipartUploadResponse.builder().bucket(req.bucket()).key(req.key()).uploadId(id).build();
+  }
+
+  @Override
+  public UploadPartResponse uploadPart(UploadPartRequest req, RequestBody body) {
+    upload(req.uploadId()).put(req.partNumber(), read(body));
+    return UploadPartResponse.builder().eTag("part-" + req.partNumber()).build();
+  }
+
+  @Override
+  public UploadPartCopyResponse uploadPartCopy(UploadPartCopyRequest req) {
+    byte[] data = slice(require(req.sourceBucket(), req.sourceKey()).data(), req.copySourceRange());
+    upload(req.uploadId()).put(req.partNumber(), data);
+    return UploadPartCopyResponse.builder()
+        .copyPartResult(CopyPartResult.builder().eTag("part-" + req.partNumber()).build()).build();
+  }
+
+  @Override
+  public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest req) {
+    Map<Integer, byte[]> parts = upload(req.uploadId());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (CompletedPart p : req.multipartUpload().parts()) {
+      byte[] data = parts.get(p.partNumber());
+      if (data == null) throw s3Error(400, "InvalidPart " + p.partNumber());
+      out.writeBytes(data);
+    }
+    uploads.remove(req.uploadId());
+    store(req.bucket(), req.key(), new StoredObject(out.toByteArray(), null, null, Map.of()));
+    return CompleteMultipartUploadResponse.builder().bucket(req.bucket()).key(req.key()).build();
+  }
+
+  @Override
+  public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest req) {
+    uploads.remove(req.uploadId());
+    return AbortMultipartUploadResponse.builder().build();
+  }
+
+  @Override
+  public ListObjectsV2Response listObjectsV2(ListObjectsV2Request req) {
+    List<S3Object> contents = new ArrayList<>();
+    for (String k : keys(req.bucket(), req.prefix())) {
+      StoredObject o = load(req.bucket(), k);
+      if (o != null) contents.add(S3Object.builder().key(k).size((long) o.data().length).build());
+    }
+    return ListObjectsV2Response.builder().contents(contents).keyCount(contents.size()).isTruncated(false).build();
+  }
+
+  @Override
+  public DeleteObjectsResponse deleteObjects(DeleteObjectsRequest req) {
+    List<DeletedObject> deleted = new ArrayList<>();
+    for (ObjectIdentifier id : req.delete().objects()) {
+      remove(req.bucket(), id.key());
+      deleted.add(DeletedObject.builder().key(id.key()).build());
+    }
+    return DeleteObjectsResponse.builder().deleted(deleted).build();
+  }
+
+  @Override
+  public String serviceName() {
+    return SERVICE_NAME;
+  }
+
+  @Override
+  public void close() {}
+
+  /* ---------- internals ---------- */
+
+  private StoredObject require(String bucket, String key) {
+    StoredObject o = load(bucket, key);
+    if (o == null) throw NoSuchKeyException.builder().statusCode(404).message("No such key: " + key).build();
+    return o;
+  }
+
+  private Map<Integer, byte[]> upload(String uploadId) {
+    Map<Integer, byte[]> parts = uploads.get(uploadId);
+    if (parts == null) throw s3Error(404, "NoSuchUpload " + uploadId);
+    return parts;
+  }
+
+  private static S3Exception s3Error(int status, String message) {
+    return (S3Exception) S3Exception.builder().statusCode(status).message(message).build();
+  }
+
+  /** Bytes selected by an HTTP range such as bytes=0-99 or bytes=100- (null = whole object). */
+  private static byte[] slice(byte[] data, String range) {
+    if (range == null || range.isBlank()) return data;
+    String[] se = range.trim().substring("bytes=".length()).split("-", -1);
+    long first = Long.parseLong(se[0]);
+    long last = se[1].isEmpty() ? data.length - 1 : Math.min(Long.parseLong(se[1]), data.length - 1);
+    if (first >= data.length) throw s3Error(416, "InvalidRange " + range);
+    return Arrays.copyOfRange(data, (int) first, (int) last + 1);
+  }
+
+  private static byte[] read(RequestBody body) {
+    try (InputStream in = body.contentStreamProvider().newStream()) {
+      return in.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
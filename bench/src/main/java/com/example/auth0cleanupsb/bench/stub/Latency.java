@@ -0,0 +1,55 @@
+package com.example.auth0cleanupsb.bench.stub;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simulated service time of a stub endpoint. Specs as used on the harness command line:
+ * "0", "fixed:20", "uniform:5:40", "lognormal:20:250" (p50 and p99, all in milliseconds).
+ */
+public interface Latency {
+
+  long sampleNanos();
+
+  static Latency none() {
+    return () -> 0L;
+  }
+
+  static Latency fixed(double ms) {
+    long nanos = toNanos(ms);
+    return () -> nanos;
+  }
+
+  static Latency uniform(double minMs, double maxMs) {
+    long lo = toNanos(minMs);
+    long hi = Math.max(lo + 1, toNanos(maxMs));
+    return () -> ThreadLocalRandom.current().nextLong(lo, hi);
+  }
+
+  /** Long-tailed like a real API: most calls near p50, 1% beyond p99. */
+  static Latency logNormal(double p50Ms, double p99Ms) {
+    if (p50Ms <= 0 || p99Ms < p50Ms) throw new IllegalArgumentException("lognormal needs 0 < p50 <= p99");
+    double mu = Math.log(p50Ms);
+    double sigma = Math.log(p99Ms / p50Ms) / 2.326;   // z-score of the 99th percentile
+    return () -> toNanos(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+  }
+
+  static Latency parse(String spec) {
+    String[] p = spec.trim().toLowerCase(Locale.ROOT).split(":");
+    try {
+      switch (p[0]) {
+        case "0", "none" -> { return none(); }
+        case "fixed" -> { return fixed(Double.parseDouble(p[1])); }
+        case "uniform" -> { return uniform(Double.parseDouble(p[1]), Double.parseDouble(p[2])); }
+        case "lognormal" -> { return logNormal(Double.parseDouble(p[1]), Double.parseDouble(p[2])); }
+        default -> { return fixed(Double.parseDouble(p[0])); }
+      }
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Bad latency spec '" + spec + "' (e.g. fixed:20, uniform:5:40, lognormal:20:250)", e);
+    }
+  }
+
+  private static long toNanos(double ms) {
+    return (long) (Math.max(0, ms) * 1_000_000L);
+  }
+}
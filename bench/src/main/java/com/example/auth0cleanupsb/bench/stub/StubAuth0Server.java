@@ -0,0 +1,279 @@
+package com.example.auth0cleanupsb.bench.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Auth0 Management API on localhost, enough for Auth0Client: /oauth/token, /api/v2/users?q=,
+ * /api/v2/users-by-email and DELETE /api/v2/users/{id}. Every SSOID and email belongs to a user whose
+ * user_id is derived from it. Searches honour fields=user_id; otherwise users come back with metadata of
+ * the configured size, like a real tenant.
+ *
+ * With default {@link Options} it answers immediately and never throttles (the JMH benchmarks). For load
+ * tests it can add a latency distribution per endpoint, enforce a per-endpoint token bucket that reports
+ * X-RateLimit-Limit/Remaining/Reset and answers 429 when empty, and inject 429s at random.
+ */
+public class StubAuth0Server implements AutoCloseable {
+  static {
+    // without this the JDK server's separate header/body writes hit Nagle + delayed ACK: ~40 ms per call
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  /** Endpoint names used for latency, rate buckets and {@link #stats()}. */
+  public static final String TOKEN = "token";
+  public static final String SEARCH = "search";
+  public static final String USERS_BY_EMAIL = "users-by-email";
+  public static final String DELETE = "delete";
+  public static final List<String> ENDPOINTS = List.of(TOKEN, SEARCH, USERS_BY_EMAIL, DELETE);
+
+  /** Simulation settings; the defaults are a zero-latency, unthrottled stub. */
+  public static final class Options {
+    private int metadataBytes = 512;
+    private final Map<String, Latency> latency = new HashMap<>();
+    private double rateLimitPerSecond;     // per endpoint; 0 = no limit and no X-RateLimit headers
+    private int rateLimitBurst;            // bucket size reported as X-RateLimit-Limit; 0 = rateLimitPerSecond
+    private double inject429Rate;          // share of requests answered 429 regardless of the bucket
+
+    public Options metadataBytes(int v) { this.metadataBytes = v; return this; }
+
+    /** Same latency for every endpoint. */
+    public Options latency(Latency v) {
+      for (String e : ENDPOINTS) latency.put(e, v);
+      return this;
+    }
+
+    public Options latency(String endpoint, Latency v) {
+      if (!ENDPOINTS.contains(endpoint)) throw new IllegalArgumentException("Unknown endpoint " + endpoint + " " + ENDPOINTS);
+      latency.put(endpoint, v);
+      return this;
+    }
+
+    public Options rateLimit(double perSecond, int burst) {
+      this.rateLimitPerSecond = perSecond;
+      this.rateLimitBurst = burst;
+      return this;
+    }
+
+    public Options inject429(double rate) { this.inject429Rate = rate; return this; }
+  }
+
+  /** Requests seen by one endpoint and how many of them were answered 429. */
+  public record EndpointStats(long requests, long throttled, long injected429) {}
+
+  private final HttpServer server;
+  private final ExecutorService workers;
+  private final Options options;
+  private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder[]> counters = new ConcurrentHashMap<>();
+
+  public StubAuth0Server(int metadataBytes) throws IOException {
+    this(new Options().metadataBytes(metadataBytes));
+  }
+
+  public StubAuth0Server(Options options) throws IOException {
+    this.options = options;
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+    // one thread per in-flight exchange, so simulated latency doesn't queue requests behind each other
+    AtomicInteger n = new AtomicInteger();
+    this.workers = Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, "stub-auth0-" + n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    server.setExecutor(workers);
+    server.createContext("/oauth/token", this::token);
+    server.createContext("/api/v2/users-by-email", this::usersByEmail);
+    server.createContext("/api/v2/users", this::users);
+    server.start();
+  }
+
+  /** e.g. http://127.0.0.1:53211 */
+  public String baseUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  /** Per-endpoint counts since start or the last {@link #resetStats()}, in endpoint-name order. */
+  public Map<String, EndpointStats> stats() {
+    Map<String, EndpointStats> out = new TreeMap<>();
+    counters.forEach((e, c) -> out.put(e, new EndpointStats(c[0].sum(), c[1].sum(), c[2].sum())));
+    return out;
+  }
+
+  public void resetStats() {
+    counters.clear();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    workers.shutdownNow();
+  }
+
+  /** user_id the stub reports for an SSOID or email. */
+  public static String userIdFor(String value) {
+    return "auth0|" + Integer.toHexString(value.hashCode());
+  }
+
+  private void token(HttpExchange ex) throws IOException {
+    drain(ex);
+    if (!admit(ex, TOKEN)) return;
+    reply(ex, 200, "{\"access_token\":\"stub-token\",\"token_type\":\"Bearer\",\"expires_in\":86400}");
+  }
+
+  private void users(HttpExchange ex) throws IOException {
+    drain(ex);
+    String path = ex.getRequestURI().getPath();
+    if ("DELETE".equals(ex.getRequestMethod()) && path.startsWith("/api/v2/users/")) {
+      if (admit(ex, DELETE)) reply(ex, 204, null);
+      return;
+    }
+    if (!admit(ex, SEARCH)) return;
+    String q = param(ex, "q");
+    if (q == null) {
+      reply(ex, 400, "{\"error\":\"missing q\"}");
+      return;
+    }
+    int open = q.indexOf('"');
+    int close = q.lastIndexOf('"');
+    String value = open >= 0 && close > open ? q.substring(open + 1, close) : q;
+    reply(ex, 200, userList(value, param(ex, "fields")));
+  }
+
+  private void usersByEmail(HttpExchange ex) throws IOException {
+    drain(ex);
+    if (!admit(ex, USERS_BY_EMAIL)) return;
+    String email = param(ex, "email");
+    reply(ex, 200, email == null ? "[]" : userList(email, param(ex, "fields")));
+  }
+
+  /**
+   * Counts the request, waits out the simulated latency and applies the rate limit. Returns false when the
+   * request has already been answered with a 429.
+   */
+  private boolean admit(HttpExchange ex, String endpoint) throws IOException {
+    LongAdder[] c = counters.computeIfAbsent(endpoint, k -> new LongAdder[] {new LongAdder(), new LongAdder(), new LongAdder()});
+    c[0].increment();
+    sleep(options.latency.getOrDefault(endpoint, Latency.none()).sampleNanos());
+
+    Bucket bucket = options.rateLimitPerSecond > 0 ? buckets.computeIfAbsent(endpoint, k -> new Bucket(
+        options.rateLimitPerSecond, options.rateLimitBurst > 0 ? options.rateLimitBurst : options.rateLimitPerSecond)) : null;
+    boolean injected = options.inject429Rate > 0 && ThreadLocalRandom.current().nextDouble() < options.inject429Rate;
+    boolean throttled = !injected && bucket != null && !bucket.tryTake();
+    if (bucket != null) bucket.headers(ex, injected);
+    if (!injected && !throttled) return true;
+
+    c[injected ? 2 : 1].increment();
+    if (bucket == null) ex.getResponseHeaders().set("retry-after", "1");  // no bucket to derive a reset from
+    reply(ex, 429, "{\"statusCode\":429,\"error\":\"Too Many Requests\",\"message\":\"Global limit has been reached\"}");
+    return false;
+  }
+
+  private static void sleep(long nanos) {
+    if (nanos <= 0) return;
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private String userList(String value, String fields) {
+    String uid = userIdFor(value);
+    if ("user_id".equals(fields)) return "[{\"user_id\":\"" + uid + "\"}]";
+    StringBuilder meta = new StringBuilder("{\"ssoid\":\"").append(value).append('"');
+    for (int k = 0; meta.length() < options.metadataBytes; k++) {
+      meta.append(",\"attr").append(k).append("\":\"").append("x".repeat(24)).append('"');
+    }
+    meta.append('}');
+    return "[{\"email\":\"" + value + "\",\"app_metadata\":" + meta + ",\"user_metadata\":" + meta
+        + ",\"user_id\":\"" + uid + "\"}]";
+  }
+
+  private static String param(HttpExchange ex, String name) {
+    String query = ex.getRequestURI().getRawQuery();
+    if (query == null) return null;
+    for (String kv : query.split("&")) {
+      int eq = kv.indexOf('=');
+      if (eq > 0 && kv.substring(0, eq).equals(name)) {
+        return URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8);
+      }
+    }
+    return null;
+  }
+
+  /** Read the request body to its end without closing it (closing it here drops the keep-alive connection). */
+  private static void drain(HttpExchange ex) throws IOException {
+    ex.getRequestBody().transferTo(OutputStream.nullOutputStream());
+  }
+
+  private static void reply(HttpExchange ex, int status, String body) throws IOException {
+    byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+    ex.getResponseHeaders().set("content-type", "application/json; charset=utf-8");
+    if (bytes.length == 0) {
+      ex.sendResponseHeaders(status, -1);   // e.g. 204: no body may be written at all
+      ex.close();
+      return;
+    }
+    ex.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = ex.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Auth0-style bucket: refills continuously; X-RateLimit-Reset is the epoch second at which it will be full
+   * again. An injected 429 reports an empty bucket that resets within the next second.
+   */
+  private static final class Bucket {
+    private final double ratePerSec;
+    private final double capacity;
+    private double tokens;
+    private long lastNanos = System.nanoTime();
+
+    Bucket(double ratePerSec, double capacity) {
+      this.ratePerSec = ratePerSec;
+      this.capacity = Math.max(1, capacity);
+      this.tokens = this.capacity;
+    }
+
+    synchronized boolean tryTake() {
+      refill();
+      if (tokens < 1) return false;
+      tokens -= 1;
+      return true;
+    }
+
+    synchronized void headers(HttpExchange ex, boolean injected) {
+      refill();
+      long nowMs = System.currentTimeMillis();
+      long remaining = injected ? 0 : (long) Math.floor(tokens);
+      long fullInMs = injected ? 1000 : (long) Math.ceil((capacity - tokens) / ratePerSec * 1000.0);
+      ex.getResponseHeaders().set("x-ratelimit-limit", Long.toString((long) capacity));
+      ex.getResponseHeaders().set("x-ratelimit-remaining", Long.toString(remaining));
+      ex.getResponseHeaders().set("x-ratelimit-reset", Long.toString((nowMs + fullInMs + 999) / 1000));
+    }
+
+    private void refill() {
+      long now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (now - lastNanos) / 1_000_000_000.0 * ratePerSec);
+      lastNanos = now;
+    }
+  }
+}